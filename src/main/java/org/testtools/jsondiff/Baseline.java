@@ -0,0 +1,210 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff;
+
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.testtools.jsondiff.comparator.BaselineIndex;
+
+import java.util.List;
+
+/**
+ * An expected document prepared once for many comparisons under compiled rules: the document is parsed, the
+ * selection of each rule is read, preprocessed and parsed with its keys interned in a {@link SymbolTable}, and
+ * each selection gets a {@link BaselineIndex} whose unique keys, key maps, sorted values and signatures are
+ * shared by all comparisons. The matchers of the rules precompute what they derive from the expected values,
+ * see {@link org.testtools.jsondiff.comparator.CustomComparator#prepareExpected(Object)}. A baseline is immutable
+ * and can be used by concurrent comparisons.
+ *
+ * <p>A baseline can also be prepared from a {@link BaselineFile}, whose document is read without parsing JSON text
+ * and whose index is restored from the file.</p>
+ *
+ * @see JSONCompare#compareJSON(Baseline, String)
+ * @see BaselineCache
+ */
+public final class Baseline {
+
+    private final CompiledCompareRules rules;
+    private final int length;
+    // per rule, the parsed selection or the JSONException its parsing threw
+    private final Object[] selections;
+    private final BaselineIndex[] indices;
+    private final SymbolTable symbols;
+
+    private Baseline(CompiledCompareRules rules, int length, Object[] selections, BaselineIndex[] indices,
+                     SymbolTable symbols) {
+        this.rules = rules;
+        this.length = length;
+        this.selections = selections;
+        this.indices = indices;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Prepares an expected document for comparisons under compiled rules.
+     *
+     * @param expectedStr Expected JSON string
+     * @param rules       compiled comparison rules
+     * @return the baseline
+     * @throws Exception if the document can't be parsed or a selection of the rules can't be read
+     */
+    public static Baseline of(String expectedStr, CompiledCompareRules rules) throws Exception {
+        return of(expectedStr, rules, new SymbolTable());
+    }
+
+    /**
+     * Prepares an expected document for comparisons under compiled rules, interning the keys and short values
+     * of its selections in a symbol table. The actual documents compared against the baseline are parsed with
+     * the same table, so their keys are found in the expected objects by identity.
+     *
+     * @param expectedStr Expected JSON string
+     * @param rules       compiled comparison rules
+     * @param symbols     symbol table, which may be shared by many baselines
+     * @return the baseline
+     * @throws Exception if the document can't be parsed or a selection of the rules can't be read
+     */
+    public static Baseline of(String expectedStr, CompiledCompareRules rules, SymbolTable symbols)
+            throws Exception {
+        DocumentContext context = JsonPath.parse(expectedStr);
+        List<CompiledCompareRules.Rule> ruleList = rules.getRules();
+        Object[] selections = new Object[ruleList.size()];
+        BaselineIndex[] indices = new BaselineIndex[ruleList.size()];
+        String selected = expectedStr;
+        Object parsed = null;
+        BaselineIndex index = null;
+        for (int i = 0; i < ruleList.size(); i++) {
+            CompiledCompareRules.Rule rule = ruleList.get(i);
+            if (rule.selection != null) {
+                selected = JSONCompare.select(context, rule);
+                parsed = null;
+            }
+            // a rule without jsonPath shares the selection, and its index, of the rule before it
+            if (parsed == null) {
+                try {
+                    parsed = JSONParser.parseJSON(selected, symbols);
+                    index = BaselineIndex.of(parsed);
+                } catch (JSONException e) {
+                    parsed = e;
+                    index = null;
+                }
+            }
+            if (!(parsed instanceof JSONException)) {
+                // e.g. compiles the patterns of dynamic regular expression matchers
+                rule.comparator.prepareExpected(parsed);
+            }
+            selections[i] = parsed;
+            indices[i] = index;
+        }
+        return new Baseline(rules, expectedStr.length(), selections, indices, symbols);
+    }
+
+    /**
+     * Prepares an expected document stored in a baseline file for comparisons under compiled rules.
+     *
+     * @param file  the opened baseline file
+     * @param rules compiled comparison rules
+     * @return the baseline
+     * @throws Exception if the file is corrupt or a selection of the rules can't be read
+     */
+    public static Baseline of(BaselineFile file, CompiledCompareRules rules) throws Exception {
+        return of(file, rules, new SymbolTable());
+    }
+
+    /**
+     * Prepares an expected document stored in a baseline file for comparisons under compiled rules, interning
+     * its keys and short values in a symbol table, see {@link #of(String, CompiledCompareRules, SymbolTable)}.
+     * The selections of the rules are read from the stored document and their decimals normalized like
+     * {@link #of(String, CompiledCompareRules, SymbolTable)} does, so the baseline compares like a parsed one.
+     *
+     * @param file    the opened baseline file
+     * @param rules   compiled comparison rules
+     * @param symbols symbol table, which may be shared by many baselines
+     * @return the baseline
+     * @throws Exception if the file is corrupt or a selection of the rules can't be read
+     */
+    public static Baseline of(BaselineFile file, CompiledCompareRules rules, SymbolTable symbols)
+            throws Exception {
+        BaselineFile.IndexedDocument stored = file.readIndexed(symbols);
+        List<CompiledCompareRules.Rule> ruleList = rules.getRules();
+        Object[] selections = new Object[ruleList.size()];
+        BaselineIndex[] indices = new BaselineIndex[ruleList.size()];
+        Object parsed = stored.document;
+        BaselineIndex index = stored.index;
+        for (int i = 0; i < ruleList.size(); i++) {
+            CompiledCompareRules.Rule rule = ruleList.get(i);
+            if (rule.selection != null) {
+                // the actual documents are selected through serialization, which normalizes their decimals
+                Object selected = JSONCompare.select(rule, stored.document, stored.decimalTexts);
+                if (selected instanceof JSONObject || selected instanceof JSONArray) {
+                    parsed = selected;
+                    // subtrees of the document are covered by its index, copies, normalized subtrees and indefinite
+                    // paths are not
+                    index = stored.index.signature(selected) != null ? stored.index : BaselineIndex.of(selected);
+                } else {
+                    try {
+                        parsed = JSONParser.parseJSON(JSONObject.valueToString(selected), symbols);
+                    } catch (JSONException e) {
+                        parsed = e;
+                    }
+                    index = null;
+                }
+            }
+            if (!(parsed instanceof JSONException)) {
+                rule.comparator.prepareExpected(parsed);
+            }
+            selections[i] = parsed;
+            indices[i] = index;
+        }
+        return new Baseline(rules, (int) Math.min(file.getSize(), Integer.MAX_VALUE), selections, indices,
+                symbols);
+    }
+
+    /**
+     * @return the rules the baseline was prepared for
+     */
+    public CompiledCompareRules getRules() {
+        return rules;
+    }
+
+    /**
+     * @return length of the expected JSON string in characters, or size of the baseline file in bytes, the size
+     * accounted by {@link BaselineCache}
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return the symbol table of the expected document, also used to parse the actual documents
+     */
+    public SymbolTable getSymbolTable() {
+        return symbols;
+    }
+
+    Object getSelection(int rule) throws JSONException {
+        Object selection = selections[rule];
+        if (selection instanceof JSONException) {
+            throw (JSONException) selection;
+        }
+        return selection;
+    }
+
+    BaselineIndex getIndex(int rule) {
+        return indices[rule];
+    }
+}
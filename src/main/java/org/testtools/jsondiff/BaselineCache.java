@@ -0,0 +1,203 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Least recently used cache of {@link Baseline}s, for regression runs that compare the same expected documents
+ * against many actual documents. A baseline is keyed by its compiled rules and either the content of the
+ * expected document or an id chosen by the caller, and it is evicted when the cache holds more entries or more
+ * characters of expected documents than its bounds allow.
+ *
+ * <p>The cache can be shared between threads. A baseline is prepared outside of the cache's lock, so a miss
+ * doesn't block concurrent lookups; two threads that miss the same key at once may both prepare it.</p>
+ *
+ * @see JSONCompare#compareJSON(String, String, CompiledCompareRules, BaselineCache)
+ */
+public final class BaselineCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+
+    private final int maxEntries;
+    private final long maxChars;
+    private final SymbolTable symbols;
+    private final LinkedHashMap<Key, Baseline> entries = new LinkedHashMap<Key, Baseline>(16, 0.75f, true);
+    private long chars;
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * Creates a cache of at most {@link #DEFAULT_MAX_ENTRIES} baselines.
+     */
+    public BaselineCache() {
+        this(DEFAULT_MAX_ENTRIES, 0);
+    }
+
+    /**
+     * @param maxEntries maximum number of cached baselines
+     * @param maxChars   maximum total length of the cached expected documents, 0 for no limit
+     */
+    public BaselineCache(int maxEntries, long maxChars) {
+        this(maxEntries, maxChars, null);
+    }
+
+    /**
+     * @param maxEntries maximum number of cached baselines
+     * @param maxChars   maximum total length of the cached expected documents, 0 for no limit
+     * @param symbols    symbol table shared by all cached baselines, or null for one table per baseline
+     */
+    public BaselineCache(int maxEntries, long maxChars, SymbolTable symbols) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.maxChars = maxChars;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Returns the baseline of an expected document, keyed by the content of the document.
+     *
+     * @param expectedStr Expected JSON string
+     * @param rules       compiled comparison rules
+     * @return the cached or newly prepared baseline
+     * @throws Exception if the baseline can't be prepared, see {@link Baseline#of(String, CompiledCompareRules)}
+     */
+    public Baseline get(final String expectedStr, CompiledCompareRules rules) throws Exception {
+        return get(new Key(rules, false, expectedStr), new Callable<String>() {
+            @Override
+            public String call() {
+                return expectedStr;
+            }
+        });
+    }
+
+    /**
+     * Returns the baseline of an expected document, keyed by an id chosen by the caller, such as the name of a
+     * golden file. The document is only loaded on a miss.
+     *
+     * @param id       id of the expected document
+     * @param rules    compiled comparison rules
+     * @param expected loads the expected JSON string
+     * @return the cached or newly prepared baseline
+     * @throws Exception if the document can't be loaded or the baseline can't be prepared
+     */
+    public Baseline get(String id, CompiledCompareRules rules, Callable<String> expected) throws Exception {
+        return get(new Key(rules, true, id), expected);
+    }
+
+    private Baseline get(Key key, Callable<String> expected) throws Exception {
+        synchronized (this) {
+            Baseline baseline = entries.get(key);
+            if (baseline != null) {
+                hitCount++;
+                return baseline;
+            }
+            missCount++;
+        }
+        String expectedStr = expected.call();
+        Baseline baseline = symbols == null ? Baseline.of(expectedStr, key.rules)
+                : Baseline.of(expectedStr, key.rules, symbols);
+        if (maxChars > 0 && baseline.getLength() > maxChars) {
+            return baseline;
+        }
+        synchronized (this) {
+            Baseline previous = entries.put(key, baseline);
+            if (previous != null) {
+                chars -= previous.getLength();
+            }
+            chars += baseline.getLength();
+            Iterator<Map.Entry<Key, Baseline>> eldest = entries.entrySet().iterator();
+            while (entries.size() > maxEntries || (maxChars > 0 && chars > maxChars)) {
+                chars -= eldest.next().getValue().getLength();
+                eldest.remove();
+            }
+        }
+        return baseline;
+    }
+
+    /**
+     * Removes the baseline cached for an id, e.g. after its golden file changed.
+     *
+     * @param id    id of the expected document
+     * @param rules compiled comparison rules
+     */
+    public synchronized void invalidate(String id, CompiledCompareRules rules) {
+        Baseline removed = entries.remove(new Key(rules, true, id));
+        if (removed != null) {
+            chars -= removed.getLength();
+        }
+    }
+
+    /**
+     * Removes all cached baselines.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        chars = 0;
+    }
+
+    /**
+     * @return number of cached baselines
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return number of lookups that found a cached baseline
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return number of lookups that had to prepare a baseline
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    private static final class Key {
+        private final CompiledCompareRules rules;
+        private final boolean id;
+        private final String text;
+
+        Key(CompiledCompareRules rules, boolean id, String text) {
+            this.rules = rules;
+            this.id = id;
+            this.text = text;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return rules == other.rules && id == other.id && text.equals(other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            // String caches its hash, a document is only hashed once per instance
+            return (System.identityHashCode(rules) * 31 + (id ? 1 : 0)) * 31 + text.hashCode();
+        }
+    }
+}
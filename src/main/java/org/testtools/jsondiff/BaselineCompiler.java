@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line tool that compiles expected JSON files into {@link BaselineFile}s:
+ * <pre>
+ * java -cp ultrajsondiff.jar org.testtools.jsondiff.BaselineCompiler [-d &lt;output directory&gt;] &lt;expected.json&gt;...
+ * </pre>
+ * Each file {@code name.json} is compiled to {@code name.ujdb}, next to it or in the output directory.
+ */
+public final class BaselineCompiler {
+
+    private BaselineCompiler() {
+    }
+
+    /**
+     * @param args {@code [-d <output directory>] <expected.json>...}
+     */
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Compiles expected JSON files into baseline files.
+     *
+     * @param args {@code [-d <output directory>] <expected.json>...}
+     * @param out  receives a line per compiled file
+     * @param err  receives usage and error messages
+     * @return 0 if all files were compiled, 1 otherwise
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        Path outputDirectory = null;
+        List<Path> inputs = new ArrayList<Path>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-d".equals(args[i]) && i + 1 < args.length) {
+                outputDirectory = Paths.get(args[++i]);
+            } else if (args[i].startsWith("-")) {
+                inputs.clear();
+                break;
+            } else {
+                inputs.add(Paths.get(args[i]));
+            }
+        }
+        if (inputs.isEmpty()) {
+            err.println("Usage: BaselineCompiler [-d <output directory>] <expected.json>...");
+            return 1;
+        }
+        int status = 0;
+        for (Path input : inputs) {
+            Path output = outputFor(input, outputDirectory);
+            try {
+                String expectedStr = new String(Files.readAllBytes(input), StandardCharsets.UTF_8);
+                BaselineFile.write(expectedStr, output);
+                out.println(input + " -> " + output + " (" + Files.size(output) + " bytes)");
+            } catch (IOException | RuntimeException e) {
+                err.println("Failed to compile " + input + ": " + e.getMessage());
+                status = 1;
+            }
+        }
+        return status;
+    }
+
+    /**
+     * @param input           an expected JSON file
+     * @param outputDirectory directory of the baseline file, or null for the directory of the input
+     * @return path of the baseline file the input is compiled to
+     */
+    public static Path outputFor(Path input, Path outputDirectory) {
+        String name = input.getFileName().toString();
+        if (name.endsWith(".json")) {
+            name = name.substring(0, name.length() - ".json".length());
+        }
+        Path directory = outputDirectory != null ? outputDirectory : input.toAbsolutePath().getParent();
+        return directory.resolve(name + BaselineFile.EXTENSION);
+    }
+}
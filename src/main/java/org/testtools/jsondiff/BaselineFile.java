@@ -0,0 +1,494 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.testtools.jsondiff.comparator.BaselineIndex;
+import org.testtools.jsondiff.comparator.JSONCompareUtil;
+import org.testtools.jsondiff.comparator.NodeSignature;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A parsed expected document stored in a binary file, so that comparisons in later runs read it without
+ * parsing its JSON text again. Files are written by {@link #write(Object, Path)} or the
+ * {@link BaselineCompiler} command line tool, and opened with {@link #open(Path)}, which maps the file into
+ * memory. {@link Baseline#of(BaselineFile, CompiledCompareRules)} then prepares a baseline from it.
+ *
+ * <p>All numbers of the format are big-endian. A file starts with a header and a dictionary of the keys of
+ * its objects, followed by a tape of the nodes of the document in pre-order:</p>
+ * <pre>
+ * header   int magic 'UJDB', int version, int key count
+ * key      int length, UTF-8 bytes
+ * object   byte 'o', int count, int end, long key-set hash, long content hash, count x (int key id, node)
+ * array    byte 'a', int count, int end, long content hash, int unique key id, count x node
+ * string   byte 's', int length, UTF-8 bytes
+ * number   byte 'i' int | 'l' long | 'd' long bits of a double | 'I' BigInteger or 'D' BigDecimal as
+ *          int length, ASCII text
+ * literal  byte 't' true | 'f' false | 'n' null
+ * </pre>
+ * <p>The end of a container is the tape offset after its last child, so a reader can skip a subtree. The hashes
+ * are those of its {@link NodeSignature}, and the unique key id of an array of objects is the key of
+ * {@link JSONCompareUtil#findUniqueKey(JSONArray)}, {@value #NO_UNIQUE_KEY} if it has none and
+ * {@value #NOT_KEYED} for other arrays. Numbers keep the type org.json parsed them to, and a BigDecimal parsed
+ * from the expected JSON text keeps its source text, on which the normalization of rule selections depends.</p>
+ *
+ * <p>The file remains mapped until the instance is garbage collected. A file must not be modified while it is
+ * open. An instance can be read by concurrent threads.</p>
+ */
+public final class BaselineFile {
+
+    /**
+     * Extension of baseline files written by {@link BaselineCompiler}.
+     */
+    public static final String EXTENSION = ".ujdb";
+    /**
+     * Version of the format written by this class.
+     */
+    public static final int VERSION = 1;
+
+    static final int NO_UNIQUE_KEY = -1;
+    static final int NOT_KEYED = -2;
+    private static final int MAGIC = 0x554A4442;
+    private static final byte OBJECT = 'o';
+    private static final byte ARRAY = 'a';
+    private static final byte STRING = 's';
+    private static final byte INTEGER = 'i';
+    private static final byte LONG = 'l';
+    private static final byte DOUBLE = 'd';
+    private static final byte BIG_INTEGER = 'I';
+    private static final byte BIG_DECIMAL = 'D';
+    private static final byte TRUE = 't';
+    private static final byte FALSE = 'f';
+    private static final byte NULL = 'n';
+
+    private final Path path;
+    private final ByteBuffer tape;
+    private final String[] keys;
+    private final long size;
+
+    private BaselineFile(Path path, ByteBuffer tape, String[] keys, long size) {
+        this.path = path;
+        this.tape = tape;
+        this.keys = keys;
+        this.size = size;
+    }
+
+    /**
+     * Parses an expected JSON string and writes it to a baseline file.
+     *
+     * @param expectedStr Expected JSON string, an object or an array
+     * @param file        the file to write, replaced if it exists
+     * @throws IOException   if the file can't be written
+     * @throws JSONException if the string can't be parsed
+     */
+    public static void write(String expectedStr, Path file) throws IOException {
+        Map<Object, String> decimalTexts = new IdentityHashMap<Object, String>();
+        write(DecimalTextTokener.parse(expectedStr, decimalTexts), decimalTexts, file);
+    }
+
+    /**
+     * Writes a parsed expected document to a baseline file.
+     *
+     * @param document a {@link JSONObject} or {@link JSONArray}, as parsed by {@link JSONParser}
+     * @param file     the file to write, replaced if it exists
+     * @throws IOException              if the file can't be written
+     * @throws IllegalArgumentException if the document isn't an object or an array
+     */
+    public static void write(Object document, Path file) throws IOException {
+        write(document, Collections.<Object, String>emptyMap(), file);
+    }
+
+    private static void write(Object document, Map<Object, String> decimalTexts, Path file) throws IOException {
+        if (!(document instanceof JSONObject || document instanceof JSONArray)) {
+            throw new IllegalArgumentException("A baseline file holds a JSON object or array, not: " + document);
+        }
+        TapeWriter writer = new TapeWriter(decimalTexts);
+        writer.writeNode(document, new IdentityHashMap<Object, NodeSignature>());
+        ByteBuffer out = writer.out;
+        out.flip();
+
+        TapeWriter header = new TapeWriter(Collections.<Object, String>emptyMap());
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(writer.keyIds.size());
+        for (String key : writer.keyIds.keySet()) {
+            header.putString(key);
+        }
+        header.out.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.out.hasRemaining()) {
+                channel.write(header.out);
+            }
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+    }
+
+    /**
+     * Opens a baseline file by mapping it into memory and reading its key dictionary.
+     *
+     * @param file the file
+     * @return the opened file
+     * @throws IOException if the file can't be read or isn't a baseline file of a supported version
+     */
+    public static BaselineFile open(Path file) throws IOException {
+        MappedByteBuffer mapped;
+        long size;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        try {
+            if (mapped.getInt() != MAGIC) {
+                throw new IOException("Not a baseline file: " + file);
+            }
+            int version = mapped.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported baseline file version " + version + ": " + file);
+            }
+            String[] keys = new String[mapped.getInt()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = getString(mapped);
+            }
+            return new BaselineFile(file, mapped.slice(), keys, size);
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IOException("Truncated baseline file: " + file, e);
+        }
+    }
+
+    /**
+     * @return path of the file
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return size of the file in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Builds the document stored in the file. Each call returns a new document.
+     *
+     * @param symbols table the keys, and the short string values, of the document are interned in
+     * @return the document
+     * @throws IOException if the file is corrupt
+     */
+    public Object read(SymbolTable symbols) throws IOException {
+        return new TapeReader(symbols, null, null, new IdentityHashMap<Object, String>()).readDocument();
+    }
+
+    /**
+     * Builds the document stored in the file together with its index, whose signatures and unique keys are
+     * restored from the file rather than computed.
+     *
+     * @param symbols table the keys, and the short string values, of the document are interned in
+     * @return the document and its index
+     * @throws IOException if the file is corrupt
+     */
+    IndexedDocument readIndexed(SymbolTable symbols) throws IOException {
+        Map<Object, NodeSignature> signatures = new IdentityHashMap<Object, NodeSignature>();
+        Map<JSONArray, String> uniqueKeys = new IdentityHashMap<JSONArray, String>();
+        Map<Object, String> decimalTexts = new IdentityHashMap<Object, String>();
+        Object document = new TapeReader(symbols, signatures, uniqueKeys, decimalTexts).readDocument();
+        return new IndexedDocument(document, BaselineIndex.of(document, signatures, uniqueKeys), decimalTexts);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A document read from a baseline file with its index and the source texts of its decimals.
+     */
+    static final class IndexedDocument {
+        final Object document;
+        final BaselineIndex index;
+        final Map<Object, String> decimalTexts;
+
+        IndexedDocument(Object document, BaselineIndex index, Map<Object, String> decimalTexts) {
+            this.document = document;
+            this.index = index;
+            this.decimalTexts = decimalTexts;
+        }
+    }
+
+    /**
+     * Decodes the tape of a file, one reader per read so that concurrent reads don't share a position.
+     */
+    private final class TapeReader {
+        private final ByteBuffer in = tape.duplicate();
+        private final String[] symbolKeys = new String[keys.length];
+        private final SymbolTable symbols;
+        private final Map<Object, NodeSignature> signatures;
+        private final Map<JSONArray, String> uniqueKeys;
+        private final Map<Object, String> decimalTexts;
+
+        TapeReader(SymbolTable symbols, Map<Object, NodeSignature> signatures, Map<JSONArray, String> uniqueKeys,
+                   Map<Object, String> decimalTexts) {
+            this.symbols = symbols;
+            this.signatures = signatures;
+            this.uniqueKeys = uniqueKeys;
+            this.decimalTexts = decimalTexts;
+            for (int i = 0; i < keys.length; i++) {
+                symbolKeys[i] = symbols.intern(keys[i]);
+            }
+        }
+
+        Object readDocument() throws IOException {
+            try {
+                Object document = readNode();
+                if (in.hasRemaining()) {
+                    throw corrupt();
+                }
+                return document;
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                     | NegativeArraySizeException | JSONException e) {
+                throw new IOException("Corrupt baseline file: " + path, e);
+            }
+        }
+
+        private Object readNode() throws IOException {
+            byte tag = in.get();
+            switch (tag) {
+                case OBJECT:
+                    return readObject();
+                case ARRAY:
+                    return readArray();
+                case STRING:
+                    String value = getString(in);
+                    return value.length() <= symbols.getMaxValueLength() ? symbols.intern(value) : value;
+                case INTEGER:
+                    return in.getInt();
+                case LONG:
+                    return in.getLong();
+                case DOUBLE:
+                    return Double.longBitsToDouble(in.getLong());
+                case BIG_INTEGER:
+                    return new BigInteger(getString(in));
+                case BIG_DECIMAL:
+                    String text = getString(in);
+                    BigDecimal decimal = new BigDecimal(text);
+                    decimalTexts.put(decimal, text);
+                    return decimal;
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case NULL:
+                    return JSONObject.NULL;
+                default:
+                    throw corrupt();
+            }
+        }
+
+        private JSONObject readObject() throws IOException {
+            int count = in.getInt();
+            int end = in.getInt();
+            long keySetHash = in.getLong();
+            long contentHash = in.getLong();
+            JSONObject object = new JSONObject();
+            for (int i = 0; i < count; i++) {
+                String key = symbolKeys[in.getInt()];
+                object.put(key, readNode());
+            }
+            if (in.position() != end || object.length() != count) {
+                throw corrupt();
+            }
+            if (signatures != null) {
+                signatures.put(object, NodeSignature.restore(object, keySetHash, contentHash));
+            }
+            return object;
+        }
+
+        private JSONArray readArray() throws IOException {
+            int count = in.getInt();
+            int end = in.getInt();
+            long contentHash = in.getLong();
+            int uniqueKey = in.getInt();
+            JSONArray array = new JSONArray(count);
+            for (int i = 0; i < count; i++) {
+                array.put(readNode());
+            }
+            if (in.position() != end) {
+                throw corrupt();
+            }
+            if (signatures != null) {
+                signatures.put(array, NodeSignature.restore(array, 0, contentHash));
+                if (uniqueKey != NOT_KEYED) {
+                    uniqueKeys.put(array, uniqueKey == NO_UNIQUE_KEY ? null : symbolKeys[uniqueKey]);
+                }
+            }
+            return array;
+        }
+
+        private IOException corrupt() {
+            return new IOException("Corrupt baseline file at tape offset " + in.position() + ": " + path);
+        }
+    }
+
+    /**
+     * Encodes a document to a growing buffer, collecting the key dictionary.
+     */
+    private static final class TapeWriter {
+        private final Map<String, Integer> keyIds = new LinkedHashMap<String, Integer>();
+        private final Map<Object, String> decimalTexts;
+        private ByteBuffer out = ByteBuffer.allocate(4096);
+
+        TapeWriter(Map<Object, String> decimalTexts) {
+            this.decimalTexts = decimalTexts;
+        }
+
+        void writeNode(Object value, Map<Object, NodeSignature> signatures) {
+            if (value instanceof JSONObject) {
+                JSONObject object = (JSONObject) value;
+                NodeSignature signature = NodeSignature.of(object, signatures);
+                putByte(OBJECT);
+                putInt(object.length());
+                int end = reserveInt();
+                putLong(signature.getKeySetHash());
+                putLong(signature.getContentHash());
+                for (String key : object.keySet()) {
+                    putInt(keyId(key));
+                    writeNode(object.opt(key), signatures);
+                }
+                out.putInt(end, out.position());
+            } else if (value instanceof JSONArray) {
+                JSONArray array = (JSONArray) value;
+                NodeSignature signature = NodeSignature.of(array, signatures);
+                putByte(ARRAY);
+                putInt(array.length());
+                int end = reserveInt();
+                putLong(signature.getContentHash());
+                putInt(uniqueKeyId(array));
+                for (int i = 0; i < array.length(); i++) {
+                    writeNode(array.opt(i), signatures);
+                }
+                out.putInt(end, out.position());
+            } else if (value instanceof String) {
+                putByte(STRING);
+                putString((String) value);
+            } else if (value instanceof Integer) {
+                putByte(INTEGER);
+                putInt((Integer) value);
+            } else if (value instanceof Long) {
+                putByte(LONG);
+                putLong((Long) value);
+            } else if (value instanceof Double) {
+                putByte(DOUBLE);
+                putLong(Double.doubleToRawLongBits((Double) value));
+            } else if (value instanceof BigInteger) {
+                putByte(BIG_INTEGER);
+                putString(value.toString());
+            } else if (value instanceof BigDecimal) {
+                String text = decimalTexts.get(value);
+                putByte(BIG_DECIMAL);
+                putString(text != null ? text : value.toString());
+            } else if (value instanceof Boolean) {
+                putByte((Boolean) value ? TRUE : FALSE);
+            } else if (JSONObject.NULL.equals(value)) {
+                putByte(NULL);
+            } else {
+                throw new IllegalArgumentException("Unsupported value in a baseline file: " + value);
+            }
+        }
+
+        private int uniqueKeyId(JSONArray array) {
+            if (array.length() == 0) {
+                return NOT_KEYED;
+            }
+            for (int i = 0; i < array.length(); i++) {
+                if (!(array.opt(i) instanceof JSONObject)) {
+                    return NOT_KEYED;
+                }
+            }
+            String uniqueKey = JSONCompareUtil.findUniqueKey(array);
+            return uniqueKey == null ? NO_UNIQUE_KEY : keyId(uniqueKey);
+        }
+
+        private int keyId(String key) {
+            Integer id = keyIds.get(key);
+            if (id == null) {
+                id = keyIds.size();
+                keyIds.put(key, id);
+            }
+            return id;
+        }
+
+        private int reserveInt() {
+            int position = out.position();
+            putInt(0);
+            return position;
+        }
+
+        void putString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            ensure(bytes.length);
+            out.put(bytes);
+        }
+
+        void putByte(byte b) {
+            ensure(1);
+            out.put(b);
+        }
+
+        void putInt(int i) {
+            ensure(4);
+            out.putInt(i);
+        }
+
+        void putLong(long l) {
+            ensure(8);
+            out.putLong(l);
+        }
+
+        private void ensure(int bytes) {
+            if (out.remaining() < bytes) {
+                long capacity = Math.max((long) out.capacity() * 2, (long) out.position() + bytes);
+                if (capacity > Integer.MAX_VALUE - 8) {
+                    throw new IllegalArgumentException("Document too large for a baseline file");
+                }
+                ByteBuffer grown = ByteBuffer.allocate((int) capacity);
+                out.flip();
+                grown.put(out);
+                out = grown;
+            }
+        }
+    }
+}
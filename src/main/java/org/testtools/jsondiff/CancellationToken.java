@@ -0,0 +1,38 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff;
+
+/**
+ * Lets another thread stop a running comparison. A token is attached to a {@link CompareContext}; once it
+ * is cancelled, comparisons using the context end at their next array element or object key and return a
+ * partial result flagged as timed out, see {@link JSONCompareDetailResult#isTimedOut()}.
+ */
+public final class CancellationToken {
+    private volatile boolean cancelled;
+
+    /**
+     * Cancels the comparisons using this token. Can be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return true once {@link #cancel()} has been called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -1,10 +1,26 @@
 package org.testtools.jsondiff;
 
 public class CompareContext {
+    /**
+     * Default number of elements of an unordered simple-value array that are sorted in memory.
+     */
+    public static final int DEFAULT_SPILL_THRESHOLD = 1_000_000;
+
     private Boolean extensible = true;
     private Boolean strictOrder = true;
     private Boolean ignoreNull = true;
     private Boolean fastFail = false;
+    private int spillThreshold = DEFAULT_SPILL_THRESHOLD;
+    private String spillDirectory;
+    // failure budgets, 0 means unlimited
+    private int maxFailures;
+    private int maxFailuresPerPath;
+    private int maxFailuresPerCategory;
+    // objects and arrays with at least this many entries are compared as fork/join tasks, 0 means never
+    private int parallelThreshold;
+    // time budget of one comparison, 0 means unlimited
+    private long timeoutMillis;
+    private CancellationToken cancellationToken;
 
     public CompareContext(Boolean extensible, Boolean strictOrder, Boolean ignoreNull, Boolean fastFail) {
         this.extensible = extensible;
@@ -45,6 +61,78 @@ public class CompareContext {
 
     public void setFastFail(Boolean fastFail) {this.fastFail = fastFail;}
 
+    // Getter and Setter for spillThreshold
+    public int getSpillThreshold() {
+        return spillThreshold;
+    }
+
+    public void setSpillThreshold(int spillThreshold) {
+        this.spillThreshold = spillThreshold;
+    }
+
+    // Getter and Setter for spillDirectory
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    public void setSpillDirectory(String spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    // Getter and Setter for maxFailures
+    public int getMaxFailures() {
+        return maxFailures;
+    }
+
+    public void setMaxFailures(int maxFailures) {
+        this.maxFailures = maxFailures;
+    }
+
+    // Getter and Setter for maxFailuresPerPath
+    public int getMaxFailuresPerPath() {
+        return maxFailuresPerPath;
+    }
+
+    public void setMaxFailuresPerPath(int maxFailuresPerPath) {
+        this.maxFailuresPerPath = maxFailuresPerPath;
+    }
+
+    // Getter and Setter for maxFailuresPerCategory
+    public int getMaxFailuresPerCategory() {
+        return maxFailuresPerCategory;
+    }
+
+    public void setMaxFailuresPerCategory(int maxFailuresPerCategory) {
+        this.maxFailuresPerCategory = maxFailuresPerCategory;
+    }
+
+    // Getter and Setter for parallelThreshold
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    // Getter and Setter for timeoutMillis
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    // Getter and Setter for cancellationToken
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
     /**
      * Is extensible
      *
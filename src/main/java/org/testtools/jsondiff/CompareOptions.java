@@ -0,0 +1,57 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Options of a parallel comparison, see
+ * {@link JSONCompare#compareJSON(String, String, CompiledCompareRules, CompareOptions)}.
+ *
+ * <p>Large objects and keyed arrays are only split into fork/join tasks for rules that set
+ * {@code parallelThreshold}; these options choose the pool and whether the rules themselves run
+ * concurrently.</p>
+ */
+public class CompareOptions {
+
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private boolean parallelRules;
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * @param pool pool that runs the comparison and its fork/join tasks, the common pool by default
+     * @return these options
+     */
+    public CompareOptions setPool(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    public boolean isParallelRules() {
+        return parallelRules;
+    }
+
+    /**
+     * @param parallelRules whether the rules are compared concurrently, false by default
+     * @return these options
+     */
+    public CompareOptions setParallelRules(boolean parallelRules) {
+        this.parallelRules = parallelRules;
+        return this;
+    }
+}
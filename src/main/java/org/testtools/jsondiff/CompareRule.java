@@ -26,6 +26,14 @@ public class CompareRule {
         boolean ignoreNull = getBooleanValue(rule, Param.IGNORE_NULL_KEY, false);
         
         this.compareContext = new CompareContext(extensible, strictOrder, ignoreNull, fastFail);
+        this.compareContext.setSpillThreshold(getIntValue(rule, Param.SPILL_THRESHOLD_KEY,
+                CompareContext.DEFAULT_SPILL_THRESHOLD));
+        this.compareContext.setSpillDirectory(getStringValue(rule, Param.SPILL_DIRECTORY_KEY, null));
+        this.compareContext.setMaxFailures(getIntValue(rule, Param.MAX_FAILURES_KEY, 0));
+        this.compareContext.setMaxFailuresPerPath(getIntValue(rule, Param.MAX_FAILURES_PER_PATH_KEY, 0));
+        this.compareContext.setMaxFailuresPerCategory(getIntValue(rule, Param.MAX_FAILURES_PER_CATEGORY_KEY, 0));
+        this.compareContext.setParallelThreshold(getIntValue(rule, Param.PARALLEL_THRESHOLD_KEY, 0));
+        this.compareContext.setTimeoutMillis(getIntValue(rule, Param.TIMEOUT_MILLIS_KEY, 0));
 
         List<Map<String, Object>> customRulesMaps = (List<Map<String, Object>>) rule.get(Param.CUSTOM_RULES_KEY);
         // Convert customRulesMap to CompareMatcherItem
@@ -57,6 +65,22 @@ public class CompareRule {
         return defaultValue;
     }
 
+    /**
+     * Safely extracts an int value from a map with a default fallback.
+     *
+     * @param map the map to extract from
+     * @param key the key to look for
+     * @param defaultValue the default value if the key is not found or value is not a number
+     * @return the int value or the default value
+     */
+    private int getIntValue(Map<String, Object> map, String key, int defaultValue) {
+        Object value = map.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        return defaultValue;
+    }
+
     /**
      * Safely extracts a String value from a map with a default fallback.
      * 
@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff;
+
+import com.jayway.jsonpath.JsonPath;
+import org.apache.commons.lang.StringUtils;
+import org.testtools.jsondiff.comparator.CustomComparator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * YAML comparison rules compiled once for many comparisons: the YAML is parsed, the comparator of each rule
+ * is built and its JSONPath selection and removeNode preprocessing paths are compiled. Compiled rules are
+ * immutable and can be shared between threads.
+ *
+ * @see JSONCompare#compileRules(String)
+ */
+public final class CompiledCompareRules {
+
+    private final List<Rule> rules;
+
+    private CompiledCompareRules(List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Compiles YAML comparison rules.
+     *
+     * @param yamlRule YAML configuration string containing comparison rules
+     * @return the compiled rules
+     * @throws IllegalArgumentException if the YAML is empty
+     * @throws RuntimeException         if the YAML can't be parsed or a rule can't be compiled
+     */
+    public static CompiledCompareRules compile(String yamlRule) {
+        JSONCompareConf conf = new JSONCompareConf();
+        conf.readNodeFromYaml(yamlRule);
+        List<Rule> rules = new ArrayList<Rule>();
+        for (CompareRule compareRule : conf.getCompareRules()) {
+            rules.add(new Rule(compareRule));
+        }
+        return new CompiledCompareRules(Collections.unmodifiableList(rules));
+    }
+
+    /**
+     * @return the source rules, in order
+     */
+    public List<CompareRule> getCompareRules() {
+        List<CompareRule> compareRules = new ArrayList<CompareRule>(rules.size());
+        for (Rule rule : rules) {
+            compareRules.add(rule.compareRule);
+        }
+        return compareRules;
+    }
+
+    List<Rule> getRules() {
+        return rules;
+    }
+
+    /**
+     * One compiled rule. A rule without jsonPath compares the selection of the previous rule, or the whole
+     * documents for the first rule.
+     */
+    static final class Rule {
+        final CompareRule compareRule;
+        final CustomComparator comparator;
+        final JsonPath selection;
+        final List<JsonPath> removals;
+
+        private Rule(CompareRule compareRule) {
+            this.compareRule = compareRule;
+            this.comparator = CompareRulesTransformer.getComparator(compareRule);
+            this.selection = compareRule.getJsonPath() == null ? null : JsonPath.compile(compareRule.getJsonPath());
+            List<JsonPath> removals = new ArrayList<JsonPath>();
+            if (selection != null && compareRule.getPreProcesses() != null) {
+                for (PreProcessItem preProcess : compareRule.getPreProcesses()) {
+                    if ("removeNode".equals(preProcess.getAction()) && !StringUtils.isEmpty(preProcess.getPath())) {
+                        removals.add(JsonPath.compile(preProcess.getPath()));
+                    }
+                }
+            }
+            this.removals = removals;
+        }
+    }
+}
@@ -32,6 +32,7 @@ public final class Customization {
     private final ValueMatcher<Object> matcher;
     private int matchLevel;
     private String minMatchStr;
+    private final boolean indexInsensitive;
 
     public Customization(String path, ValueMatcher<Object> matcher) {
         if (path == null) {
@@ -41,6 +42,34 @@ public final class Customization {
         buildMatchParam(path);
         this.path = Pattern.compile(buildPattern(path));
         this.matcher = matcher;
+        this.indexInsensitive = isIndexInsensitive(path);
+    }
+
+    // Literal characters of the path only match literal characters of a compared path. As long as none of them
+    // can fall inside a [...] segment, the segment is only ever covered by a wildcard, which matches any
+    // non-empty segment content without dots alike.
+    private static boolean isIndexInsensitive(String path) {
+        boolean inBrackets = false;
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '[') {
+                inBrackets = true;
+            } else if (c == ']') {
+                inBrackets = false;
+            } else if (inBrackets && c != '*') {
+                // e.g. orders[0].price targets one index
+                return false;
+            } else if (c == '*' && i + 1 < path.length() && !isStructural(path.charAt(i + 1))) {
+                // a wildcard may cover a '[', so a literal right after it may match inside a segment, e.g. the 1
+                // of orders*1].price or a*1*
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isStructural(char c) {
+        return c == '*' || c == '.' || c == '[' || c == ']';
     }
 
     /**
@@ -144,6 +173,17 @@ public final class Customization {
 //		return this.path.matcher(path).matches();
     }
 
+    /**
+     * Does it depend on the contents of the [...] segments of a path, i.e. array indices and unique key values,
+     * whether this customization applies to the path? Rules like {@code orders[*].price} or {@code **.price}
+     * apply to every element alike, while {@code orders[0].price} targets one index.
+     *
+     * @return true if the segment contents don't matter
+     */
+    public boolean isIndexInsensitive() {
+        return indexInsensitive;
+    }
+
     /**
      * Return true if actual value matches expected value using this
      * Customization's comparator. Calls to this method should be replaced by
@@ -188,6 +228,16 @@ public final class Customization {
         return matcher.equal(actual, expected);
     }
 
+    /**
+     * Lets the matcher precompute what it derives from an expected value, see
+     * {@link ValueMatcher#prepareExpected(Object)}.
+     *
+     * @param expected an expected value at a path this customization applies to
+     */
+    public void prepareExpected(Object expected) {
+        matcher.prepareExpected(expected);
+    }
+
     public String instanceOfMatcher() {
         return matcher.getClass().getSimpleName();
     }
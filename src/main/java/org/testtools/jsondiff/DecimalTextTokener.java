@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Tokener that remembers the source text of the decimals it parses. org.json parses a decimal to a
+ * {@link BigDecimal}, or a {@link Double} for a negative zero, whose {@code toString()} may differ from the text,
+ * e.g. 1E-21 for 0.000000000000000000001, while the normalization of {@link JSONCompare#select} depends on the
+ * text, see {@link JSONCompare#normalizeNumbers(Object, Map)}.
+ */
+final class DecimalTextTokener extends JSONTokener {
+
+    private final Map<Object, String> decimalTexts;
+
+    private DecimalTextTokener(String s, Map<Object, String> decimalTexts) {
+        super(s);
+        this.decimalTexts = decimalTexts;
+    }
+
+    /**
+     * Parses a JSON value like org.json does.
+     *
+     * @param s            JSON text
+     * @param decimalTexts receives the source text of each decimal of the value, keyed by identity
+     * @return the parsed value
+     * @throws JSONException JSON parsing error
+     */
+    static Object parse(String s, Map<Object, String> decimalTexts) throws JSONException {
+        return new DecimalTextTokener(s, decimalTexts).nextValue();
+    }
+
+    @Override
+    public Object nextValue() throws JSONException {
+        char c = nextClean();
+        if (c != '-' && (c < '0' || c > '9')) {
+            back();
+            return super.nextValue();
+        }
+        // reads an unquoted value like JSONTokener does, keys aren't read through this method
+        StringBuilder sb = new StringBuilder();
+        while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
+            sb.append(c);
+            c = next();
+        }
+        if (!end()) {
+            back();
+        }
+        String text = sb.toString().trim();
+        Object value = JSONObject.stringToValue(text);
+        if (value instanceof BigDecimal || value instanceof Double) {
+            decimalTexts.put(value, text);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff;
+
+/**
+ * Receives the differences of a comparison while the comparator finds them.
+ *
+ * <p>A listener is attached to a {@link JSONCompareDetailResult} with
+ * {@link JSONCompareDetailResult#setListener(DiffListener, boolean)}, or passed to
+ * {@link JSONCompare#compareJSON(String, String, org.testtools.jsondiff.comparator.JSONComparator, DiffListener)}.
+ * When the result does not retain the failures itself, the memory used for results no longer grows with the
+ * number of differences. Failures over a failure budget are not reported.</p>
+ *
+ * @see org.testtools.jsondiff.listener.InMemoryDiffListener
+ * @see org.testtools.jsondiff.listener.NdjsonDiffListener
+ * @see org.testtools.jsondiff.listener.CountingDiffListener
+ */
+public interface DiffListener {
+
+    /**
+     * Called when the comparator starts comparing the values at a path.
+     *
+     * @param path path of the compared values, "" for the root
+     */
+    default void onEnterPath(String path) {
+    }
+
+    /**
+     * Called for a field whose expected and actual values differ.
+     *
+     * @param failure the failure
+     */
+    void onFailure(FieldComparisonFailure failure);
+
+    /**
+     * Called for a field that only exists in the expected JSON.
+     *
+     * @param failure the failure, its actual value is null
+     */
+    void onMissing(FieldComparisonFailure failure);
+
+    /**
+     * Called for a field that only exists in the actual JSON.
+     *
+     * @param failure the failure, its expected value is null
+     */
+    void onUnexpected(FieldComparisonFailure failure);
+
+    /**
+     * Whether the failures passed to this listener should carry their absolute paths, see
+     * {@link FieldComparisonFailure#getExpectedPath()}. Tracking them costs a little on keyed arrays.
+     *
+     * @return true to track absolute paths
+     */
+    default boolean needsAbsolutePaths() {
+        return false;
+    }
+
+    /**
+     * Called once when the comparison is finished.
+     *
+     * @param passed true if no difference was found
+     */
+    default void onComplete(boolean passed) {
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff;
+
+/**
+ * Kinds of {@link FieldComparisonFailure} recorded in a {@link JSONCompareDetailResult}.
+ */
+public enum FailureCategory {
+    /** The field exists on both sides but the values differ. */
+    FAILURE("actual unequals to expected"),
+    /** The field only exists in the expected JSON. */
+    MISSING("only in expected"),
+    /** The field only exists in the actual JSON. */
+    UNEXPECTED("only in actual");
+
+    private final String reason;
+
+    FailureCategory(String reason) {
+        this.reason = reason;
+    }
+
+    /**
+     * @return reason reported for this category in a {@link FailureField}
+     */
+    public String getReason() {
+        return reason;
+    }
+}
@@ -21,11 +21,20 @@ public class FieldComparisonFailure {
     private final String _field;
     private final Object _expected;
     private final Object _actual;
+    private final String _expectedPath;
+    private final String _actualPath;
 
     public FieldComparisonFailure(String field, Object expected, Object actual) {
+        this(field, expected, actual, null, null);
+    }
+
+    public FieldComparisonFailure(String field, Object expected, Object actual, String expectedPath,
+                                  String actualPath) {
         this._field = field;
         this._expected = expected;
         this._actual = actual;
+        this._expectedPath = expectedPath;
+        this._actualPath = actualPath;
     }
 
     public String getField() {
@@ -39,4 +48,25 @@ public class FieldComparisonFailure {
     public Object getActual() {
         return _actual;
     }
+
+    /**
+     * Absolute path of the field in the expected JSON, with real array indices instead of unique key selectors.
+     * For a field that only exists in the actual JSON, this is where it would be added to the expected JSON,
+     * with {@code [-]} as the index of an array element.
+     *
+     * @return the path, or null if absolute paths were not tracked
+     */
+    public String getExpectedPath() {
+        return _expectedPath;
+    }
+
+    /**
+     * Absolute path of the field in the actual JSON, with real array indices instead of unique key selectors.
+     * Values of unordered arrays of simple values have the path of their array.
+     *
+     * @return the path, or null if the field is not in the actual JSON or absolute paths were not tracked
+     */
+    public String getActualPath() {
+        return _actualPath;
+    }
 }
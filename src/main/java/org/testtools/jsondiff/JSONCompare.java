@@ -14,24 +14,56 @@
 
 package org.testtools.jsondiff;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.DocumentContext;
 import com.jayway.jsonpath.JsonPath;
-import org.testtools.jsondiff.comparator.CustomComparator;
+import com.jayway.jsonpath.JsonPathException;
+import com.jayway.jsonpath.PathNotFoundException;
+import com.jayway.jsonpath.spi.json.JsonOrgJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JsonOrgMappingProvider;
+import org.testtools.jsondiff.batch.BatchComparator;
+import org.testtools.jsondiff.batch.BatchResultHandler;
+import org.testtools.jsondiff.batch.BatchSummary;
+import org.testtools.jsondiff.batch.ComparePair;
 import org.testtools.jsondiff.comparator.DefaultComparator;
+import org.testtools.jsondiff.dataset.DatasetComparator;
+import org.testtools.jsondiff.dataset.DatasetResultHandler;
+import org.testtools.jsondiff.dataset.DatasetSummary;
 import org.testtools.jsondiff.comparator.JSONComparator;
-import org.apache.commons.lang.StringUtils;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONString;
+import org.json.JSONTokener;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
 
 /**
  * Provides API to compare two JSON entities using YAML configuration.
  */
 public final class JSONCompare {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    // reads JSONPath selections straight from org.json documents
+    static final Configuration ORG_JSON = Configuration.builder()
+            .jsonProvider(new JsonOrgJsonProvider())
+            .mappingProvider(new JsonOrgMappingProvider())
+            .build();
+
     private JSONCompare() {
     }
 
@@ -99,7 +131,7 @@ public final class JSONCompare {
 
     /**
      * Compares {@link JSONString} provided to the expected {@code JSONString}, checking that the
-     * {@link JSONString#toJSONString()} are equal.
+     * {@link JSONString#toJSONString()} are equal. A difference is a failure on the root path "".
      *
      * @param expected Expected {@code JSONstring}
      * @param actual   {@code JSONstring} to compare
@@ -107,12 +139,17 @@ public final class JSONCompare {
      */
     public static JSONCompareDetailResult compareJSONInternal(final JSONString expected, final JSONString actual) {
         final JSONCompareDetailResult result = new JSONCompareDetailResult();
-        final String expectedJson = expected.toJSONString();
-        final String actualJson = actual.toJSONString();
+        compareJSONStrings(expected, actual, result);
+        return result;
+    }
+
+    // A difference of two scalar documents is a failure on the root, like a difference of two values of an object.
+    private static void compareJSONStrings(JSONString expected, JSONString actual, JSONCompareDetailResult result) {
+        String expectedJson = expected.toJSONString();
+        String actualJson = actual.toJSONString();
         if (!expectedJson.equals(actualJson)) {
-            result.fail("");
+            result.fail("", new JSONTokener(expectedJson).nextValue(), new JSONTokener(actualJson).nextValue());
         }
-        return result;
     }
 
     /**
@@ -168,11 +205,327 @@ public final class JSONCompare {
      */
     public static JSONCompareResult compareJSON(String expectedStr, String actualStr, String yamlRule)
             throws Exception {
-        JSONCompareConf yamlRuleObj = new JSONCompareConf();
-        yamlRuleObj.readNodeFromYaml(yamlRule);
-        List<CompareRule> compareRules = yamlRuleObj.getCompareRules();
+        return compareJSON(expectedStr, actualStr, compileRules(yamlRule));
+    }
+
+    /**
+     * Compiles YAML comparison rules for repeated comparisons, see {@link #compareJSON(String, String,
+     * CompiledCompareRules)} and {@link #equalsUnderRules(String, String, CompiledCompareRules)}.
+     *
+     * @param yamlRule YAML configuration string containing comparison rules
+     * @return the compiled rules, which can be shared between threads
+     */
+    public static CompiledCompareRules compileRules(String yamlRule) {
+        return CompiledCompareRules.compile(yamlRule);
+    }
+
+    /**
+     * Compares JSON using compiled YAML configuration rules.
+     *
+     * @param expectedStr Expected JSON string
+     * @param actualStr   JSON string to compare
+     * @param rules       compiled comparison rules
+     * @return result of the comparison
+     * @throws Exception if comparison fails
+     */
+    public static JSONCompareResult compareJSON(String expectedStr, String actualStr, CompiledCompareRules rules)
+            throws Exception {
+        final JSONCompareResult result = new JSONCompareResult();
+        compareByRules(expectedStr, actualStr, rules, new RuleComparison() {
+            @Override
+            public void compare(CompareRule compareRule, JSONComparator comparator, String expected, String actual) {
+                compareRule(compareRule, comparator, expected, actual, result);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Compares JSON using compiled YAML configuration rules on the fork/join pool of the options. With
+     * {@link CompareOptions#isParallelRules()} the rules are compared concurrently; large objects and keyed
+     * arrays of rules with a {@code parallelThreshold} are split into fork/join tasks in either case. The
+     * result is the same as the one of {@link #compareJSON(String, String, CompiledCompareRules)}, failures
+     * included in the same order.
+     *
+     * @param expectedStr Expected JSON string
+     * @param actualStr   JSON string to compare
+     * @param rules       compiled comparison rules
+     * @param options     pool and parallel features
+     * @return result of the comparison
+     * @throws Exception if comparison fails
+     */
+    public static JSONCompareResult compareJSON(final String expectedStr, final String actualStr,
+                                                final CompiledCompareRules rules, final CompareOptions options)
+            throws Exception {
+        Future<JSONCompareResult> future = options.getPool().submit(new Callable<JSONCompareResult>() {
+            @Override
+            public JSONCompareResult call() throws Exception {
+                if (!options.isParallelRules()) {
+                    return compareJSON(expectedStr, actualStr, rules);
+                }
+                return compareRulesInParallel(expectedStr, actualStr, rules);
+            }
+        });
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
 
+    private static JSONCompareResult compareRulesInParallel(final String expectedStr, final String actualStr,
+                                                            CompiledCompareRules rules) {
+        final DocumentContext contextExpect = JsonPath.parse(expectedStr);
+        final DocumentContext contextActual = JsonPath.parse(actualStr);
+        final List<CompiledCompareRules.Rule> ruleList = rules.getRules();
+        List<ForkJoinTask<JSONCompareResult>> tasks = new ArrayList<ForkJoinTask<JSONCompareResult>>();
+        for (int i = 0; i < ruleList.size(); i++) {
+            final int index = i;
+            tasks.add(ForkJoinTask.adapt(new Callable<JSONCompareResult>() {
+                @Override
+                public JSONCompareResult call() throws Exception {
+                    // a rule without jsonPath compares the selection of the closest rule before it that has one
+                    String[] selection = {expectedStr, actualStr};
+                    for (int j = index; j >= 0; j--) {
+                        if (ruleList.get(j).selection != null) {
+                            selection = select(contextExpect, contextActual, ruleList.get(j));
+                            break;
+                        }
+                    }
+                    CompiledCompareRules.Rule rule = ruleList.get(index);
+                    JSONCompareResult part = new JSONCompareResult();
+                    compareRule(rule.compareRule, rule.comparator, selection[0], selection[1], part);
+                    return part;
+                }
+            }));
+        }
+        ForkJoinTask.invokeAll(tasks);
         JSONCompareResult result = new JSONCompareResult();
+        for (ForkJoinTask<JSONCompareResult> task : tasks) {
+            JSONCompareResult part = task.join();
+            result.addFailures(part.getFailure());
+            result.addSuppressedCount(part.getSuppressedCount());
+            result.setTimedOut(result.isTimedOut() || part.isTimedOut());
+        }
+        return result;
+    }
+
+    /**
+     * Compares JSON against an expected document prepared for compiled rules. The expected document is not
+     * parsed again, and the indices of its arrays are computed once for all comparisons against it. The result
+     * is the same as the one of {@link #compareJSON(String, String, CompiledCompareRules)}.
+     *
+     * @param baseline  expected document prepared with {@link Baseline#of(String, CompiledCompareRules)}
+     * @param actualStr JSON string to compare
+     * @return result of the comparison
+     * @throws Exception if comparison fails
+     */
+    public static JSONCompareResult compareJSON(Baseline baseline, String actualStr) throws Exception {
+        JSONCompareResult result = new JSONCompareResult();
+        DocumentContext contextActual = JsonPath.parse(actualStr);
+        String actualByJsonPath = actualStr;
+        List<CompiledCompareRules.Rule> ruleList = baseline.getRules().getRules();
+        for (int i = 0; i < ruleList.size(); i++) {
+            CompiledCompareRules.Rule rule = ruleList.get(i);
+            if (rule.selection != null) {
+                actualByJsonPath = select(contextActual, rule);
+            }
+            try {
+                Object expected = baseline.getSelection(i);
+                Object actual = JSONParser.parseJSON(actualByJsonPath, baseline.getSymbolTable());
+                JSONCompareDetailResult detailResult;
+                if ((expected instanceof JSONObject && actual instanceof JSONObject)
+                        || (expected instanceof JSONArray && actual instanceof JSONArray)) {
+                    detailResult = new JSONCompareDetailResult();
+                    detailResult.setBaselineIndex(baseline.getIndex(i));
+                    compareJSON(expected, actual, rule.comparator, detailResult);
+                } else if (expected instanceof JSONString && actual instanceof JSONString) {
+                    detailResult = compareJSONInternal((JSONString) expected, (JSONString) actual);
+                } else {
+                    detailResult = new JSONCompareDetailResult();
+                    detailResult.fail("", expected, actual);
+                }
+                addRuleResult(rule.compareRule, JSONCompareResultUtil.getSimpleResult(detailResult), result);
+            } catch (JSONException e) {
+                result.addFailure(new FailureField("", "", rule.compareRule.getJsonPath(), e.getMessage()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compares parsed JSON documents using compiled YAML configuration rules. The selection of each rule is read
+     * from the parsed documents rather than serialized and parsed again, with their decimals normalized like the
+     * serialization would, so the result is the one of {@link #compareJSON(String, String, CompiledCompareRules)}
+     * for the source texts of the documents.
+     *
+     * @param expected expected document
+     * @param actual   document to compare
+     * @param rules    compiled comparison rules
+     * @return result of the comparison
+     * @throws Exception if comparison fails
+     */
+    public static JSONCompareResult compareJSON(ParsedDocument expected, ParsedDocument actual,
+                                                CompiledCompareRules rules) throws Exception {
+        JSONCompareResult result = new JSONCompareResult();
+        Object expectedByJsonPath = expected.document;
+        Object actualByJsonPath = actual.document;
+        for (CompiledCompareRules.Rule rule : rules.getRules()) {
+            try {
+                if (rule.selection != null) {
+                    expectedByJsonPath = select(rule, expected.document, expected.decimalTexts);
+                    actualByJsonPath = select(rule, actual.document, actual.decimalTexts);
+                }
+                JSONCompareDetailResult detailResult = new JSONCompareDetailResult();
+                compareJSON(asParsedJSON(expectedByJsonPath), asParsedJSON(actualByJsonPath), rule.comparator,
+                        detailResult);
+                addRuleResult(rule.compareRule, JSONCompareResultUtil.getSimpleResult(detailResult), result);
+            } catch (JSONException e) {
+                result.addFailure(new FailureField("", "", rule.compareRule.getJsonPath(), e.getMessage()));
+            }
+        }
+        return result;
+    }
+
+    // Gives a scalar selection the JSONString compareJSONComparator() parses it to, or fails like it does.
+    private static Object asParsedJSON(Object value) throws JSONException {
+        if (value instanceof JSONObject || value instanceof JSONArray) {
+            return value;
+        }
+        return JSONParser.parseJSON(JSONObject.valueToString(value));
+    }
+
+    /**
+     * Compares JSON using compiled YAML configuration rules, taking the prepared expected document from a
+     * cache, see {@link BaselineCache}.
+     *
+     * @param expectedStr Expected JSON string, which is also the cache key
+     * @param actualStr   JSON string to compare
+     * @param rules       compiled comparison rules
+     * @param cache       cache of prepared expected documents
+     * @return result of the comparison
+     * @throws Exception if comparison fails
+     */
+    public static JSONCompareResult compareJSON(String expectedStr, String actualStr, CompiledCompareRules rules,
+                                                BaselineCache cache) throws Exception {
+        return compareJSON(cache.get(expectedStr, rules), actualStr);
+    }
+
+    private static void compareRule(CompareRule compareRule, JSONComparator comparator, String expected,
+                                    String actual, JSONCompareResult result) {
+        try {
+            addRuleResult(compareRule, compareJSONComparator(expected, actual, comparator), result);
+        } catch (JSONException e) {
+            FailureField failureField = new FailureField("", "", compareRule.getJsonPath(), e.getMessage());
+            result.addFailure(failureField);
+        }
+    }
+
+    private static void addRuleResult(CompareRule compareRule, JSONCompareSimpleResult compareSimpleResult,
+                                      JSONCompareResult result) {
+        result.addFailures(compareSimpleResult.getFailure());
+        result.addSuppressedCount(compareSimpleResult.getSuppressedCount());
+        if (compareSimpleResult.isTimedOut()) {
+            // the failures found so far don't tell the selection apart from an equal one
+            result.addFailure(new FailureField("", "", compareRule.getJsonPath(), JSONCompareResult.TIMED_OUT_REASON));
+            result.setTimedOut(true);
+        }
+    }
+
+    /**
+     * Compares JSON using YAML configuration rules and streams the differences to a listener instead of
+     * collecting them. Paths reported by the listener are relative to the rule's jsonPath; a rule whose
+     * selection can't be compared is reported as a failure on its jsonPath.
+     *
+     * @param expectedStr Expected JSON string
+     * @param actualStr   JSON string to compare
+     * @param yamlRule    YAML configuration string containing comparison rules
+     * @param listener    listener that receives the differences of all rules
+     * @return true if no difference was found
+     * @throws Exception if YAML parsing or comparison fails
+     */
+    public static boolean compareJSON(String expectedStr, String actualStr, String yamlRule,
+                                      final DiffListener listener) throws Exception {
+        final boolean[] passed = {true};
+        compareByRules(expectedStr, actualStr, compileRules(yamlRule), new RuleComparison() {
+            @Override
+            public void compare(CompareRule compareRule, JSONComparator comparator, String expected, String actual) {
+                JSONCompareDetailResult result = new JSONCompareDetailResult();
+                result.setListener(listener, false);
+                try {
+                    compareJSON(JSONParser.parseJSON(expected), JSONParser.parseJSON(actual), comparator, result);
+                } catch (JSONException e) {
+                    listener.onFailure(new FieldComparisonFailure(compareRule.getJsonPath(), "", e.getMessage()));
+                    passed[0] = false;
+                }
+                if (result.isTimedOut()) {
+                    listener.onFailure(new FieldComparisonFailure(compareRule.getJsonPath(), "",
+                            JSONCompareResult.TIMED_OUT_REASON));
+                }
+                passed[0] &= result.passed();
+            }
+        });
+        listener.onComplete(passed[0]);
+        return passed[0];
+    }
+
+    /**
+     * Compares JSON using YAML configuration rules and writes the failures of all rules to a stream as one JSON
+     * array, in the schema of {@link FailureField}. The output is the same as serializing
+     * {@link JSONCompareResult#getFailure()} of {@link #compareJSON(String, String, String)}, without building
+     * the intermediate results.
+     *
+     * @param expectedStr Expected JSON string
+     * @param actualStr   JSON string to compare
+     * @param yamlRule    YAML configuration string containing comparison rules
+     * @param out         stream the failures are written to in UTF-8, it is flushed but not closed
+     * @return true if no difference was found
+     * @throws Exception if YAML parsing, comparison or writing fails
+     */
+    public static boolean compareJSON(String expectedStr, String actualStr, String yamlRule,
+                                      OutputStream out) throws Exception {
+        final JsonGenerator generator = JSONCompareResultWriter.createGenerator(out);
+        final boolean[] passed = {true};
+        generator.writeStartArray();
+        compareByRules(expectedStr, actualStr, compileRules(yamlRule), new RuleComparison() {
+            @Override
+            public void compare(CompareRule compareRule, JSONComparator comparator, String expected, String actual) {
+                try {
+                    JSONCompareDetailResult result = new JSONCompareDetailResult();
+                    try {
+                        compareJSON(JSONParser.parseJSON(expected), JSONParser.parseJSON(actual), comparator, result);
+                    } catch (JSONException e) {
+                        JSONCompareResultWriter.writeFailureField(generator, "", "", compareRule.getJsonPath(),
+                                e.getMessage());
+                        passed[0] = false;
+                        return;
+                    }
+                    JSONCompareResultWriter.writeFailureFields(result, generator);
+                    if (result.isTimedOut()) {
+                        // like addRuleResult, the failures found so far don't tell the selection apart
+                        JSONCompareResultWriter.writeFailureField(generator, "", "", compareRule.getJsonPath(),
+                                JSONCompareResult.TIMED_OUT_REASON);
+                    }
+                    passed[0] &= result.passed();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to write comparison result", e);
+                }
+            }
+        });
+        generator.writeEndArray();
+        generator.close();
+        return passed[0];
+    }
+
+    /**
+     * Compares the selection of each rule of a YAML configuration.
+     */
+    private interface RuleComparison {
+        void compare(CompareRule compareRule, JSONComparator comparator, String expected, String actual);
+    }
+
+    private static void compareByRules(String expectedStr, String actualStr, CompiledCompareRules rules,
+                                       RuleComparison comparison) throws Exception {
         // Parse JSON strings
         DocumentContext contextExpect = JsonPath.parse(expectedStr);
         DocumentContext contextActual = JsonPath.parse(actualStr);
@@ -181,32 +534,239 @@ public final class JSONCompare {
         String expectedByJsonPath = expectedStr;
         String actualByJsonPath = actualStr;
 
-        for (CompareRule compareRule : compareRules) {
-            CustomComparator comparator = CompareRulesTransformer.getComparator(compareRule);
-            if (compareRule.getJsonPath() != null) {
-                ObjectMapper objectMapper = new ObjectMapper();
-                expectedByJsonPath = objectMapper.writeValueAsString(contextExpect.read(compareRule.getJsonPath()));
-                actualByJsonPath = objectMapper.writeValueAsString(contextActual.read(compareRule.getJsonPath()));
-                //If compareRule has preprocess and removeNode's jsonPath is not empty, perform preprocessing first
-                if (compareRule.getPreProcesses() != null){
-                    for (PreProcessItem preProcess : compareRule.getPreProcesses()) {
-                        if ("removeNode".equals(preProcess.getAction())  && !StringUtils.isEmpty(preProcess.getPath())) {
-                            expectedByJsonPath = removeNode(expectedByJsonPath, preProcess.getPath());
-                            actualByJsonPath = removeNode(actualByJsonPath, preProcess.getPath());
+        for (CompiledCompareRules.Rule rule : rules.getRules()) {
+            if (rule.selection != null) {
+                String[] selection = select(contextExpect, contextActual, rule);
+                expectedByJsonPath = selection[0];
+                actualByJsonPath = selection[1];
+            }
+
+            comparison.compare(rule.compareRule, rule.comparator, expectedByJsonPath, actualByJsonPath);
+        }
+    }
+
+    // Serializes the selection of a rule with a jsonPath, preprocessed, as {expected, actual}.
+    private static String[] select(DocumentContext contextExpect, DocumentContext contextActual,
+                                   CompiledCompareRules.Rule rule) throws IOException {
+        return new String[]{select(contextExpect, rule), select(contextActual, rule)};
+    }
+
+    // Serializes the selection of a rule with a jsonPath in one document, preprocessed.
+    static String select(DocumentContext context, CompiledCompareRules.Rule rule) throws IOException {
+        String byJsonPath = OBJECT_MAPPER.writeValueAsString(context.read(rule.selection));
+        //If compareRule has preprocess and removeNode's jsonPath is not empty, perform preprocessing first
+        for (JsonPath removal : rule.removals) {
+            byJsonPath = JsonPath.parse(byJsonPath).delete(removal).jsonString();
+        }
+        return byJsonPath;
+    }
+
+    /**
+     * Compares a batch of document pairs against YAML configuration rules, which are compiled once. Pairs are
+     * compared on the executor, at most {@link BatchComparator#DEFAULT_MAX_IN_FLIGHT} at a time, and the
+     * results are handed to the handler on the calling thread in batch order, see {@link BatchComparator}.
+     *
+     * @param pairs    the batch, iterated once
+     * @param yamlRule YAML configuration string containing comparison rules
+     * @param executor executor that runs the comparisons, or null for virtual threads when available
+     * @param handler  receives the results in batch order
+     * @return counts of the batch
+     */
+    public static BatchSummary compareBatch(Iterable<ComparePair> pairs, String yamlRule, Executor executor,
+                                            BatchResultHandler handler) {
+        return compareBatch(pairs, compileRules(yamlRule), executor, handler);
+    }
+
+    /**
+     * Compares a batch of document pairs against compiled rules, see
+     * {@link #compareBatch(Iterable, String, Executor, BatchResultHandler)}.
+     *
+     * @param pairs    the batch, iterated once
+     * @param rules    compiled comparison rules
+     * @param executor executor that runs the comparisons, or null for virtual threads when available
+     * @param handler  receives the results in batch order
+     * @return counts of the batch
+     */
+    public static BatchSummary compareBatch(Iterable<ComparePair> pairs, CompiledCompareRules rules,
+                                            Executor executor, BatchResultHandler handler) {
+        return new BatchComparator(rules, executor).compare(pairs, handler);
+    }
+
+    /**
+     * Compares two NDJSON datasets whose records are matched by a key, against YAML configuration rules which
+     * are compiled once. Records only in the expected or actual dataset are reported as missing or extra, and
+     * joined records are compared in a pipeline, see {@link DatasetComparator}.
+     *
+     * @param expected  file of expected records, one JSON document per line
+     * @param actual    file of actual records, one JSON document per line
+     * @param recordKey JSONPath of the key of a record, e.g. {@code $.id}
+     * @param yamlRule  YAML configuration string containing comparison rules
+     * @param handler   receives the outcome of each record on the calling thread
+     * @return counts of the comparison
+     * @throws IOException if a file can't be read
+     */
+    public static DatasetSummary compareDatasets(Path expected, Path actual, String recordKey, String yamlRule,
+                                                 DatasetResultHandler handler) throws IOException {
+        return new DatasetComparator(recordKey, compileRules(yamlRule)).compare(expected, actual, handler);
+    }
+
+    /**
+     * Tells whether two JSON documents are equal under compiled YAML configuration rules, without building
+     * any result. The documents are parsed once and each rule's selection is read from the parsed documents
+     * rather than serialized and parsed again, with their decimals normalized like the serialization would. The
+     * comparison stops at the first difference, across rules, customizations and arrays, see {@link JSONCompareDetailResult#newProbe()}.
+     *
+     * <p>The outcome is the one of {@link #compareJSON(String, String, CompiledCompareRules)}: a selection
+     * that can't be compared counts as a difference, and a rule without jsonPath compares the selection of
+     * the previous rule.</p>
+     *
+     * @param expectedStr Expected JSON string
+     * @param actualStr   JSON string to compare
+     * @param rules       compiled comparison rules
+     * @return true if the documents are equal under the rules
+     * @throws JSONException if a document can't be parsed
+     */
+    public static boolean equalsUnderRules(String expectedStr, String actualStr, CompiledCompareRules rules)
+            throws JSONException {
+        Map<Object, String> decimalTexts = new IdentityHashMap<Object, String>();
+        Object expectedDoc = DecimalTextTokener.parse(expectedStr, decimalTexts);
+        Object actualDoc = DecimalTextTokener.parse(actualStr, decimalTexts);
+        Object expected = expectedDoc;
+        Object actual = actualDoc;
+        JSONCompareDetailResult probe = JSONCompareDetailResult.newProbe();
+        for (CompiledCompareRules.Rule rule : rules.getRules()) {
+            try {
+                if (rule.selection != null) {
+                    expected = select(rule, expectedDoc, decimalTexts);
+                    actual = select(rule, actualDoc, decimalTexts);
+                }
+                if (!matchesUnderRule(rule.comparator, expected, actual, probe)) {
+                    return false;
+                }
+            } catch (JSONException e) {
+                // reported as a failure on the rule's jsonPath by compareJSON
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesUnderRule(JSONComparator comparator, Object expected, Object actual,
+                                            JSONCompareDetailResult probe) {
+        if ((expected instanceof JSONObject && actual instanceof JSONObject)
+                || (expected instanceof JSONArray && actual instanceof JSONArray)) {
+            return comparator.matches(expected, actual, probe);
+        }
+        // like JSONParser, only strings and numbers are comparable scalar selections
+        return (expected instanceof String || expected instanceof Number)
+                && (actual instanceof String || actual instanceof Number)
+                && JSONObject.valueToString(expected).equals(JSONObject.valueToString(actual));
+    }
+
+    // Reads the selection of a rule with a jsonPath from a document parsed with DecimalTextTokener, preprocessed and
+    // normalized like select() serializes it.
+    static Object select(CompiledCompareRules.Rule rule, Object document, Map<Object, String> decimalTexts) {
+        Object selected = readSelection(rule, document);
+        if (!rule.removals.isEmpty()) {
+            // removals must not touch the document, later rules select from it again
+            selected = deepCopy(selected);
+            for (JsonPath removal : rule.removals) {
+                selected = removal.delete(selected, ORG_JSON);
+            }
+        }
+        return normalizeNumbers(selected, decimalTexts);
+    }
+
+    // Reads the selection of a rule from a document parsed with ORG_JSON. JsonPath fails to read a JSON null from
+    // org.json documents, it is returned as JSONObject.NULL like select() serializes it.
+    static Object readSelection(CompiledCompareRules.Rule rule, Object document) {
+        try {
+            return rule.selection.read(document, ORG_JSON);
+        } catch (PathNotFoundException e) {
+            throw e;
+        } catch (JsonPathException e) {
+            if (e.getCause() instanceof JSONException) {
+                return JSONObject.NULL;
+            }
+            throw e;
+        }
+    }
+
+    // Gives the decimals of a selection read with ORG_JSON the type and scale select() gives them: JsonSmart reads
+    // a decimal whose source text has up to 18 characters as a double, and Jackson writes it back, so 1.50 becomes
+    // 1.5. The source texts are those recorded by DecimalTextTokener, toString() stands in for unknown ones.
+    // Unchanged subtrees are returned as they are, changed ones are copied.
+    static Object normalizeNumbers(Object value, Map<Object, String> decimalTexts) {
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            JSONObject copy = null;
+            for (String key : object.keySet()) {
+                Object child = object.opt(key);
+                Object normalized = normalizeNumbers(child, decimalTexts);
+                if (normalized != child) {
+                    if (copy == null) {
+                        copy = new JSONObject();
+                        for (String other : object.keySet()) {
+                            copy.put(other, object.opt(other));
+                        }
+                    }
+                    copy.put(key, normalized);
+                }
+            }
+            return copy == null ? object : copy;
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            JSONArray copy = null;
+            for (int i = 0; i < array.length(); i++) {
+                Object child = array.opt(i);
+                Object normalized = normalizeNumbers(child, decimalTexts);
+                if (normalized != child) {
+                    if (copy == null) {
+                        copy = new JSONArray(array.length());
+                        for (int j = 0; j < array.length(); j++) {
+                            copy.put(array.opt(j));
                         }
                     }
+                    copy.put(i, normalized);
                 }
             }
+            return copy == null ? array : copy;
+        } else if (value instanceof BigDecimal || value instanceof Double) {
+            String text = decimalTexts.get(value);
+            if (text == null) {
+                text = value.toString();
+            }
+            String written;
+            if (text.length() > 18) {
+                written = new BigDecimal(text).toString();
+            } else {
+                double d = Double.parseDouble(text);
+                // Jackson writes non-finite doubles as strings
+                written = Double.isInfinite(d) ? JSONObject.quote(Double.toString(d)) : Double.toString(d);
+            }
+            Object normalized = new JSONTokener(written).nextValue();
+            return normalized.equals(value) ? value : normalized;
+        }
+        return value;
+    }
 
-            try {
-                JSONCompareSimpleResult compareSimpleResult = compareJSONComparator(expectedByJsonPath, actualByJsonPath, comparator);
-                result.addFailures(compareSimpleResult.getFailure());
-            } catch (JSONException e) {
-                FailureField failureField = new FailureField("", "", compareRule.getJsonPath(), e.getMessage());
-                result.addFailure(failureField);
+    static Object deepCopy(Object value) {
+        if (value instanceof JSONObject) {
+            JSONObject source = (JSONObject) value;
+            JSONObject copy = new JSONObject();
+            for (String key : source.keySet()) {
+                copy.put(key, deepCopy(source.opt(key)));
             }
+            return copy;
+        } else if (value instanceof JSONArray) {
+            JSONArray source = (JSONArray) value;
+            JSONArray copy = new JSONArray();
+            for (int i = 0; i < source.length(); i++) {
+                copy.put(deepCopy(source.opt(i)));
+            }
+            return copy;
         }
-        return result;
+        return value;
     }
 
 
@@ -239,6 +799,73 @@ public final class JSONCompare {
         return JSONCompareResultUtil.getSimpleResult(result);
     }
 
+    /**
+     * Compares JSON string provided to the expected JSON string using provided comparator, and streams the
+     * differences to a listener instead of collecting them. The returned result only tracks the outcome and
+     * the failure counts, so memory no longer grows with the number of differences.
+     *
+     * @param expectedStr Expected JSON string
+     * @param actualStr   JSON string to compare
+     * @param comparator  Comparator to use
+     * @param listener    listener that receives the differences
+     * @return result of the comparison, without failure lists
+     * @throws JSONException JSON parsing error
+     */
+    public static JSONCompareDetailResult compareJSON(String expectedStr, String actualStr,
+                                                      JSONComparator comparator, DiffListener listener)
+            throws JSONException {
+        JSONCompareDetailResult result = new JSONCompareDetailResult();
+        result.setListener(listener, false);
+        compareJSON(JSONParser.parseJSON(expectedStr), JSONParser.parseJSON(actualStr), comparator, result);
+        result.complete();
+        return result;
+    }
+
+    /**
+     * Compares JSON string provided to the expected JSON string using provided comparator, and returns a result
+     * that also holds the absolute path of every failure in both documents. The paths are recorded while
+     * comparing, with the real array index in place of each unique key selector.
+     *
+     * @param expectedStr Expected JSON string
+     * @param actualStr   JSON string to compare
+     * @param comparator  Comparator to use
+     * @return result of the comparison with absolute paths
+     * @throws JSONException JSON parsing error
+     */
+    public static JSONCompareDeepDetailResult compareJSONDeepDetail(String expectedStr, String actualStr,
+                                                                    JSONComparator comparator)
+            throws JSONException {
+        JSONCompareDeepDetailResult result = new JSONCompareDeepDetailResult();
+        compareJSON(JSONParser.parseJSON(expectedStr), JSONParser.parseJSON(actualStr), comparator, result);
+        return result;
+    }
+
+    /**
+     * Compares parsed JSON values into a result prepared by the caller, for example one with a
+     * {@link DiffListener} attached. The comparator's features, such as fast-fail and ignoreNull, are applied
+     * to the result first.
+     *
+     * @param expected   expected JSONObject, JSONArray or JSONString
+     * @param actual     actual value
+     * @param comparator comparator to use
+     * @param result     result to update
+     * @throws JSONException JSON parsing error
+     */
+    public static void compareJSON(Object expected, Object actual, JSONComparator comparator,
+                                   JSONCompareDetailResult result) throws JSONException {
+        comparator.markResultFeature(result);
+        if ((expected instanceof JSONObject) && (actual instanceof JSONObject)) {
+            comparator.compareJSON("", (JSONObject) expected, (JSONObject) actual, result);
+        } else if ((expected instanceof JSONArray) && (actual instanceof JSONArray)) {
+            // like AbstractComparator, route root arrays through compareValues so root customizations apply
+            comparator.compareValues("", expected, actual, result);
+        } else if (expected instanceof JSONString && actual instanceof JSONString) {
+            compareJSONStrings((JSONString) expected, (JSONString) actual, result);
+        } else {
+            result.fail("", expected, actual);
+        }
+    }
+
     //Add preprocess method to preprocess json, remove corresponding nodes, and return new json
     public static String removeNode(String json, String jsonPath) {
         DocumentContext context = JsonPath.parse(json);
@@ -25,8 +25,13 @@ public class JSONCompareDeepDetailResult extends JSONCompareDetailResult {
     private final List<String> unexpectedFields = new ArrayList<>();
     private final List<String> missingFields = new ArrayList<>();
 
+    /**
+     * Creates a result that tracks absolute paths while comparing, see
+     * {@link org.testtools.jsondiff.JSONCompare#compareJSONDeepDetail(String, String, org.testtools.jsondiff.comparator.JSONComparator)}.
+     */
     public JSONCompareDeepDetailResult() {
         super();
+        setTrackAbsolutePaths(true);
     }
 
     public JSONCompareDeepDetailResult(JSONCompareDetailResult o) {
@@ -49,6 +54,21 @@ public class JSONCompareDeepDetailResult extends JSONCompareDetailResult {
         return missingFields;
     }
 
+    @Override
+    protected void recordAbsolutePaths(FailureCategory category, FieldComparisonFailure failure) {
+        switch (category) {
+            case MISSING:
+                addMissing(failure.getExpectedPath());
+                break;
+            case UNEXPECTED:
+                addUnexpected(failure.getActualPath());
+                break;
+            default:
+                addExpectedFail(failure.getExpectedPath());
+                addActualFail(failure.getActualPath());
+        }
+    }
+
     public void addActualFail(String prefix) {
         addToList(actualFailureFields, prefix);
     }
@@ -18,9 +18,16 @@ import org.testtools.jsondiff.matcher.ValueMatcherException;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import org.testtools.jsondiff.comparator.BaselineIndex;
+import org.testtools.jsondiff.comparator.JSONCompareUtil;
+import org.testtools.jsondiff.comparator.MatchMemo;
+
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Bean for holding results from JSONCompare.
@@ -30,13 +37,37 @@ public class JSONCompareDetailResult {
     private boolean _complete;  // whether need complete comparison.
     private boolean _quickFail; // whether need end comparison immediately.
     private boolean _ignoreNull; // whether need ignore comparison result for current element  when its value is null.
-    private final StringBuilder _message;
+    // messages are rendered from this log on demand, most results are never printed
+    private final List<MessageEntry> _messageLog;
+    private StringBuilder _renderedMessage;
+    private int _renderedEntries;
     private String _field;
     private Object _expected;
     private Object _actual;
-    private List<FieldComparisonFailure> _fieldFailures = new ArrayList<FieldComparisonFailure>();
-    private List<FieldComparisonFailure> _fieldMissing = new ArrayList<FieldComparisonFailure>();
-    private List<FieldComparisonFailure> _fieldUnexpected = new ArrayList<FieldComparisonFailure>();
+    // allocated on the first failure of each kind
+    private List<FieldComparisonFailure> _fieldFailures;
+    private List<FieldComparisonFailure> _fieldMissing;
+    private List<FieldComparisonFailure> _fieldUnexpected;
+    // failure budgets, 0 means unlimited; failures over budget are only counted
+    private int _maxFailures;
+    private int _maxFailuresPerPath;
+    private int _maxFailuresPerCategory;
+    private int _recordedCount;
+    private final int[] _recordedByCategory = new int[FailureCategory.values().length];
+    private final int[] _suppressedByCategory = new int[FailureCategory.values().length];
+    private Map<String, Integer> _recordedByPathPattern;
+    private DiffListener _listener;
+    private boolean _retainFailures = true;
+    // absolute-path frames pushed by keyed array strategies, null unless paths are tracked
+    private List<PathFrame> _pathFrames;
+    // a probe only learns whether a trial match passes: it records nothing and ends at the first difference
+    private boolean _probe;
+    // shared with the probes and parts of this comparison, null when it has no deadline
+    private Deadline _deadline;
+    private boolean _timedOut;
+    private BaselineIndex _baselineIndex;
+    private MatchMemo _matchMemo;
+    private JSONCompareDetailResult _memoOwner; // a probe shares the memo of the result it was created for
 
     /**
      * Default constructor.
@@ -51,25 +82,74 @@ public class JSONCompareDetailResult {
         _complete = complete;
         _quickFail = quickFail;
         _ignoreNull = ignoreNull;
-        _message = new StringBuilder(message == null ? "" : message);
+        _messageLog = new ArrayList<MessageEntry>();
+        if (message != null && !message.isEmpty()) {
+            _messageLog.add(new MessageEntry(null, null, message));
+        }
+    }
+
+    /**
+     * Creates a probe result, used to learn whether two values match without reporting anything. A probe
+     * records no failures and ends the comparison at the first difference, so a trial match only costs as
+     * much as the prefix the values share. A probe can be reused with {@link #resetProbe()}.
+     *
+     * @return a new probe result
+     */
+    public static JSONCompareDetailResult newProbe() {
+        JSONCompareDetailResult probe = new JSONCompareDetailResult();
+        probe._probe = true;
+        probe.resetProbe();
+        return probe;
+    }
+
+    /**
+     * Creates a probe result for a trial match inside a comparison. The probe ends when the deadline of the
+     * comparison passes, see {@link #setDeadline(long, CancellationToken)}.
+     *
+     * @param parent result of the comparison that runs the trial match
+     * @return a new probe result
+     */
+    public static JSONCompareDetailResult newProbe(JSONCompareDetailResult parent) {
+        JSONCompareDetailResult probe = newProbe();
+        probe._deadline = parent._deadline;
+        probe._baselineIndex = parent._baselineIndex;
+        probe._memoOwner = parent;
+        return probe;
+    }
+
+    /**
+     * Resets a probe result for the next trial match. The comparator's features have to be applied again.
+     */
+    public void resetProbe() {
+        _success = true;
+        _complete = false;
+        _quickFail = false;
+        _ignoreNull = false;
+    }
+
+    /**
+     * @return true if this result is a probe, see {@link #newProbe()}
+     */
+    public boolean isProbe() {
+        return _probe;
     }
 
     public JSONCompareDetailResult(JSONCompareDetailResult o) {
         this._success = o._success;
-        this._message = o._message;
+        this._messageLog = o._messageLog;
         this._field = o._field;
         this._expected = o._expected;
         this._actual = o._actual;
-        this._fieldFailures = o._fieldFailures;
-        this._fieldMissing = o._fieldMissing;
-        this._fieldUnexpected = o._fieldUnexpected;
+        this._fieldFailures = o.failures();
+        this._fieldMissing = o.missing();
+        this._fieldUnexpected = o.unexpected();
     }
 
     private static String describe(Object value) {
         if (value instanceof JSONArray) {
-            return "a JSON array: " + getShortenString(value.toString());
+            return "a JSON array: " + JSONCompareResultUtil.getShortenString(value);
         } else if (value instanceof JSONObject) {
-            return "a JSON object: " + getShortenString(value.toString());
+            return "a JSON object: " + JSONCompareResultUtil.getShortenString(value);
         } else if (value == null) {
             return "null";
         } else {
@@ -77,11 +157,23 @@ public class JSONCompareDetailResult {
         }
     }
 
-    private static String getShortenString(String s) {
-        if (s.length() > 100) {
-            return s.substring(0, 60) + "<...>" + s.substring(s.length() - 40);
-        }
-        return s;
+    private List<FieldComparisonFailure> failures() {
+        if (_fieldFailures == null) _fieldFailures = new ArrayList<FieldComparisonFailure>();
+        return _fieldFailures;
+    }
+
+    private List<FieldComparisonFailure> missing() {
+        if (_fieldMissing == null) _fieldMissing = new ArrayList<FieldComparisonFailure>();
+        return _fieldMissing;
+    }
+
+    private List<FieldComparisonFailure> unexpected() {
+        if (_fieldUnexpected == null) _fieldUnexpected = new ArrayList<FieldComparisonFailure>();
+        return _fieldUnexpected;
+    }
+
+    private static List<FieldComparisonFailure> view(List<FieldComparisonFailure> list) {
+        return list == null ? Collections.<FieldComparisonFailure>emptyList() : Collections.unmodifiableList(list);
     }
 
     private static boolean isNull(Object value) {
@@ -134,9 +226,74 @@ public class JSONCompareDetailResult {
      * @return True if it should be end immediately
      */
     public boolean quickFail() {
+        if (!_quickFail && _deadline != null && _deadline.expired()) {
+            _timedOut = true;
+            _success = false;
+            _quickFail = true;
+        }
         return _quickFail;
     }
 
+    /**
+     * Ends the comparison once a time budget has passed or a token is cancelled. The comparator checks the
+     * deadline between array elements and object keys, so the comparison stops within one element of a
+     * large subtree; the result then holds the failures found so far and is flagged, see
+     * {@link #isTimedOut()}. The first deadline set on a result applies, later calls are ignored.
+     *
+     * @param timeoutMillis time budget from now, 0 for none
+     * @param token         token that cancels the comparison, or null
+     */
+    public void setDeadline(long timeoutMillis, CancellationToken token) {
+        if (_deadline == null) {
+            _deadline = new Deadline(timeoutMillis, token);
+        }
+    }
+
+    /**
+     * Sets the index of the expected document, so the comparator reuses the unique keys, key maps, sorted
+     * values and signatures computed for that document by earlier comparisons instead of recomputing them.
+     *
+     * @param baselineIndex index of the expected document, or null
+     * @see org.testtools.jsondiff.Baseline
+     */
+    public void setBaselineIndex(BaselineIndex baselineIndex) {
+        _baselineIndex = baselineIndex;
+        _matchMemo = null;
+    }
+
+    /**
+     * @return index of the expected document, or null if there's none
+     */
+    public BaselineIndex getBaselineIndex() {
+        return _baselineIndex;
+    }
+
+    /**
+     * Returns the memo of the trial matches of this comparison, which is shared by its probes, see
+     * {@link #newProbe(JSONCompareDetailResult)}. Each part of a parallel comparison has a memo of its own.
+     *
+     * @return the memo, created on first use
+     */
+    public MatchMemo getMatchMemo() {
+        if (_memoOwner != null) {
+            return _memoOwner.getMatchMemo();
+        }
+        if (_matchMemo == null) {
+            _matchMemo = new MatchMemo(_baselineIndex);
+        }
+        return _matchMemo;
+    }
+
+    /**
+     * Did the comparison end early because its deadline passed or it was cancelled? The result is then
+     * partial: it failed, and it only holds the failures found before the deadline.
+     *
+     * @return true if the comparison timed out
+     */
+    public boolean isTimedOut() {
+        return _timedOut;
+    }
+
     /**
      * Did the comparison result for current element should be ignore when the value is null?
      *
@@ -152,7 +309,21 @@ public class JSONCompareDetailResult {
      * @return String explaining why if the comparison failed
      */
     public String getMessage() {
-        return _message.toString();
+        if (_renderedMessage == null) {
+            _renderedMessage = new StringBuilder();
+        }
+        // render only the entries logged since the last call
+        for (; _renderedEntries < _messageLog.size(); _renderedEntries++) {
+            if (_renderedMessage.length() > 0) {
+                _renderedMessage.append(" ; ");
+            }
+            _renderedMessage.append(_messageLog.get(_renderedEntries).render());
+        }
+        int suppressed = getSuppressedCount();
+        if (suppressed > 0) {
+            return _renderedMessage + " ; " + suppressed + " more failure(s) suppressed by the failure budget";
+        }
+        return _renderedMessage.toString();
     }
 
     /**
@@ -161,7 +332,7 @@ public class JSONCompareDetailResult {
      * @return list of comparsion failures
      */
     public List<FieldComparisonFailure> getFieldFailures() {
-        return Collections.unmodifiableList(_fieldFailures);
+        return view(_fieldFailures);
     }
 
     /**
@@ -170,7 +341,7 @@ public class JSONCompareDetailResult {
      * @return list of comparsion failures
      */
     public List<FieldComparisonFailure> getFieldMissing() {
-        return Collections.unmodifiableList(_fieldMissing);
+        return view(_fieldMissing);
     }
 
     /**
@@ -179,7 +350,7 @@ public class JSONCompareDetailResult {
      * @return list of comparsion failures
      */
     public List<FieldComparisonFailure> getFieldUnexpected() {
-        return Collections.unmodifiableList(_fieldUnexpected);
+        return view(_fieldUnexpected);
     }
 
     /**
@@ -214,7 +385,7 @@ public class JSONCompareDetailResult {
      * @return true if there are field failures
      */
     public boolean isFailureOnField() {
-        return !_fieldFailures.isEmpty();
+        return _fieldFailures != null && !_fieldFailures.isEmpty();
     }
 
     /**
@@ -223,7 +394,7 @@ public class JSONCompareDetailResult {
      * @return true if an expected field is missing
      */
     public boolean isMissingOnField() {
-        return !_fieldMissing.isEmpty();
+        return _fieldMissing != null && !_fieldMissing.isEmpty();
     }
 
     /**
@@ -232,7 +403,7 @@ public class JSONCompareDetailResult {
      * @return true if an unexpected field is in the result
      */
     public boolean isUnexpectedOnField() {
-        return !_fieldUnexpected.isEmpty();
+        return _fieldUnexpected != null && !_fieldUnexpected.isEmpty();
     }
 
     /**
@@ -248,14 +419,325 @@ public class JSONCompareDetailResult {
     }
 
     public void fail(String message) {
+        if (_probe) {
+            markFailed();
+            return;
+        }
+        log(new MessageEntry(null, null, message));
+    }
+
+    /**
+     * Limits the number of failures that are recorded individually. Failures over budget are only counted, see
+     * {@link #getSuppressedCount()}. Once the total budget is exhausted, or the budgets of all categories are,
+     * the comparison ends as in fast-fail mode, since its remaining subtrees could only add failures.
+     *
+     * @param maxFailures            maximum number of recorded failures, 0 for no limit
+     * @param maxFailuresPerPath     maximum number of recorded failures per path pattern (see
+     *                               {@link JSONCompareUtil#toPathPattern(String)}), 0 for no limit
+     * @param maxFailuresPerCategory maximum number of recorded failures per {@link FailureCategory}, 0 for no limit
+     */
+    public void setFailureBudget(int maxFailures, int maxFailuresPerPath, int maxFailuresPerCategory) {
+        _maxFailures = maxFailures;
+        _maxFailuresPerPath = maxFailuresPerPath;
+        _maxFailuresPerCategory = maxFailuresPerCategory;
+    }
+
+    /**
+     * Number of failures that were counted but not recorded because a failure budget was exhausted.
+     *
+     * @return number of suppressed failures
+     */
+    public int getSuppressedCount() {
+        int count = 0;
+        for (int c : _suppressedByCategory) {
+            count += c;
+        }
+        return count;
+    }
+
+    /**
+     * Number of failures of a category that were counted but not recorded because a failure budget was exhausted.
+     *
+     * @param category failure category
+     * @return number of suppressed failures of the category
+     */
+    public int getSuppressedCount(FailureCategory category) {
+        return _suppressedByCategory[category.ordinal()];
+    }
+
+    /**
+     * Were failures suppressed by a failure budget? The recorded failures are then a sample, and since the
+     * comparison ends once the total budget is exhausted, the suppressed counts are a lower bound.
+     *
+     * @return true if failures were suppressed
+     */
+    public boolean isTruncated() {
+        return getSuppressedCount() > 0;
+    }
+
+    // Decides whether a failure is recorded individually or only counted.
+    private boolean admit(FailureCategory category, String field) {
+        int c = category.ordinal();
+        boolean admitted = (_maxFailures <= 0 || _recordedCount < _maxFailures)
+                && (_maxFailuresPerCategory <= 0 || _recordedByCategory[c] < _maxFailuresPerCategory);
+        if (admitted && _maxFailuresPerPath > 0) {
+            if (_recordedByPathPattern == null) _recordedByPathPattern = new HashMap<String, Integer>();
+            String pattern = JSONCompareUtil.toPathPattern(field);
+            Integer count = _recordedByPathPattern.get(pattern);
+            admitted = count == null || count < _maxFailuresPerPath;
+            if (admitted) _recordedByPathPattern.put(pattern, count == null ? 1 : count + 1);
+        }
+        if (admitted) {
+            _recordedCount++;
+            _recordedByCategory[c]++;
+            return true;
+        }
+        _success = false;
+        if (!_complete) _quickFail = true;
+        _suppressedByCategory[c]++;
+        if (_maxFailures > 0 && _recordedCount >= _maxFailures) {
+            _quickFail = true;
+        } else if (_maxFailuresPerCategory > 0) {
+            boolean allExhausted = true;
+            for (int recorded : _recordedByCategory) {
+                allExhausted &= recorded >= _maxFailuresPerCategory;
+            }
+            if (allExhausted) _quickFail = true;
+        }
+        return false;
+    }
+
+    private void log(MessageEntry entry) {
+        markFailed();
+        _messageLog.add(entry);
+    }
+
+    private JSONCompareDetailResult probeFailed() {
+        _success = false;
+        _quickFail = true;
+        return this;
+    }
+
+    private void markFailed() {
         _success = false;
         // if does not need completed comparison, quick fail will be true.
         if (!_complete) _quickFail = true;
-        if (_message.length() == 0) {
-            _message.append(message);
+    }
+
+    private void record(FailureCategory category, FieldComparisonFailure failure, String detail) {
+        if (_pathFrames != null) {
+            String field = failure.getField();
+            failure = new FieldComparisonFailure(field, failure.getExpected(), failure.getActual(),
+                    category == FailureCategory.UNEXPECTED ? toInsertionPath(field) : toAbsolutePath(field, true),
+                    category == FailureCategory.MISSING && !field.endsWith("[]") ? null : toAbsolutePath(field, false));
+            recordAbsolutePaths(category, failure);
+        }
+        if (_retainFailures) {
+            switch (category) {
+                case MISSING:
+                    missing().add(failure);
+                    break;
+                case UNEXPECTED:
+                    unexpected().add(failure);
+                    break;
+                default:
+                    failures().add(failure);
+            }
+            log(new MessageEntry(category, failure, detail));
         } else {
-            _message.append(" ; ").append(message);
+            markFailed();
+        }
+        if (_listener != null) {
+            switch (category) {
+                case MISSING:
+                    _listener.onMissing(failure);
+                    break;
+                case UNEXPECTED:
+                    _listener.onUnexpected(failure);
+                    break;
+                default:
+                    _listener.onFailure(failure);
+            }
+        }
+    }
+
+    /**
+     * Streams the failures of this result to a listener as they are found.
+     *
+     * @param listener       listener to notify, or null
+     * @param retainFailures whether this result also keeps the failures and the message; if false, only
+     *                       {@link #passed()} and the counts are tracked
+     */
+    public void setListener(DiffListener listener, boolean retainFailures) {
+        _listener = listener;
+        _retainFailures = retainFailures;
+        if (listener != null && listener.needsAbsolutePaths()) setTrackAbsolutePaths(true);
+    }
+
+    /**
+     * Tracks the absolute path of every failure on both sides while the comparator traverses, so that
+     * {@link FieldComparisonFailure#getExpectedPath()} and {@link FieldComparisonFailure#getActualPath()} are
+     * set without resolving the logical path against the documents afterwards.
+     *
+     * @param track true to track absolute paths
+     */
+    public void setTrackAbsolutePaths(boolean track) {
+        if (!track) {
+            _pathFrames = null;
+        } else if (_pathFrames == null) {
+            _pathFrames = new ArrayList<PathFrame>();
+        }
+    }
+
+    public boolean isTrackingAbsolutePaths() {
+        return _pathFrames != null;
+    }
+
+    /**
+     * Can parts of the comparison run in parallel, each into its own part result? Not when failures are
+     * streamed to a listener, absolute paths are tracked or this result is a probe, since those depend on the
+     * order in which the comparator visits the documents.
+     *
+     * @return true if parts can be compared into {@link #newPart()} results
+     */
+    public boolean isForkable() {
+        return !_probe && _listener == null && _pathFrames == null;
+    }
+
+    /**
+     * Creates an empty result for a part of this comparison, with the same fast-fail and ignoreNull features.
+     *
+     * @return a new part result
+     */
+    public JSONCompareDetailResult newPart() {
+        JSONCompareDetailResult part = new JSONCompareDetailResult();
+        part._complete = _complete;
+        part._ignoreNull = _ignoreNull;
+        part._deadline = _deadline;
+        part._baselineIndex = _baselineIndex;
+        return part;
+    }
+
+    /**
+     * Adds the failures of a part result, in the order the part recorded them, as if they had been recorded
+     * here. Failure budgets apply as they are added.
+     *
+     * @param part a result from {@link #newPart()}
+     */
+    public void mergePart(JSONCompareDetailResult part) {
+        if (part._timedOut) {
+            _timedOut = true;
+            markFailed();
+            _quickFail = true;
+        }
+        for (MessageEntry entry : part._messageLog) {
+            if (_quickFail) return;
+            if (entry.category == null) {
+                log(entry);
+                continue;
+            }
+            if (!admit(entry.category, entry.failure.getField())) continue;
+            // like fail(String, Object, Object), the only kind of failure without a matcher message
+            if (entry.category == FailureCategory.FAILURE && entry.detail == null) {
+                _field = entry.failure.getField();
+                _expected = entry.failure.getExpected();
+                _actual = entry.failure.getActual();
+            }
+            record(entry.category, entry.failure, entry.detail);
+        }
+    }
+
+    /**
+     * Called by array strategies that address elements by a logical key, such as {@code items[id=7]}, before
+     * comparing or reporting an element, with the real indices of the element on both sides.
+     * Must be balanced by {@link #popPathFrame()}.
+     *
+     * @param arrayPath     logical path of the array
+     * @param elementPath   logical path of the element
+     * @param expectedIndex index of the element in the expected array, -1 if it is not there
+     * @param actualIndex   index of the element in the actual array, -1 if it is not there
+     */
+    public void pushPathFrame(String arrayPath, String elementPath, int expectedIndex, int actualIndex) {
+        String expectedArray = toAbsolutePath(arrayPath, true);
+        String actualArray = toAbsolutePath(arrayPath, false);
+        _pathFrames.add(new PathFrame(elementPath,
+                expectedIndex < 0 || expectedArray == null ? null : expectedArray + "[" + expectedIndex + "]",
+                actualIndex < 0 || actualArray == null ? null : actualArray + "[" + actualIndex + "]"));
+    }
+
+    public void popPathFrame() {
+        _pathFrames.remove(_pathFrames.size() - 1);
+    }
+
+    // Resolves a logical path against the innermost enclosing frame; below a frame, logical and absolute paths
+    // only differ by the "[]" suffix of unordered simple-value arrays.
+    private String toAbsolutePath(String field, boolean expectedSide) {
+        String path = field;
+        for (int i = _pathFrames.size() - 1; i >= 0; i--) {
+            PathFrame frame = _pathFrames.get(i);
+            if (isPathPrefix(frame.logicalPath, field)) {
+                String base = expectedSide ? frame.expectedPath : frame.actualPath;
+                if (base == null) return null;
+                path = base + field.substring(frame.logicalPath.length());
+                break;
+            }
         }
+        return path.endsWith("[]") ? path.substring(0, path.length() - 2) : path;
+    }
+
+    // Where a field that only exists in the actual JSON would be added to the expected JSON.
+    private String toInsertionPath(String field) {
+        if (field.endsWith("]") && !field.endsWith("[]")) {
+            String array = toAbsolutePath(field.substring(0, field.lastIndexOf('[')), true);
+            return array == null ? null : array + "[-]";
+        }
+        return toAbsolutePath(field, true);
+    }
+
+    private static boolean isPathPrefix(String prefix, String path) {
+        if (!path.startsWith(prefix)) return false;
+        if (path.length() == prefix.length() || prefix.isEmpty()) return true;
+        char next = path.charAt(prefix.length());
+        return next == '.' || next == '[';
+    }
+
+    /**
+     * Called for every recorded failure while absolute paths are tracked.
+     *
+     * @param category kind of failure
+     * @param failure  the failure, with its absolute paths
+     */
+    protected void recordAbsolutePaths(FailureCategory category, FieldComparisonFailure failure) {
+    }
+
+    public DiffListener getListener() {
+        return _listener;
+    }
+
+    /**
+     * Notifies the listener that the comparator starts comparing the values at a path.
+     *
+     * @param path path of the compared values
+     */
+    public void enterPath(String path) {
+        if (_listener != null) _listener.onEnterPath(path);
+    }
+
+    /**
+     * Notifies the listener that the comparison is finished.
+     */
+    public void complete() {
+        if (_listener != null) _listener.onComplete(_success);
+    }
+
+    /**
+     * Number of failures of a category that were recorded, or reported to the listener.
+     *
+     * @param category failure category
+     * @return number of failures of the category, without the suppressed ones
+     */
+    public int getRecordedCount(FailureCategory category) {
+        return _recordedByCategory[category.ordinal()];
     }
 
     /**
@@ -268,11 +750,12 @@ public class JSONCompareDetailResult {
      */
     public JSONCompareDetailResult fail(String field, Object expected, Object actual) {
         if (_ignoreNull && isNull(expected)) return this;
-        _fieldFailures.add(new FieldComparisonFailure(field, expected, actual));
+        if (_probe) return probeFailed();
+        if (!admit(FailureCategory.FAILURE, field)) return this;
         this._field = field;
         this._expected = expected;
         this._actual = actual;
-        fail(formatFailureMessage(field, expected, actual));
+        record(FailureCategory.FAILURE, new FieldComparisonFailure(field, expected, actual), null);
         return this;
     }
 
@@ -284,13 +767,14 @@ public class JSONCompareDetailResult {
      * @return result of comparision
      */
     public JSONCompareDetailResult fail(String field, ValueMatcherException exception) {
-        _fieldFailures.add(new FieldComparisonFailure(field, exception.getExpected(), exception.getActual()));
-        fail(formatFailureMessage(field + ": " + exception.getMessage(), exception.getExpected(),
-                exception.getActual()));
+        if (_probe) return probeFailed();
+        if (!admit(FailureCategory.FAILURE, field)) return this;
+        record(FailureCategory.FAILURE, new FieldComparisonFailure(field, exception.getExpected(),
+                exception.getActual()), exception.getMessage());
         return this;
     }
 
-    private String formatFailureMessage(String field, Object expected, Object actual) {
+    private static String formatFailureMessage(String field, Object expected, Object actual) {
         return field
                 + "\nExpected: "
                 + describe(expected)
@@ -307,12 +791,13 @@ public class JSONCompareDetailResult {
      * @return result of comparison
      */
     public JSONCompareDetailResult missing(String field, Object expected) {
-        _fieldMissing.add(new FieldComparisonFailure(field, expected, null));
-        fail(formatMissing(field, expected));
+        if (_probe) return probeFailed();
+        if (!admit(FailureCategory.MISSING, field)) return this;
+        record(FailureCategory.MISSING, new FieldComparisonFailure(field, expected, null), null);
         return this;
     }
 
-    private String formatMissing(String field, Object expected) {
+    private static String formatMissing(String field, Object expected) {
         return field
                 + "\nExpected: "
                 + describe(expected)
@@ -327,12 +812,13 @@ public class JSONCompareDetailResult {
      * @return result of comparison
      */
     public JSONCompareDetailResult unexpected(String field, Object actual) {
-        _fieldUnexpected.add(new FieldComparisonFailure(field, null, actual));
-        fail(formatUnexpected(field, actual));
+        if (_probe) return probeFailed();
+        if (!admit(FailureCategory.UNEXPECTED, field)) return this;
+        record(FailureCategory.UNEXPECTED, new FieldComparisonFailure(field, null, actual), null);
         return this;
     }
 
-    private String formatUnexpected(String field, Object actual) {
+    private static String formatUnexpected(String field, Object actual) {
         return field
                 + "\nUnexpected: "
                 + describe(actual)
@@ -341,10 +827,83 @@ public class JSONCompareDetailResult {
 
     @Override
     public String toString() {
-        return _message.toString();
+        return getMessage();
     }
 
     public void setIgnoreNull(boolean ignoreNull) {
         _ignoreNull = ignoreNull;
     }
+
+    /**
+     * A logged failure, formatted into the result message only when the message is requested.
+     */
+    private static final class MessageEntry {
+        private final FailureCategory category;
+        private final FieldComparisonFailure failure;
+        private final String detail;
+
+        MessageEntry(FailureCategory category, FieldComparisonFailure failure, String detail) {
+            this.category = category;
+            this.failure = failure;
+            this.detail = detail;
+        }
+
+        String render() {
+            if (category == null) {
+                return detail;
+            }
+            switch (category) {
+                case MISSING:
+                    return formatMissing(failure.getField(), failure.getExpected());
+                case UNEXPECTED:
+                    return formatUnexpected(failure.getField(), failure.getActual());
+                default:
+                    String field = detail == null ? failure.getField() : failure.getField() + ": " + detail;
+                    return formatFailureMessage(field, failure.getExpected(), failure.getActual());
+            }
+        }
+    }
+
+    private static final class PathFrame {
+        private final String logicalPath;
+        private final String expectedPath;
+        private final String actualPath;
+
+        PathFrame(String logicalPath, String expectedPath, String actualPath) {
+            this.logicalPath = logicalPath;
+            this.expectedPath = expectedPath;
+            this.actualPath = actualPath;
+        }
+    }
+
+    /**
+     * Deadline of one comparison. Reading the clock costs more than a comparison step, so it is only read
+     * every {@code CHECK_INTERVAL} checks; a cancelled token is seen at the same rate.
+     */
+    private static final class Deadline {
+        private static final int CHECK_INTERVAL = 256;
+
+        private final long deadlineNanos;
+        private final boolean timed;
+        private final CancellationToken token;
+        // read by the parts of a parallel comparison, the countdown is only a throttle and may race
+        private volatile boolean expired;
+        private int countdown;
+
+        Deadline(long timeoutMillis, CancellationToken token) {
+            this.timed = timeoutMillis > 0;
+            this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            this.token = token;
+        }
+
+        boolean expired() {
+            if (expired) return true;
+            if (--countdown > 0) return false;
+            countdown = CHECK_INTERVAL;
+            if ((token != null && token.isCancelled()) || (timed && System.nanoTime() - deadlineNanos > 0)) {
+                expired = true;
+            }
+            return expired;
+        }
+    }
 }
@@ -23,7 +23,14 @@ import java.util.List;
  */
 public class JSONCompareResult {
 
+    /**
+     * Reason of the failure added for a rule whose comparison timed out.
+     */
+    public static final String TIMED_OUT_REASON = "comparison timed out";
+
     private final List<FailureField> failures = new ArrayList<>();
+    private int suppressedCount;
+    private boolean timedOut;
 
     public JSONCompareResult() {
     }
@@ -39,4 +46,26 @@ public class JSONCompareResult {
     public void addFailures(List<FailureField> newFailures) {
         failures.addAll(newFailures);
     }
+
+    /**
+     * @return number of failures left out of {@link #getFailure()} by the failure budgets of the rules
+     */
+    public int getSuppressedCount() {
+        return suppressedCount;
+    }
+
+    public void addSuppressedCount(int count) {
+        suppressedCount += count;
+    }
+
+    /**
+     * @return true if the comparison of a rule ended at its deadline, see {@link #TIMED_OUT_REASON}
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public void setTimedOut(boolean timedOut) {
+        this.timedOut = timedOut;
+    }
 }
@@ -19,7 +19,11 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -31,11 +35,16 @@ public class JSONCompareResultUtil {
     private static final Pattern patternArray = Pattern.compile("^\\[(.*?)\\]");
     private static final Pattern patternArrayFull = Pattern.compile("(.+?)\\[(.*?)\\]");
     private static final Pattern patternAEqualsB = Pattern.compile("([^=\\s]+)=([^=\\s]+)");
+    private static final int SHORTEN_LIMIT = 100;
+    private static final int SHORTEN_HEAD = 60;
+    private static final int SHORTEN_TAIL = 40;
     private JSONCompareResultUtil() {
     }
 
     public static void getAbsolutePath(Object expected, Object actual,
                                        JSONCompareDeepDetailResult result) throws JSONException {
+        // filled while comparing
+        if (result.isTrackingAbsolutePaths()) return;
         List<FieldComparisonFailure> _fieldFailure = result.getFieldFailures();
         List<FieldComparisonFailure> _fieldMissing = result.getFieldMissing();
         List<FieldComparisonFailure> _fieldUnexpected = result.getFieldUnexpected();
@@ -193,35 +202,164 @@ public class JSONCompareResultUtil {
         JSONCompareSimpleResult simpleResult = new JSONCompareSimpleResult();
 
         for (FieldComparisonFailure f : _fieldFailure) {
-            simpleResult.addFailure(new FailureField(describe(f.getExpected()),
-                    describe(f.getActual()), f.getField(), "actual unequals to expected"));
+            simpleResult.addFailure(toFailureField(f, FailureCategory.FAILURE));
         }
 
         for (FieldComparisonFailure f : _fieldMissing) {
-            simpleResult.addFailure(new FailureField(describe(f.getExpected()), null, f.getField(), "only in expected"));
+            simpleResult.addFailure(toFailureField(f, FailureCategory.MISSING));
         }
 
         for (FieldComparisonFailure f : _fieldUnexpected) {
-            simpleResult.addFailure(new FailureField(null, describe(f.getActual()), f.getField(), "only in actual"));
+            simpleResult.addFailure(toFailureField(f, FailureCategory.UNEXPECTED));
         }
 
+        simpleResult.setSuppressedCount(result.getSuppressedCount());
+        simpleResult.setTimedOut(result.isTimedOut());
+
         return simpleResult;
     }
 
-    private static Object describe(Object value) {
+    /**
+     * Converts a failure to its simple-mode form, with objects and arrays described by their shortened text.
+     *
+     * @param f        the failure
+     * @param category the kind of failure
+     * @return the simple-mode failure
+     */
+    public static FailureField toFailureField(FieldComparisonFailure f, FailureCategory category) {
+        switch (category) {
+            case MISSING:
+                return new FailureField(describe(f.getExpected()), null, f.getField(), category.getReason());
+            case UNEXPECTED:
+                return new FailureField(null, describe(f.getActual()), f.getField(), category.getReason());
+            default:
+                return new FailureField(describe(f.getExpected()), describe(f.getActual()), f.getField(),
+                        category.getReason());
+        }
+    }
+
+    static Object describe(Object value) {
         if (value instanceof JSONArray) {
-            return "a JSON array: " + getShortenString(value.toString());
+            return "a JSON array: " + getShortenString(value);
         } else if (value instanceof JSONObject) {
-            return "a JSON object: " + getShortenString(value.toString());
+            return "a JSON object: " + getShortenString(value);
         } else {
             return value;
         }
     }
 
-    private static String getShortenString(String s) {
-        if (s.length() > 100) {
-            return s.substring(0, 60) + "<...>" + s.substring(s.length() - 40);
+    /**
+     * Returns the compact JSON text of a {@link JSONObject} or {@link JSONArray}, shortened to its first 60 and
+     * last 40 characters when it is longer than 100 characters. Serialization stops as soon as the head is
+     * known to be too long, and the tail is rendered backwards from the last elements, so a large node costs
+     * no more than the characters that are kept.
+     *
+     * @param node JSONObject or JSONArray
+     * @return the possibly shortened JSON text
+     */
+    public static String getShortenString(Object node) {
+        LimitedWriter head = new LimitedWriter(SHORTEN_LIMIT + 1);
+        try {
+            if (node instanceof JSONObject) {
+                ((JSONObject) node).write(head);
+            } else {
+                ((JSONArray) node).write(head);
+            }
+        } catch (RuntimeException e) {
+            // org.json wraps the writer's exception, only a full buffer is expected here
+            if (!head.isFull()) throw e;
+        }
+        if (!head.isFull()) {
+            return head.toString();
+        }
+        LinkedList<String> tail = new LinkedList<String>();
+        appendTail(node, tail, new int[]{SHORTEN_TAIL});
+        StringBuilder sb = new StringBuilder();
+        for (String part : tail) {
+            sb.append(part);
+        }
+        return head.toString().substring(0, SHORTEN_HEAD) + "<...>" + sb.substring(sb.length() - SHORTEN_TAIL);
+    }
+
+    // Prepends the text of value to tail, last character first, until remaining[0] characters are collected.
+    private static boolean appendTail(Object value, LinkedList<String> tail, int[] remaining) {
+        if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            if (prepend("]", tail, remaining)) return true;
+            for (int i = array.length() - 1; i >= 0; i--) {
+                if (appendTail(array.opt(i), tail, remaining)) return true;
+                if (i > 0 && prepend(",", tail, remaining)) return true;
+            }
+            return prepend("[", tail, remaining);
+        } else if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            // keys in the iteration order used by JSONObject.write
+            List<String> keys = new ArrayList<String>(object.length());
+            for (Iterator<String> it = object.keys(); it.hasNext(); ) {
+                keys.add(it.next());
+            }
+            if (prepend("}", tail, remaining)) return true;
+            for (int i = keys.size() - 1; i >= 0; i--) {
+                String key = keys.get(i);
+                if (appendTail(object.opt(key), tail, remaining)) return true;
+                if (prepend(JSONObject.quote(key) + ":", tail, remaining)) return true;
+                if (i > 0 && prepend(",", tail, remaining)) return true;
+            }
+            return prepend("{", tail, remaining);
+        }
+        return prepend(JSONObject.valueToString(value), tail, remaining);
+    }
+
+    private static boolean prepend(String part, LinkedList<String> tail, int[] remaining) {
+        tail.addFirst(part);
+        remaining[0] -= part.length();
+        return remaining[0] <= 0;
+    }
+
+    /**
+     * Writer that keeps the first {@code limit} characters and then refuses further output.
+     */
+    private static final class LimitedWriter extends Writer {
+        private final StringBuilder buffer = new StringBuilder();
+        private final int limit;
+
+        LimitedWriter(int limit) {
+            this.limit = limit;
+        }
+
+        boolean isFull() {
+            return buffer.length() >= limit;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            int n = Math.min(len, limit - buffer.length());
+            buffer.append(cbuf, off, n);
+            if (isFull()) {
+                throw new IOException("JSON text exceeds " + limit + " characters");
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            int n = Math.min(len, limit - buffer.length());
+            buffer.append(str, off, off + n);
+            if (isFull()) {
+                throw new IOException("JSON text exceeds " + limit + " characters");
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return buffer.toString();
         }
-        return s;
     }
 }
@@ -0,0 +1,122 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.testtools.jsondiff.listener.JsonValueWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writes the failures of a {@link JSONCompareDetailResult} as JSON, in the schema of {@link FailureField}:
+ * {@code expected}, {@code actual}, {@code diffKey} and {@code reason}, failures first, then missing and
+ * unexpected fields. The output is the same as serializing the failures of
+ * {@link JSONCompareResultUtil#getSimpleResult(JSONCompareDetailResult)} with an {@code ObjectMapper}, but the
+ * failures are written straight from the result without building the simple result.
+ */
+public class JSONCompareResultWriter {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private JSONCompareResultWriter() {
+    }
+
+    /**
+     * Writes the failures of a result as a JSON array.
+     *
+     * @param result    the result
+     * @param generator generator to write to
+     * @throws IOException if the generator fails
+     */
+    public static void writeFailures(JSONCompareDetailResult result, JsonGenerator generator) throws IOException {
+        generator.writeStartArray();
+        writeFailureFields(result, generator);
+        generator.writeEndArray();
+    }
+
+    /**
+     * Writes the failures of a result as a JSON array in UTF-8. The stream is flushed but not closed.
+     *
+     * @param result the result
+     * @param out    stream to write to
+     * @throws IOException if writing fails
+     */
+    public static void writeFailures(JSONCompareDetailResult result, OutputStream out) throws IOException {
+        JsonGenerator generator = createGenerator(out);
+        writeFailures(result, generator);
+        generator.close();
+    }
+
+    /**
+     * Writes the failures of a result as elements of an array the caller has started, so the failures of
+     * several results can be written to one array.
+     *
+     * @param result    the result
+     * @param generator generator positioned inside an array
+     * @throws IOException if the generator fails
+     */
+    public static void writeFailureFields(JSONCompareDetailResult result, JsonGenerator generator)
+            throws IOException {
+        writeFailureFields(result.getFieldFailures(), FailureCategory.FAILURE, generator);
+        writeFailureFields(result.getFieldMissing(), FailureCategory.MISSING, generator);
+        writeFailureFields(result.getFieldUnexpected(), FailureCategory.UNEXPECTED, generator);
+    }
+
+    private static void writeFailureFields(List<FieldComparisonFailure> failures, FailureCategory category,
+                                           JsonGenerator generator) throws IOException {
+        for (FieldComparisonFailure f : failures) {
+            writeFailureField(generator,
+                    category == FailureCategory.UNEXPECTED ? null : JSONCompareResultUtil.describe(f.getExpected()),
+                    category == FailureCategory.MISSING ? null : JSONCompareResultUtil.describe(f.getActual()),
+                    f.getField(), category.getReason());
+        }
+    }
+
+    /**
+     * Writes one object in the schema of {@link FailureField}.
+     *
+     * @param generator generator to write to
+     * @param expected  expected value
+     * @param actual    actual value
+     * @param diffKey   path of the field
+     * @param reason    reason of the failure
+     * @throws IOException if the generator fails
+     */
+    public static void writeFailureField(JsonGenerator generator, Object expected, Object actual, String diffKey,
+                                         String reason) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName("expected");
+        JsonValueWriter.writeValue(generator, expected);
+        generator.writeFieldName("actual");
+        JsonValueWriter.writeValue(generator, actual);
+        generator.writeStringField("diffKey", diffKey);
+        generator.writeStringField("reason", reason);
+        generator.writeEndObject();
+    }
+
+    /**
+     * @param out stream to write to
+     * @return a UTF-8 generator that doesn't close the stream
+     * @throws IOException if the generator can't be created
+     */
+    static JsonGenerator createGenerator(OutputStream out) throws IOException {
+        return JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+    }
+}
@@ -24,6 +24,8 @@ import java.util.List;
 public class JSONCompareSimpleResult {
 
     private final List<FailureField> failures = new ArrayList<>();
+    private int suppressedCount;
+    private boolean timedOut;
 
     public JSONCompareSimpleResult() {
     }
@@ -35,4 +37,26 @@ public class JSONCompareSimpleResult {
     public void addFailure(FailureField f) {
         failures.add(f);
     }
+
+    /**
+     * @return number of failures left out of {@link #getFailure()} by a failure budget
+     */
+    public int getSuppressedCount() {
+        return suppressedCount;
+    }
+
+    public void setSuppressedCount(int suppressedCount) {
+        this.suppressedCount = suppressedCount;
+    }
+
+    /**
+     * @return true if the comparison ended at its deadline, the failures are then partial
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public void setTimedOut(boolean timedOut) {
+        this.timedOut = timedOut;
+    }
 }
@@ -19,6 +19,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONString;
+import org.json.JSONTokener;
 
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -60,6 +61,28 @@ public class JSONParser {
         throw new JSONException("Unparsable JSON string: " + s);
     }
 
+    /**
+     * Takes a JSON string and returns either a {@link JSONObject} or {@link JSONArray} like
+     * {@link #parseJSON(String)}, taking the keys, and the string values up to
+     * {@link SymbolTable#getMaxValueLength()}, from a symbol table.
+     *
+     * @param s       Raw JSON string to be parsed
+     * @param symbols table of canonical strings, or null to parse like {@link #parseJSON(String)}
+     * @return JSONObject or JSONArray
+     * @throws JSONException JSON parsing error
+     */
+    public static Object parseJSON(final String s, SymbolTable symbols) throws JSONException {
+        if (symbols == null) {
+            return parseJSON(s);
+        }
+        if (s.trim().startsWith("{")) {
+            return new JSONObject(new InterningTokener(s, symbols));
+        } else if (s.trim().startsWith("[")) {
+            return new JSONArray(new InterningTokener(s, symbols));
+        }
+        return parseJSON(s);
+    }
+
     /**
      * Takes an escaped JSON string and returns either a {@link JSONObject} or
      * {@link JSONArray},
@@ -76,6 +99,32 @@ public class JSONParser {
         return parseJSON(unescapedStr);
     }
 
+    /**
+     * Tokener that replaces the quoted strings it reads by their instances in a symbol table. A key is told
+     * apart from a value by the colon that follows it.
+     */
+    private static final class InterningTokener extends JSONTokener {
+        private final SymbolTable symbols;
+
+        InterningTokener(String s, SymbolTable symbols) {
+            super(s);
+            this.symbols = symbols;
+        }
+
+        @Override
+        public String nextString(char quote) throws JSONException {
+            String s = super.nextString(quote);
+            if (s.length() > symbols.getMaxValueLength()) {
+                char next = nextClean();
+                back();
+                if (next != ':') {
+                    return s;
+                }
+            }
+            return symbols.intern(s);
+        }
+    }
+
     private static String getEscapedJSONInUnescapedJSONObject(String s) {
         Pattern pattern = Pattern.compile("\"\\{(.*?)\\}\"");
         Matcher matcher = pattern.matcher(s);
@@ -0,0 +1,58 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff;
+
+import org.json.JSONException;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A JSON document parsed once for comparisons under compiled rules, see
+ * {@link JSONCompare#compareJSON(ParsedDocument, ParsedDocument, CompiledCompareRules)}. The selections of the
+ * rules are read from the parsed document, which keeps the source text of its decimals so they are normalized
+ * like the selections serialized by {@link JSONCompare#compareJSON(String, String, CompiledCompareRules)}. The
+ * comparisons don't modify the document, so it can be compared by concurrent comparisons.
+ */
+public final class ParsedDocument {
+
+    final Object document;
+    // source text of each decimal of the document, keyed by identity
+    final Map<Object, String> decimalTexts;
+
+    private ParsedDocument(Object document, Map<Object, String> decimalTexts) {
+        this.document = document;
+        this.decimalTexts = decimalTexts;
+    }
+
+    /**
+     * Parses a JSON document like org.json does.
+     *
+     * @param json JSON string
+     * @return the parsed document
+     * @throws JSONException JSON parsing error
+     */
+    public static ParsedDocument parse(String json) throws JSONException {
+        Map<Object, String> decimalTexts = new IdentityHashMap<Object, String>();
+        return new ParsedDocument(DecimalTextTokener.parse(json, decimalTexts), decimalTexts);
+    }
+
+    /**
+     * @return the parsed document, a JSONObject, a JSONArray or a scalar, which must not be modified
+     */
+    public Object getDocument() {
+        return document;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded table of canonical strings used by {@link JSONParser#parseJSON(String, SymbolTable)} to share the
+ * keys, and optionally the short string values, of parsed documents. Documents with many objects of the same
+ * shape then hold one instance of each field name, and key lookups between documents parsed with the same table
+ * succeed on identity.
+ *
+ * <p>A table can serve one document or be shared between documents and threads. Once it holds
+ * {@code maxSymbols} strings, new strings are no longer added and are kept as parsed.</p>
+ */
+public final class SymbolTable {
+
+    public static final int DEFAULT_MAX_SYMBOLS = 4096;
+
+    private final int maxSymbols;
+    private final int maxValueLength;
+    private final ConcurrentHashMap<String, String> symbols = new ConcurrentHashMap<String, String>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Creates a table of at most {@link #DEFAULT_MAX_SYMBOLS} strings that only interns keys.
+     */
+    public SymbolTable() {
+        this(DEFAULT_MAX_SYMBOLS, 0);
+    }
+
+    /**
+     * @param maxSymbols     maximum number of strings in the table
+     * @param maxValueLength string values up to this length are interned too, 0 to only intern keys
+     */
+    public SymbolTable(int maxSymbols, int maxValueLength) {
+        this.maxSymbols = maxSymbols;
+        this.maxValueLength = maxValueLength;
+    }
+
+    /**
+     * Returns the canonical instance of a string, adding it to the table if there's room.
+     *
+     * @param s the string
+     * @return the canonical instance, or {@code s} if the table is full
+     */
+    public String intern(String s) {
+        String symbol = symbols.get(s);
+        if (symbol != null) {
+            return symbol;
+        }
+        if (size.get() >= maxSymbols) {
+            return s;
+        }
+        symbol = symbols.putIfAbsent(s, s);
+        if (symbol != null) {
+            return symbol;
+        }
+        size.incrementAndGet();
+        return s;
+    }
+
+    /**
+     * @return maximum length of interned string values, 0 if only keys are interned
+     */
+    public int getMaxValueLength() {
+        return maxValueLength;
+    }
+
+    /**
+     * @return number of strings in the table
+     */
+    public int size() {
+        return size.get();
+    }
+}
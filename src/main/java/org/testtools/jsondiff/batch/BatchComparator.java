@@ -0,0 +1,137 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.batch;
+
+import org.testtools.jsondiff.CompiledCompareRules;
+import org.testtools.jsondiff.JSONCompare;
+import org.testtools.jsondiff.JSONCompareResult;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Compares a batch of document pairs against one compiled rule set on an executor.
+ *
+ * <p>Pairs are taken from the batch only as fast as results are handed out: at most {@code maxInFlight}
+ * pairs are compared or waiting to be handed out at any time, so memory stays bounded whatever the size of
+ * the batch. Results are passed to the handler on the calling thread, in the order of the batch.</p>
+ */
+public class BatchComparator {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+
+    private final CompiledCompareRules rules;
+    private final Executor executor;
+    private final int maxInFlight;
+
+    /**
+     * @param rules    compiled comparison rules
+     * @param executor executor that runs the comparisons, or null for a default one, see {@link #newDefaultExecutor()}
+     */
+    public BatchComparator(CompiledCompareRules rules, Executor executor) {
+        this(rules, executor, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * @param rules       compiled comparison rules
+     * @param executor    executor that runs the comparisons, or null for a default one
+     * @param maxInFlight maximum number of pairs compared or waiting to be handed out
+     */
+    public BatchComparator(CompiledCompareRules rules, Executor executor, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        this.rules = rules;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Compares all pairs of a batch. Returns once every result has been handed out.
+     *
+     * @param pairs   the batch, iterated once
+     * @param handler receives the results in batch order
+     * @return counts of the batch
+     */
+    public BatchSummary compare(Iterable<ComparePair> pairs, BatchResultHandler handler) {
+        ExecutorService ownExecutor = executor == null ? newDefaultExecutor() : null;
+        Executor runner = executor == null ? ownExecutor : executor;
+        Deque<CompletableFuture<BatchItemResult>> inFlight = new ArrayDeque<CompletableFuture<BatchItemResult>>();
+        long[] counts = new long[3];
+        try {
+            long index = 0;
+            Iterator<ComparePair> it = pairs.iterator();
+            while (it.hasNext()) {
+                while (inFlight.size() >= maxInFlight
+                        || (!inFlight.isEmpty() && inFlight.peekFirst().isDone())) {
+                    handOut(inFlight.pollFirst().join(), handler, counts);
+                }
+                inFlight.addLast(CompletableFuture.supplyAsync(compareTask(index++, it.next()), runner));
+            }
+            while (!inFlight.isEmpty()) {
+                handOut(inFlight.pollFirst().join(), handler, counts);
+            }
+        } finally {
+            if (ownExecutor != null) ownExecutor.shutdown();
+        }
+        return new BatchSummary(counts[0], counts[1], counts[2]);
+    }
+
+    private Supplier<BatchItemResult> compareTask(final long index, final ComparePair pair) {
+        return new Supplier<BatchItemResult>() {
+            @Override
+            public BatchItemResult get() {
+                try {
+                    JSONCompareResult result = JSONCompare.compareJSON(pair.getExpected(), pair.getActual(), rules);
+                    return new BatchItemResult(index, pair, result, null);
+                } catch (Exception e) {
+                    return new BatchItemResult(index, pair, null, e);
+                }
+            }
+        };
+    }
+
+    private static void handOut(BatchItemResult item, BatchResultHandler handler, long[] counts) {
+        counts[0]++;
+        if (item.getError() != null) {
+            counts[2]++;
+        } else if (!item.passed()) {
+            counts[1]++;
+        }
+        handler.onResult(item);
+    }
+
+    /**
+     * Creates the executor used when none is supplied: one virtual thread per comparison when the runtime
+     * supports them (Java 21+), otherwise a fixed pool with one thread per processor.
+     *
+     * @return a new executor, to be shut down by the caller
+     */
+    public static ExecutorService newDefaultExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+    }
+}
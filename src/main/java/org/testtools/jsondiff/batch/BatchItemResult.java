@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.batch;
+
+import org.testtools.jsondiff.JSONCompareResult;
+
+/**
+ * Outcome of one pair of a batch: its result, or the exception that ended its comparison.
+ */
+public final class BatchItemResult {
+    private final long index;
+    private final ComparePair pair;
+    private final JSONCompareResult result;
+    private final Exception error;
+
+    BatchItemResult(long index, ComparePair pair, JSONCompareResult result, Exception error) {
+        this.index = index;
+        this.pair = pair;
+        this.result = result;
+        this.error = error;
+    }
+
+    /**
+     * @return position of the pair in the batch, from 0
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    public ComparePair getPair() {
+        return pair;
+    }
+
+    /**
+     * @return the result of the comparison, or null if it failed with an exception
+     */
+    public JSONCompareResult getResult() {
+        return result;
+    }
+
+    /**
+     * @return the exception that ended the comparison, or null
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * @return true if the pair was compared and no difference was found
+     */
+    public boolean passed() {
+        return error == null && result.getFailure().isEmpty();
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.batch;
+
+/**
+ * Receives the results of a batch, one pair at a time and in the order of the batch.
+ */
+public interface BatchResultHandler {
+
+    /**
+     * Called on the thread that runs the batch.
+     *
+     * @param result outcome of one pair
+     */
+    void onResult(BatchItemResult result);
+}
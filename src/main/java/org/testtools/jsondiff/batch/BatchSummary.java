@@ -0,0 +1,58 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.batch;
+
+/**
+ * Counts of a finished batch.
+ */
+public final class BatchSummary {
+    private final long total;
+    private final long failed;
+    private final long errors;
+
+    BatchSummary(long total, long failed, long errors) {
+        this.total = total;
+        this.failed = failed;
+        this.errors = errors;
+    }
+
+    /**
+     * @return number of compared pairs
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return number of pairs with no difference
+     */
+    public long getPassed() {
+        return total - failed - errors;
+    }
+
+    /**
+     * @return number of pairs with differences
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return number of pairs whose comparison ended with an exception
+     */
+    public long getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.batch;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.testtools.jsondiff.CompiledCompareRules;
+import org.testtools.jsondiff.FailureField;
+import org.testtools.jsondiff.JSONCompare;
+import org.testtools.jsondiff.JSONCompareResult;
+import org.testtools.jsondiff.JSONCompareResultWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs a directory of comparison cases, laid out like {@code src/test/resources}: an expected file, an
+ * actual file and a rule file per case, named by patterns in which {@code {id}} stands for the case id.
+ *
+ * <p>Cases are discovered from the expected files. Each case is read and compared on an executor; each
+ * distinct rule file is read and compiled once, so a rule pattern without {@code {id}} shares one rule set
+ * between all cases. A case whose actual or rule file is missing is reported as an error.</p>
+ */
+public class CaseDirectoryRunner {
+
+    public static final String ID = "{id}";
+    public static final String DEFAULT_EXPECTED_PATTERN = "case_{id}_e.json";
+    public static final String DEFAULT_ACTUAL_PATTERN = "case_{id}_a.json";
+    public static final String DEFAULT_RULE_PATTERN = "rule_case{id}.yaml";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    // numeric ids by value, so case_9 comes before case_10 whatever the padding
+    private static final Comparator<String> ID_ORDER = new Comparator<String>() {
+        @Override
+        public int compare(String a, String b) {
+            boolean numericA = !a.isEmpty() && a.length() < 19 && a.chars().allMatch(Character::isDigit);
+            boolean numericB = !b.isEmpty() && b.length() < 19 && b.chars().allMatch(Character::isDigit);
+            if (numericA && numericB) {
+                int c = Long.compare(Long.parseLong(a), Long.parseLong(b));
+                return c != 0 ? c : a.compareTo(b);
+            }
+            return numericA != numericB ? (numericA ? -1 : 1) : a.compareTo(b);
+        }
+    };
+
+    private static final Function<Path, CompiledCompareRules> COMPILE = new Function<Path, CompiledCompareRules>() {
+        @Override
+        public CompiledCompareRules apply(Path rule) {
+            return JSONCompare.compileRules(read(rule));
+        }
+    };
+
+    private final Path directory;
+    private String expectedPattern = DEFAULT_EXPECTED_PATTERN;
+    private String actualPattern = DEFAULT_ACTUAL_PATTERN;
+    private String rulePattern = DEFAULT_RULE_PATTERN;
+    private Executor executor;
+
+    /**
+     * @param directory directory holding the cases
+     */
+    public CaseDirectoryRunner(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param expectedPattern name of an expected file, must contain {@code {id}}
+     * @return this runner
+     */
+    public CaseDirectoryRunner setExpectedPattern(String expectedPattern) {
+        if (!expectedPattern.contains(ID)) {
+            throw new IllegalArgumentException("expected pattern must contain " + ID + ": " + expectedPattern);
+        }
+        this.expectedPattern = expectedPattern;
+        return this;
+    }
+
+    /**
+     * @param actualPattern name of an actual file, {@code {id}} is replaced by the case id
+     * @return this runner
+     */
+    public CaseDirectoryRunner setActualPattern(String actualPattern) {
+        this.actualPattern = actualPattern;
+        return this;
+    }
+
+    /**
+     * @param rulePattern name of a rule file, {@code {id}} is replaced by the case id
+     * @return this runner
+     */
+    public CaseDirectoryRunner setRulePattern(String rulePattern) {
+        this.rulePattern = rulePattern;
+        return this;
+    }
+
+    /**
+     * @param executor executor that runs the cases, or null for a default one, see
+     *                 {@link BatchComparator#newDefaultExecutor()}
+     * @return this runner
+     */
+    public CaseDirectoryRunner setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Lists the ids of the cases of the directory, ordered by id, numbers by value.
+     *
+     * @return the case ids
+     * @throws IOException if the directory can't be listed
+     */
+    public List<String> discover() throws IOException {
+        int at = expectedPattern.indexOf(ID);
+        Pattern name = Pattern.compile(Pattern.quote(expectedPattern.substring(0, at)) + "(.+)"
+                + Pattern.quote(expectedPattern.substring(at + ID.length())));
+        List<String> ids = new ArrayList<String>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Matcher m = name.matcher(file.getFileName().toString());
+                if (m.matches() && Files.isRegularFile(file)) {
+                    ids.add(m.group(1));
+                }
+            }
+        }
+        Collections.sort(ids, ID_ORDER);
+        return ids;
+    }
+
+    /**
+     * Discovers and compares all cases of the directory. Returns once every case is compared.
+     *
+     * @return the results, ordered by case id
+     * @throws IOException if the directory can't be listed
+     */
+    public List<CaseResult> run() throws IOException {
+        List<String> ids = discover();
+        ExecutorService ownExecutor = executor == null ? BatchComparator.newDefaultExecutor() : null;
+        Executor runner = executor == null ? ownExecutor : executor;
+        ConcurrentMap<Path, CompiledCompareRules> rules = new ConcurrentHashMap<Path, CompiledCompareRules>();
+        try {
+            List<CompletableFuture<CaseResult>> cases = new ArrayList<CompletableFuture<CaseResult>>(ids.size());
+            for (String id : ids) {
+                cases.add(CompletableFuture.supplyAsync(caseTask(id, rules), runner));
+            }
+            List<CaseResult> results = new ArrayList<CaseResult>(ids.size());
+            for (CompletableFuture<CaseResult> c : cases) {
+                results.add(c.join());
+            }
+            return results;
+        } finally {
+            if (ownExecutor != null) ownExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Compares all cases of the directory and writes a summary of them, see
+     * {@link #writeSummary(List, OutputStream)}.
+     *
+     * @param summaryFile file the summary is written to
+     * @return counts of the run
+     * @throws IOException if the directory can't be listed or the summary can't be written
+     */
+    public BatchSummary run(Path summaryFile) throws IOException {
+        List<CaseResult> results = run();
+        try (OutputStream out = Files.newOutputStream(summaryFile)) {
+            return writeSummary(results, out);
+        }
+    }
+
+    private Supplier<CaseResult> caseTask(final String id, final ConcurrentMap<Path, CompiledCompareRules> rules) {
+        return new Supplier<CaseResult>() {
+            @Override
+            public CaseResult get() {
+                Path expected = directory.resolve(expectedPattern.replace(ID, id));
+                Path actual = directory.resolve(actualPattern.replace(ID, id));
+                Path rule = directory.resolve(rulePattern.replace(ID, id)).normalize();
+                long start = System.nanoTime();
+                try {
+                    CompiledCompareRules compiled = rules.computeIfAbsent(rule, COMPILE);
+                    JSONCompareResult result = JSONCompare.compareJSON(read(expected), read(actual), compiled);
+                    return new CaseResult(id, expected, actual, rule, result, null, System.nanoTime() - start);
+                } catch (UncheckedIOException e) {
+                    return new CaseResult(id, expected, actual, rule, null, e.getCause(), System.nanoTime() - start);
+                } catch (Exception e) {
+                    return new CaseResult(id, expected, actual, rule, null, e, System.nanoTime() - start);
+                }
+            }
+        };
+    }
+
+    private static String read(Path file) {
+        try {
+            return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the results of a run as one JSON document: the counts, then one entry per case with its
+     * {@code id}, its {@code status} ({@code passed}, {@code failed} or {@code error}), its {@code millis}, and
+     * its {@code failures} in the {@link FailureField} schema or its error {@code message}.
+     *
+     * @param results results of a run
+     * @param out     stream to write to, left open
+     * @return counts of the run
+     * @throws IOException if the summary can't be written
+     */
+    public static BatchSummary writeSummary(List<CaseResult> results, OutputStream out) throws IOException {
+        long failed = 0;
+        long errors = 0;
+        for (CaseResult result : results) {
+            if (result.getError() != null) {
+                errors++;
+            } else if (!result.passed()) {
+                failed++;
+            }
+        }
+        BatchSummary summary = new BatchSummary(results.size(), failed, errors);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeNumberField("total", summary.getTotal());
+            generator.writeNumberField("passed", summary.getPassed());
+            generator.writeNumberField("failed", summary.getFailed());
+            generator.writeNumberField("errors", summary.getErrors());
+            generator.writeArrayFieldStart("cases");
+            for (CaseResult result : results) {
+                generator.writeStartObject();
+                generator.writeStringField("id", result.getId());
+                generator.writeStringField("status", result.getError() != null ? "error"
+                        : result.passed() ? "passed" : "failed");
+                generator.writeNumberField("millis", result.getElapsedNanos() / 1000000);
+                if (result.getError() != null) {
+                    generator.writeStringField("message", String.valueOf(result.getError()));
+                } else if (!result.passed()) {
+                    generator.writeArrayFieldStart("failures");
+                    for (FailureField f : result.getResult().getFailure()) {
+                        JSONCompareResultWriter.writeFailureField(generator, f.getExpected(), f.getActual(),
+                                f.getDiffKey(), f.getReason());
+                    }
+                    generator.writeEndArray();
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        return summary;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.batch;
+
+import org.testtools.jsondiff.JSONCompareResult;
+
+import java.nio.file.Path;
+
+/**
+ * Outcome of one case of a case directory: its result, or the exception that ended its comparison.
+ */
+public final class CaseResult {
+    private final String id;
+    private final Path expected;
+    private final Path actual;
+    private final Path rule;
+    private final JSONCompareResult result;
+    private final Exception error;
+    private final long elapsedNanos;
+
+    CaseResult(String id, Path expected, Path actual, Path rule, JSONCompareResult result, Exception error,
+               long elapsedNanos) {
+        this.id = id;
+        this.expected = expected;
+        this.actual = actual;
+        this.rule = rule;
+        this.result = result;
+        this.error = error;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return the part of the file names that identifies the case, e.g. {@code 01}
+     */
+    public String getId() {
+        return id;
+    }
+
+    public Path getExpected() {
+        return expected;
+    }
+
+    public Path getActual() {
+        return actual;
+    }
+
+    public Path getRule() {
+        return rule;
+    }
+
+    /**
+     * @return the result of the comparison, or null if it failed with an exception
+     */
+    public JSONCompareResult getResult() {
+        return result;
+    }
+
+    /**
+     * @return the exception that ended the comparison, such as a missing file, or null
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * @return time spent reading and comparing the case, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return true if the case was compared and no difference was found
+     */
+    public boolean passed() {
+        return error == null && result.getFailure().isEmpty();
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.batch;
+
+/**
+ * An expected and an actual JSON document to compare in a batch.
+ */
+public final class ComparePair {
+    private final String expected;
+    private final String actual;
+
+    public ComparePair(String expected, String actual) {
+        this.expected = expected;
+        this.actual = actual;
+    }
+
+    public static ComparePair of(String expected, String actual) {
+        return new ComparePair(expected, actual);
+    }
+
+    public String getExpected() {
+        return expected;
+    }
+
+    public String getActual() {
+        return actual;
+    }
+}
@@ -14,14 +14,25 @@
 
 package org.testtools.jsondiff.comparator;
 
+import org.testtools.jsondiff.CompareContext;
 import org.testtools.jsondiff.JSONCompareDetailResult;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import static org.testtools.jsondiff.comparator.JSONCompareUtil.*;
 
@@ -31,6 +42,30 @@ import static org.testtools.jsondiff.comparator.JSONCompareUtil.*;
  */
 public abstract class AbstractComparator implements JSONComparator {
 
+    private final CompareContext defaultContext = new CompareContext(true, true, false, false);
+
+    /**
+     * Returns the context that tunes the shared array strategies, such as the spill threshold of
+     * unordered simple-value arrays. Subclasses that carry their own {@link CompareContext} return it.
+     *
+     * @return the comparison context of this comparator
+     */
+    protected CompareContext getCompareContext() {
+        return defaultContext;
+    }
+
+    /**
+     * Whether the outcome of comparing two subtrees with this comparator can be predicted by a
+     * {@link SubtreePrecheck}: identical subtrees must pass, and count, key-set and type mismatches must fail
+     * as they do in {@link DefaultComparator}. Subclasses of {@link DefaultComparator} and {@link CustomComparator}
+     * don't support the precheck unless they override this method, as they may compare values differently.
+     *
+     * @return true if candidate pairs may be settled by signatures
+     */
+    protected boolean supportsPrecheck() {
+        return false;
+    }
+
     /**
      * Compares JSONObject provided to the expected JSONObject, and returns the results of the comparison.
      *
@@ -75,74 +110,262 @@ public abstract class AbstractComparator implements JSONComparator {
         }
     }
 
-    protected void checkJsonObjectKeysExpectedInActual(String prefix, JSONObject expected, JSONObject actual, JSONCompareDetailResult result) throws JSONException {
+    protected void checkJsonObjectKeysExpectedInActual(final String prefix, final JSONObject expected, final JSONObject actual, JSONCompareDetailResult result) throws JSONException {
         Set<String> expectedKeys = getKeys(expected);
+        boolean forked = compareItemsInParallel(expectedKeys, result, new ItemComparison<String>() {
+            @Override
+            public void compare(String key, JSONCompareDetailResult part) throws JSONException {
+                compareExpectedKey(prefix, key, expected, actual, part);
+            }
+        });
+        if (forked) return;
         for (String key : expectedKeys) {
             if (result.quickFail()) return;
-            Object expectedValue = expected.get(key);
-            if (actual.has(key)) {
-                Object actualValue = actual.get(key);
-                compareValues(qualify(prefix, key), expectedValue, actualValue, result);
-            } else {
-                // missing的value也需体现在result中，之前传入key
-                markMissing(qualify(prefix, key), expectedValue, result);
+            compareExpectedKey(prefix, key, expected, actual, result);
+        }
+    }
+
+    private void compareExpectedKey(String prefix, String key, JSONObject expected, JSONObject actual,
+                                    JSONCompareDetailResult result) throws JSONException {
+        Object expectedValue = expected.get(key);
+        if (actual.has(key)) {
+            Object actualValue = actual.get(key);
+            compareValues(qualify(prefix, key), expectedValue, actualValue, result);
+        } else {
+            // missing的value也需体现在result中，之前传入key
+            markMissing(qualify(prefix, key), expectedValue, result);
+        }
+    }
+
+    /**
+     * Compares one entry of an object or one element of a keyed array.
+     *
+     * @param <T> type of the items
+     */
+    protected interface ItemComparison<T> {
+        void compare(T item, JSONCompareDetailResult result) throws JSONException;
+    }
+
+    /**
+     * Compares the items of a large object or array as fork/join tasks, if the items reach the parallel
+     * threshold of the compare context and the result allows it. The items are cut into runs of consecutive
+     * items, several per worker, and the range of runs is split in halves recursively, so idle workers steal
+     * the runs of a worker held up by a few expensive items. Each run is compared into its own part result,
+     * and the parts are merged in item order, so the failures come out as the sequential loop would record
+     * them. The tasks run in the fork/join pool of the calling thread, or in the common pool.
+     *
+     * @param items      the items, in comparison order
+     * @param result     result of the comparison
+     * @param comparison compares one item
+     * @param <T>        type of the items
+     * @return true if the items were compared, false if the caller has to compare them sequentially
+     * @throws JSONException JSON parsing error
+     */
+    protected <T> boolean compareItemsInParallel(Collection<T> items, JSONCompareDetailResult result,
+                                                 final ItemComparison<T> comparison) throws JSONException {
+        int threshold = getCompareContext().getParallelThreshold();
+        if (threshold <= 0 || items.size() < threshold || !result.isForkable()) {
+            return false;
+        }
+        final List<T> list = items instanceof List && items instanceof RandomAccess ? (List<T>) items
+                : new ArrayList<T>(items);
+        ForkJoinPool pool = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool() : ForkJoinPool.commonPool();
+        final int runs = Math.min(list.size(), Math.max(2, pool.getParallelism() * 16));
+        final JSONCompareDetailResult[] parts = new JSONCompareDetailResult[runs];
+        for (int r = 0; r < runs; r++) {
+            parts[r] = result.newPart();
+        }
+        RunRange task = new RunRange(new RunComparison() {
+            @Override
+            public void compareRun(int run) throws JSONException {
+                int from = (int) ((long) list.size() * run / runs);
+                int to = (int) ((long) list.size() * (run + 1) / runs);
+                JSONCompareDetailResult part = parts[run];
+                for (int i = from; i < to && !part.quickFail(); i++) {
+                    comparison.compare(list.get(i), part);
+                }
+            }
+        }, 0, runs);
+        if (ForkJoinTask.inForkJoinPool()) {
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+        for (JSONCompareDetailResult part : parts) {
+            result.mergePart(part);
+        }
+        return true;
+    }
+
+    /**
+     * Compares one run of items into its part result.
+     */
+    private interface RunComparison {
+        void compareRun(int run) throws JSONException;
+    }
+
+    /**
+     * Compares a range of runs, forking its upper half until a single run is left.
+     */
+    private static final class RunRange extends RecursiveAction {
+        private final RunComparison comparison;
+        private final int from;
+        private final int to;
+
+        RunRange(RunComparison comparison, int from, int to) {
+            this.comparison = comparison;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                comparison.compareRun(from);
+                return;
             }
+            int middle = (from + to) >>> 1;
+            RunRange upper = new RunRange(comparison, middle, to);
+            upper.fork();
+            new RunRange(comparison, from, middle).compute();
+            upper.join();
         }
     }
 
-    protected void compareJSONArrayOfJsonObjects(String key, JSONArray expected, JSONArray actual, JSONCompareDetailResult result) throws JSONException {
-        String uniqueKey = findUniqueKey(expected);
+    // a view of the indices 0 .. size - 1, so an index range can be compared by compareItemsInParallel
+    private static List<Integer> indices(final int size) {
+        return new AbstractList<Integer>() {
+            @Override
+            public Integer get(int index) {
+                return index;
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    protected void compareJSONArrayOfJsonObjects(final String key, JSONArray expected, JSONArray actual, JSONCompareDetailResult result) throws JSONException {
+        // the unique key and key map of a cached baseline are only computed once
+        BaselineIndex baseline = result.getBaselineIndex();
+        BaselineIndex.KeyedArray keyed = baseline == null ? null : baseline.keyedArray(expected);
+        final String uniqueKey = keyed == null ? findUniqueKey(expected) : keyed.getUniqueKey();
         if (uniqueKey == null || !isUsableAsUniqueKey(uniqueKey, actual)) {
             // An expensive last resort
             recursivelyCompareJSONArray(key, expected, actual, result);
             return;
         }
-        Map<Object, JSONObject> expectedValueMap = arrayOfJsonObjectToMap(expected, uniqueKey);
-        Map<Object, JSONObject> actualValueMap = arrayOfJsonObjectToMap(actual, uniqueKey);
+        final Map<Object, JSONObject> expectedValueMap = keyed == null ? arrayOfJsonObjectToMap(expected, uniqueKey)
+                : keyed.getValueMap();
+        final Map<Object, JSONObject> actualValueMap = arrayOfJsonObjectToMap(actual, uniqueKey);
         if (!isUsableAsUniqueKeyForBothMap(expectedValueMap, actualValueMap)) {
             recursivelyCompareJSONArray(key, expected, actual, result);
             return;
         }
-        for (Object id : expectedValueMap.keySet()) {
+        boolean forked = compareItemsInParallel(expectedValueMap.keySet(), result, new ItemComparison<Object>() {
+            @Override
+            public void compare(Object id, JSONCompareDetailResult part) throws JSONException {
+                String elementKey = formatUniqueKey(key, uniqueKey, id);
+                if (!actualValueMap.containsKey(id)) {
+                    part.missing(elementKey, expectedValueMap.get(id));
+                } else {
+                    compareValues(elementKey, expectedValueMap.get(id), actualValueMap.get(id), part);
+                }
+            }
+        });
+        // real indices, only needed to record absolute paths
+        boolean trackPaths = result.isTrackingAbsolutePaths();
+        Map<Object, Integer> expectedIndexMap = trackPaths ? arrayOfJsonObjectToIndexMap(expected, uniqueKey) : null;
+        Map<Object, Integer> actualIndexMap = trackPaths ? arrayOfJsonObjectToIndexMap(actual, uniqueKey) : null;
+        // forked elements are already merged, only the unexpected ones are left
+        Set<Object> expectedIds = forked ? Collections.<Object>emptySet() : expectedValueMap.keySet();
+        for (Object id : expectedIds) {
             if (result.quickFail()) return;
-            if (!actualValueMap.containsKey(id)) {
-                result.missing(formatUniqueKey(key, uniqueKey, id), expectedValueMap.get(id));
-                continue;
+            String elementKey = formatUniqueKey(key, uniqueKey, id);
+            if (trackPaths) {
+                result.pushPathFrame(key, elementKey, indexOf(expectedIndexMap, id), indexOf(actualIndexMap, id));
+            }
+            try {
+                if (!actualValueMap.containsKey(id)) {
+                    result.missing(elementKey, expectedValueMap.get(id));
+                    continue;
+                }
+                JSONObject expectedValue = expectedValueMap.get(id);
+                JSONObject actualValue = actualValueMap.get(id);
+                compareValues(elementKey, expectedValue, actualValue, result);
+            } finally {
+                if (trackPaths) result.popPathFrame();
             }
-            JSONObject expectedValue = expectedValueMap.get(id);
-            JSONObject actualValue = actualValueMap.get(id);
-            compareValues(formatUniqueKey(key, uniqueKey, id), expectedValue, actualValue, result);
         }
         for (Object id : actualValueMap.keySet()) {
             if (result.quickFail()) return;
             if (!expectedValueMap.containsKey(id)) {
-                result.unexpected(formatUniqueKey(key, uniqueKey, id), actualValueMap.get(id));
+                String elementKey = formatUniqueKey(key, uniqueKey, id);
+                if (trackPaths) result.pushPathFrame(key, elementKey, -1, indexOf(actualIndexMap, id));
+                result.unexpected(elementKey, actualValueMap.get(id));
+                if (trackPaths) result.popPathFrame();
             }
         }
     }
 
+    // Sort both sides and merge them linearly instead of building two cardinality maps; arrays over the
+    // spill threshold are merge-sorted on disk so huge arrays of ids don't need a boxed map entry per value.
     protected void compareJSONArrayOfSimpleValues(String key, JSONArray expected, JSONArray actual, JSONCompareDetailResult result) throws JSONException {
-        Map<Object, Integer> expectedCount = JSONCompareUtil.getCardinalityMap(jsonArrayToList(expected));
-        Map<Object, Integer> actualCount = JSONCompareUtil.getCardinalityMap(jsonArrayToList(actual));
-        for (Object o : expectedCount.keySet()) {
-            if (result.quickFail()) return;
-            if (!actualCount.containsKey(o)) {
-                result.missing(key + "[]", o);
-            } else if (!actualCount.get(o).equals(expectedCount.get(o))) {
-                // 改动：加入JSONCompareResult._fieldFailures字段中
-                result.fail(key + "[]", "Expected " + expectedCount.get(o) + " occurrence(s) " +
-                        "of " + o, " but got " + actualCount.get(o) + " occurrence(s)");
+        CompareContext context = getCompareContext();
+        File spillDirectory = context.getSpillDirectory() == null ? null : new File(context.getSpillDirectory());
+        // large arrays are sorted on the fork/join pool when the parallel engine is enabled, in the same order
+        int threshold = context.getParallelThreshold();
+        boolean parallel = threshold > 0 && Math.max(expected.length(), actual.length()) >= threshold;
+        BaselineIndex baseline = result.getBaselineIndex();
+        Object[] sortedExpected = baseline == null ? null : baseline.sortedValues(expected);
+        try (SortedValueCursor expectedValues = sortedExpected != null ? SimpleValueSorter.sorted(sortedExpected)
+                : SimpleValueSorter.sort(expected, context.getSpillThreshold(), spillDirectory, parallel);
+             SortedValueCursor actualValues = SimpleValueSorter.sort(actual, context.getSpillThreshold(), spillDirectory, parallel)) {
+            while (expectedValues.hasNext() || actualValues.hasNext()) {
+                if (result.quickFail()) return;
+                int order;
+                if (!actualValues.hasNext()) {
+                    order = -1;
+                } else if (!expectedValues.hasNext()) {
+                    order = 1;
+                } else {
+                    order = SimpleValueSorter.ORDER.compare(expectedValues.peek(), actualValues.peek());
+                }
+                if (order < 0) {
+                    Object o = expectedValues.next();
+                    skipEqualValues(expectedValues, o);
+                    result.missing(key + "[]", o);
+                } else if (order > 0) {
+                    Object o = actualValues.next();
+                    skipEqualValues(actualValues, o);
+                    result.unexpected(key + "[]", o);
+                } else {
+                    Object o = expectedValues.next();
+                    int expectedCount = 1 + skipEqualValues(expectedValues, o);
+                    actualValues.next();
+                    int actualCount = 1 + skipEqualValues(actualValues, o);
+                    if (expectedCount != actualCount) {
+                        // 改动：加入JSONCompareResult._fieldFailures字段中
+                        result.fail(key + "[]", "Expected " + expectedCount + " occurrence(s) " +
+                                "of " + o, " but got " + actualCount + " occurrence(s)");
+                    }
+                }
             }
         }
-        for (Object o : actualCount.keySet()) {
-            if (result.quickFail()) return;
-            if (!expectedCount.containsKey(o)) {
-                result.unexpected(key + "[]", o);
-            }
+    }
+
+    private static int skipEqualValues(SortedValueCursor values, Object value) {
+        int count = 0;
+        while (values.hasNext() && SimpleValueSorter.ORDER.compare(values.peek(), value) == 0) {
+            values.next();
+            count++;
         }
+        return count;
     }
 
-    protected void compareJSONArrayWithStrictOrder(String key, JSONArray expected, JSONArray actual, JSONCompareDetailResult result) throws JSONException {
+    protected void compareJSONArrayWithStrictOrder(final String key, final JSONArray expected, final JSONArray actual, JSONCompareDetailResult result) throws JSONException {
         // 20220825 支持不同长度的json array进行对比
         int length = Math.min(expected.length(), actual.length());
         for (int i = length; i < expected.length(); i++) {
@@ -156,6 +379,13 @@ public abstract class AbstractComparator implements JSONComparator {
             result.unexpected(key + "[" + i + "]", actualValue);
         }
         // 修改对比的范围
+        boolean forked = compareItemsInParallel(indices(length), result, new ItemComparison<Integer>() {
+            @Override
+            public void compare(Integer i, JSONCompareDetailResult part) throws JSONException {
+                compareValues(key + "[" + i + "]", expected.get(i), actual.get(i), part);
+            }
+        });
+        if (forked) return;
         for (int i = 0; i < length; ++i) {
             if (result.quickFail()) return;
             Object expectedValue = expected.get(i);
@@ -171,6 +401,11 @@ public abstract class AbstractComparator implements JSONComparator {
     protected void recursivelyCompareJSONArray(String key, JSONArray expected, JSONArray actual,
                                                JSONCompareDetailResult result) throws JSONException {
         Set<Integer> matched = new HashSet<Integer>();
+        // settles most candidate pairs from cached signatures before falling back to a full compareJSON
+        SubtreePrecheck precheck = SubtreePrecheck.forComparator(this, result);
+        // trial matches only need a yes or no, one probe result serves all of them
+        JSONCompareDetailResult probe = JSONCompareDetailResult.newProbe(result);
+        MatchMemo memo = result.getMatchMemo();
         for (int i = 0; i < expected.length(); ++i) {
             if (result.quickFail()) return;
             Object expectedElement = expected.get(i);
@@ -180,14 +415,19 @@ public abstract class AbstractComparator implements JSONComparator {
                 if (matched.contains(j) || !actualElement.getClass().equals(expectedElement.getClass())) {
                     continue;
                 }
-                if (expectedElement instanceof JSONObject) {
-                    if (compareJSON((JSONObject) expectedElement, (JSONObject) actualElement).passed()) {
+                if (precheck != null && (expectedElement instanceof JSONObject || expectedElement instanceof JSONArray)) {
+                    SubtreePrecheck.Verdict verdict = precheck.check(expectedElement, actualElement);
+                    if (verdict == SubtreePrecheck.Verdict.DIFFERENT) {
+                        continue;
+                    }
+                    if (verdict == SubtreePrecheck.Verdict.EQUAL) {
                         matched.add(j);
                         matchFound = true;
                         break;
                     }
-                } else if (expectedElement instanceof JSONArray) {
-                    if (compareJSON((JSONArray) expectedElement, (JSONArray) actualElement).passed()) {
+                }
+                if (expectedElement instanceof JSONObject || expectedElement instanceof JSONArray) {
+                    if (memo.matches(this, expectedElement, actualElement, probe)) {
                         matched.add(j);
                         matchFound = true;
                         break;
@@ -59,6 +59,12 @@ public class ArraySizeComparator extends DefaultComparator {
         super(mode);
     }
 
+    @Override
+    protected boolean supportsPrecheck() {
+        // expected arrays hold sizes, not elements
+        return false;
+    }
+
     /**
      * Expected array should consist of either 1 or 2 integer values that define
      * maximum and minimum valid lengths of the actual array. If expected array
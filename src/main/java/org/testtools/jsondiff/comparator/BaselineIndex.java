@@ -0,0 +1,206 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.comparator;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Indices of an expected document that is compared against many actual documents: the unique key and key
+ * map of its keyed arrays, the sorted values of its simple-value arrays and the {@link NodeSignature}s of its
+ * subtrees. Each index is computed on first use and then reused by every comparison against the document.
+ *
+ * <p>Only the nodes of the document the index was created for are indexed, lookups of other nodes return
+ * null. The document must not be modified once it is indexed. An index can be used by concurrent
+ * comparisons.</p>
+ *
+ * @see org.testtools.jsondiff.JSONCompareDetailResult#setBaselineIndex(BaselineIndex)
+ */
+public final class BaselineIndex {
+
+    private final Object root;
+    // built once and never modified afterwards, so lookups need no lock
+    private final Map<JSONArray, ArrayIndex> arrays = new IdentityHashMap<JSONArray, ArrayIndex>();
+    private volatile Map<Object, NodeSignature> signatures;
+
+    private BaselineIndex(Object root, Map<Object, NodeSignature> signatures, Map<JSONArray, String> uniqueKeys) {
+        this.root = root;
+        this.signatures = signatures;
+        Deque<Object> pending = new ArrayDeque<Object>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Object node = pending.pop();
+            if (node instanceof JSONObject) {
+                JSONObject object = (JSONObject) node;
+                for (String key : object.keySet()) {
+                    pending.push(object.opt(key));
+                }
+            } else if (node instanceof JSONArray) {
+                JSONArray array = (JSONArray) node;
+                ArrayIndex index = new ArrayIndex();
+                if (uniqueKeys.containsKey(array)) {
+                    index.restoredKey = true;
+                    index.uniqueKey = uniqueKeys.get(array);
+                }
+                arrays.put(array, index);
+                for (int i = 0; i < array.length(); i++) {
+                    pending.push(array.opt(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the index of a parsed expected document.
+     *
+     * @param root the document, as parsed by {@link org.testtools.jsondiff.JSONParser}
+     * @return the index, whose entries are computed on first use
+     */
+    public static BaselineIndex of(Object root) {
+        return new BaselineIndex(root, null, Collections.<JSONArray, String>emptyMap());
+    }
+
+    /**
+     * Creates the index of an expected document whose signatures and unique keys were computed before, e.g.
+     * when the document was written to a {@link org.testtools.jsondiff.BaselineFile}.
+     *
+     * @param root       the document
+     * @param signatures signatures of all {@link JSONObject}s and {@link JSONArray}s of the document, keyed
+     *                   by identity
+     * @param uniqueKeys unique keys of arrays of objects, keyed by identity, a null value if an array has
+     *                   none; the keys of other arrays are found on first use
+     * @return the index
+     */
+    public static BaselineIndex of(Object root, Map<Object, NodeSignature> signatures,
+                                   Map<JSONArray, String> uniqueKeys) {
+        return new BaselineIndex(root, signatures, uniqueKeys);
+    }
+
+    /**
+     * Returns the normalized elements of a simple-value array of the document in
+     * {@link SimpleValueSorter#ORDER}. The returned array must not be modified.
+     *
+     * @param array a simple-value array
+     * @return the sorted values, or null if the array isn't part of the document
+     * @throws JSONException JSON parsing error
+     */
+    public Object[] sortedValues(JSONArray array) throws JSONException {
+        ArrayIndex index = arrays.get(array);
+        if (index == null) {
+            return null;
+        }
+        Object[] values = index.sortedValues;
+        if (values == null) {
+            values = new Object[array.length()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = JSONCompareUtil.normalizeSimpleValue(array.get(i));
+            }
+            Arrays.sort(values, SimpleValueSorter.ORDER);
+            // racing comparisons compute equal arrays, any of them can be kept
+            index.sortedValues = values;
+        }
+        return values;
+    }
+
+    /**
+     * Returns the unique key and key map of a non-empty array of objects of the document.
+     *
+     * @param array an array of {@link JSONObject}s
+     * @return the keyed array, or null if the array isn't part of the document
+     * @throws JSONException JSON parsing error
+     */
+    public KeyedArray keyedArray(JSONArray array) throws JSONException {
+        ArrayIndex index = arrays.get(array);
+        if (index == null) {
+            return null;
+        }
+        KeyedArray keyed = index.keyed;
+        if (keyed == null) {
+            String uniqueKey = index.restoredKey ? index.uniqueKey : JSONCompareUtil.findUniqueKey(array);
+            Map<Object, JSONObject> valueMap = uniqueKey == null ? Collections.<Object, JSONObject>emptyMap()
+                    : Collections.unmodifiableMap(JSONCompareUtil.arrayOfJsonObjectToMap(array, uniqueKey));
+            keyed = new KeyedArray(uniqueKey, valueMap);
+            index.keyed = keyed;
+        }
+        return keyed;
+    }
+
+    /**
+     * Returns the signature of a subtree of the document. The signatures of the whole document are computed
+     * together on first use.
+     *
+     * @param node a {@link JSONObject} or {@link JSONArray}
+     * @return the signature, or null if the node isn't part of the document
+     */
+    public NodeSignature signature(Object node) {
+        Map<Object, NodeSignature> computed = signatures;
+        if (computed == null) {
+            synchronized (this) {
+                computed = signatures;
+                if (computed == null) {
+                    computed = new IdentityHashMap<Object, NodeSignature>();
+                    if (root instanceof JSONObject || root instanceof JSONArray) {
+                        NodeSignature.of(root, computed);
+                    }
+                    signatures = computed;
+                }
+            }
+        }
+        return computed.get(node);
+    }
+
+    /**
+     * Unique key of an array of objects together with the objects by their key value.
+     */
+    public static final class KeyedArray {
+        private final String uniqueKey;
+        private final Map<Object, JSONObject> valueMap;
+
+        KeyedArray(String uniqueKey, Map<Object, JSONObject> valueMap) {
+            this.uniqueKey = uniqueKey;
+            this.valueMap = valueMap;
+        }
+
+        /**
+         * @return the unique key, see {@link JSONCompareUtil#findUniqueKey(JSONArray)}, or null if there's none
+         */
+        public String getUniqueKey() {
+            return uniqueKey;
+        }
+
+        /**
+         * @return unmodifiable map from key value to object, empty if there's no unique key
+         */
+        public Map<Object, JSONObject> getValueMap() {
+            return valueMap;
+        }
+    }
+
+    private static final class ArrayIndex {
+        // set before the index is published
+        private boolean restoredKey;
+        private String uniqueKey;
+        private volatile Object[] sortedValues;
+        private volatile KeyedArray keyed;
+    }
+}
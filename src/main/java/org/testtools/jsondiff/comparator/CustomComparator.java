@@ -18,24 +18,52 @@ import org.testtools.jsondiff.CompareContext;
 import org.testtools.jsondiff.Customization;
 import org.testtools.jsondiff.JSONCompareDetailResult;
 import org.testtools.jsondiff.matcher.ValueMatcherException;
+import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class CustomComparator extends DefaultComparator {
 
+    /** Maximum number of paths whose resolved customization is cached. */
+    public static final int MAX_RESOLVED_PATHS = 4096;
+
+    private static final Object NO_CUSTOMIZATION = new Object();
+    // stands for the contents of a [...] segment, no rule path can contain it literally
+    private static final char SEGMENT_PLACEHOLDER = '\u0000';
+
     private final Collection<Customization> customizations;
+    private final boolean normalizeSegments;
+    // resolved customization, or NO_CUSTOMIZATION, by normalized path
+    private final ConcurrentHashMap<String, Object> resolved = new ConcurrentHashMap<String, Object>();
 
     public CustomComparator(CompareContext mode, Customization... customizations) {
         super(mode);
         this.customizations = Arrays.asList(customizations);
+        boolean normalize = true;
+        for (Customization customization : customizations) {
+            normalize &= customization.isIndexInsensitive();
+        }
+        this.normalizeSegments = normalize;
+    }
+
+    // a customization may match values that differ, so signatures only predict an uncustomized comparison, and
+    // like for DefaultComparator a subclass opts in by overriding
+    @Override
+    protected boolean supportsPrecheck() {
+        return getClass() == CustomComparator.class && customizations.isEmpty();
     }
 
     @Override
     public void compareValues(String prefix, Object expectedValue, Object actualValue, JSONCompareDetailResult result) throws JSONException {
         Customization customization = getCustomization(prefix);
         if (customization != null) {
+            result.enterPath(prefix);
             try {
                 if (!customization.matches(prefix, actualValue, expectedValue, result, this)) {
                     result.fail(prefix, expectedValue, actualValue);
@@ -48,6 +76,43 @@ public class CustomComparator extends DefaultComparator {
         }
     }
 
+    /**
+     * Lets the customizations precompute what they derive from the values of an expected document that is
+     * compared many times, see {@link org.testtools.jsondiff.matcher.ValueMatcher#prepareExpected(Object)}.
+     * Each simple value is passed to the customization that applies to its path, with array elements at their
+     * index paths.
+     *
+     * @param expected the expected document
+     */
+    public void prepareExpected(Object expected) {
+        if (customizations.isEmpty()) {
+            return;
+        }
+        Deque<Object[]> pending = new ArrayDeque<Object[]>();
+        pending.push(new Object[]{"", expected});
+        while (!pending.isEmpty()) {
+            Object[] entry = pending.pop();
+            String path = (String) entry[0];
+            Object value = entry[1];
+            if (value instanceof JSONObject) {
+                JSONObject object = (JSONObject) value;
+                for (String key : object.keySet()) {
+                    pending.push(new Object[]{JSONCompareUtil.qualify(path, key), object.opt(key)});
+                }
+            } else if (value instanceof JSONArray) {
+                JSONArray array = (JSONArray) value;
+                for (int i = 0; i < array.length(); i++) {
+                    pending.push(new Object[]{path + "[" + i + "]", array.opt(i)});
+                }
+            } else if (value != null && !JSONObject.NULL.equals(value)) {
+                Customization customization = getCustomization(path);
+                if (customization != null) {
+                    customization.prepareExpected(value);
+                }
+            }
+        }
+    }
+
     // 对黑名单做特殊的排除处理
     @Override
     public void markMissing(String prefix, Object expected, JSONCompareDetailResult result) {
@@ -68,10 +133,58 @@ public class CustomComparator extends DefaultComparator {
         result.unexpected(prefix, JSONCompareUtil.getIfNull(actual));
     }
 
+    // Paths of array elements, like orders[17].price and orders[18].price, share one cache entry when no rule
+    // targets specific indices, so the rules are scanned once per shape of the document.
     private Customization getCustomization(String path) {
+        if (customizations.isEmpty()) {
+            return null;
+        }
+        String key = normalizeSegments ? normalizeSegments(path) : path;
+        if (key == null) {
+            return findCustomization(path);
+        }
+        Object customization = resolved.get(key);
+        if (customization == null) {
+            Customization found = findCustomization(path);
+            customization = found == null ? NO_CUSTOMIZATION : found;
+            if (resolved.size() < MAX_RESOLVED_PATHS) {
+                resolved.put(key, customization);
+            }
+        }
+        return customization == NO_CUSTOMIZATION ? null : (Customization) customization;
+    }
+
+    private Customization findCustomization(String path) {
         for (Customization c : customizations)
             if (c.appliesToPath(path))
                 return c;
         return null;
     }
+
+    // Replaces the contents of each non-empty [...] segment by a placeholder, or returns null if a segment holds a
+    // dot, e.g. a unique key value like [price=1.5], since wildcards don't match across dots.
+    private static String normalizeSegments(String path) {
+        int open = path.indexOf('[');
+        if (open < 0) {
+            return path;
+        }
+        StringBuilder normalized = new StringBuilder(path.length());
+        int start = 0;
+        while (open >= 0) {
+            int close = path.indexOf(']', open + 1);
+            if (close < 0) {
+                return null;
+            }
+            normalized.append(path, start, open + 1);
+            if (close > open + 1) {
+                if (path.substring(open + 1, close).indexOf('.') >= 0) {
+                    return null;
+                }
+                normalized.append(SEGMENT_PLACEHOLDER);
+            }
+            start = close;
+            open = path.indexOf('[', close + 1);
+        }
+        return normalized.append(path, start, path.length()).toString();
+    }
 }
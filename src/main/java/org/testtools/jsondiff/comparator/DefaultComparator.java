@@ -35,6 +35,17 @@ public class DefaultComparator extends AbstractComparator {
         this.mode = mode;
     }
 
+    @Override
+    protected CompareContext getCompareContext() {
+        return mode;
+    }
+
+    // a subclass may compare values its own way, it opts in by overriding
+    @Override
+    protected boolean supportsPrecheck() {
+        return getClass() == DefaultComparator.class;
+    }
+
     @Override
     public void compareJSON(String prefix, JSONObject expected, JSONObject actual, JSONCompareDetailResult result)
             throws JSONException {
@@ -50,6 +61,11 @@ public class DefaultComparator extends AbstractComparator {
     @Override
     public void compareValues(String prefix, Object expectedValue, Object actualValue, JSONCompareDetailResult result)
             throws JSONException {
+        result.enterPath(prefix);
+        if (expectedValue == actualValue && expectedValue instanceof String) {
+            // a string interned by a SymbolTable shared by both documents
+            return;
+        }
         if (areNumbers(expectedValue, actualValue)) {
             if (areNotSameDoubles(expectedValue, actualValue)) {
                 result.fail(prefix, expectedValue, actualValue);
@@ -118,6 +134,10 @@ public class DefaultComparator extends AbstractComparator {
     public void markResultFeature(JSONCompareDetailResult result) {
         if (mode.needQuickFail()) result.setComplete(false);
         if (mode.needIgnoreNull()) result.setIgnoreNull(true);
+        result.setFailureBudget(mode.getMaxFailures(), mode.getMaxFailuresPerPath(), mode.getMaxFailuresPerCategory());
+        if (mode.getTimeoutMillis() > 0 || mode.getCancellationToken() != null) {
+            result.setDeadline(mode.getTimeoutMillis(), mode.getCancellationToken());
+        }
     }
 
     protected boolean areNumbers(Object expectedValue, Object actualValue) {
@@ -127,4 +127,27 @@ public interface JSONComparator {
      * @param result stores the actual state of the comparison result
      */
     void markResultFeature(JSONCompareDetailResult result);
+
+    /**
+     * Compares two {@link JSONObject}s or two {@link JSONArray}s only to learn whether they match, as trial
+     * matches of array elements do. The comparison runs on a probe result from
+     * {@link JSONCompareDetailResult#newProbe()}, which records nothing and ends at the first difference.
+     *
+     * @param expected the expected JSON object or array
+     * @param actual   the actual value of the same class
+     * @param probe    a probe result, reset before the comparison
+     * @return true if the values match
+     * @throws JSONException JSON parsing error
+     */
+    default boolean matches(Object expected, Object actual, JSONCompareDetailResult probe) throws JSONException {
+        probe.resetProbe();
+        markResultFeature(probe);
+        if (expected instanceof JSONObject) {
+            compareJSON("", (JSONObject) expected, (JSONObject) actual, probe);
+        } else {
+            // like compareJSON(JSONArray, JSONArray), route arrays through compareValues so root customizations apply
+            compareValues("", expected, actual, probe);
+        }
+        return probe.passed();
+    }
 }
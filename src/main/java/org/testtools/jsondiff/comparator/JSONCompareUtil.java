@@ -48,6 +48,36 @@ public final class JSONCompareUtil {
         return valueMap;
     }
 
+    /**
+     * Converts the provided {@link JSONArray} to a Map from the value at {@code uniqueKey} in each object to the
+     * index of the object. Like {@link #arrayOfJsonObjectToMap(JSONArray, String)}, the last object wins.
+     *
+     * @param array     the JSON array to convert
+     * @param uniqueKey the key to map the indices to
+     * @return the map of indices
+     * @throws JSONException JSON parsing error
+     */
+    public static Map<Object, Integer> arrayOfJsonObjectToIndexMap(JSONArray array, String uniqueKey) throws JSONException {
+        Map<Object, Integer> indexMap = new HashMap<Object, Integer>();
+        for (int i = 0; i < array.length(); ++i) {
+            JSONObject jsonObject = (JSONObject) array.get(i);
+            indexMap.put(jsonObject.get(uniqueKey), i);
+        }
+        return indexMap;
+    }
+
+    /**
+     * Returns the index of a unique key value in an index map.
+     *
+     * @param indexMap map built by {@link #arrayOfJsonObjectToIndexMap(JSONArray, String)}
+     * @param id       unique key value
+     * @return the index, or -1 if the value is not in the map
+     */
+    public static int indexOf(Map<Object, Integer> indexMap, Object id) {
+        Integer index = indexMap.get(id);
+        return index == null ? -1 : index;
+    }
+
     /**
      * Searches for the unique key of the {@code expected} JSON array.
      *
@@ -136,16 +166,25 @@ public final class JSONCompareUtil {
     public static List<Object> jsonArrayToList(JSONArray expected) throws JSONException {
         List<Object> jsonObjects = new ArrayList<Object>(expected.length());
         for (int i = 0; i < expected.length(); ++i) {
-            Object o = expected.get(i);
-            if (o instanceof Double && (int) ((double) o) == (double) o) {
-                jsonObjects.add((int) ((double) o));
-            } else {
-                jsonObjects.add(o);
-            }
+            jsonObjects.add(normalizeSimpleValue(expected.get(i)));
         }
         return jsonObjects;
     }
 
+    /**
+     * Normalizes a simple value the way unordered array comparison expects it: a {@link Double}
+     * holding a whole number is treated as the equivalent {@link Integer}.
+     *
+     * @param o the value to normalize
+     * @return the normalized value
+     */
+    public static Object normalizeSimpleValue(Object o) {
+        if (o instanceof Double && (int) ((double) o) == (double) o) {
+            return (int) ((double) o);
+        }
+        return o;
+    }
+
     /**
      * Returns whether all of the elements in the given array are simple values.
      *
@@ -228,6 +267,49 @@ public final class JSONCompareUtil {
         return key + "[" + uniqueKey + "=" + value + "]";
     }
 
+    /**
+     * Generalizes a failure path to its path pattern by replacing array indices and unique key selectors
+     * with a wildcard, e.g. {@code items[3].price} and {@code items[id=7].price} become {@code items[*].price}.
+     *
+     * @param path failure path
+     * @return the path pattern
+     */
+    public static String toPathPattern(String path) {
+        return toPathPattern(path, null);
+    }
+
+    /**
+     * Generalizes a failure path to its path pattern like {@link #toPathPattern(String)}, and collects the
+     * replaced selectors so that the path can be rebuilt from the pattern.
+     *
+     * @param path      failure path
+     * @param selectors if not null, receives each replaced selector followed by {@code '\0'}
+     * @return the path pattern
+     */
+    public static String toPathPattern(String path, StringBuilder selectors) {
+        int open = path.indexOf('[');
+        if (open < 0) {
+            return path;
+        }
+        StringBuilder sb = new StringBuilder(path.length());
+        int from = 0;
+        while (open >= 0) {
+            int close = path.indexOf(']', open);
+            if (close < 0) {
+                break;
+            }
+            if (close == open + 1) {
+                sb.append(path, from, close + 1);
+            } else {
+                sb.append(path, from, open).append("[*]");
+                if (selectors != null) selectors.append(path, open + 1, close).append('\0');
+            }
+            from = close + 1;
+            open = path.indexOf('[', from);
+        }
+        return sb.append(path, from, path.length()).toString();
+    }
+
     /**
      * Creates a cardinality map from {@code coll}.
      *
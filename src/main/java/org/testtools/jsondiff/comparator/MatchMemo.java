@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.comparator;
+
+import org.testtools.jsondiff.JSONCompareDetailResult;
+import org.json.JSONException;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Outcomes of the trial matches of one comparison, so that a pair of subtrees that is tried again, e.g. because
+ * an unordered array holds duplicate elements or nested unordered arrays are matched recursively, is settled
+ * without comparing it again.
+ *
+ * <p>Pairs are looked up by the comparator, which carries the rules of the trial match, and by the
+ * {@link NodeSignature} content hashes of the two subtrees, so that duplicates share the outcome of the pair
+ * tried first. A trial match compares the subtrees at the root path, so its outcome doesn't depend on where the
+ * subtrees are found. A recorded outcome is only reused when the subtrees are the recorded ones or have exactly
+ * their content, so a hash collision costs a deep comparison, never a wrong outcome. The signatures are cached by
+ * node identity for the whole comparison and shared with {@link SubtreePrecheck}. A memo is used by one thread at
+ * a time.</p>
+ *
+ * @see JSONCompareDetailResult#getMatchMemo()
+ */
+public final class MatchMemo {
+
+    /** Maximum number of recorded outcomes, later pairs are compared without being recorded. */
+    public static final int MAX_OUTCOMES = 1 << 16;
+
+    private final BaselineIndex baseline;
+    private final Map<Object, NodeSignature> signatures = new IdentityHashMap<Object, NodeSignature>();
+    private final Map<Pair, Trial> outcomes = new HashMap<Pair, Trial>();
+    private int hitCount;
+
+    /**
+     * @param baseline index of the expected document whose signatures are reused, or null
+     */
+    public MatchMemo(BaselineIndex baseline) {
+        this.baseline = baseline;
+    }
+
+    /**
+     * Returns the signature of a subtree, from the baseline index or computed on first use.
+     *
+     * @param node a {@link org.json.JSONObject} or {@link org.json.JSONArray}
+     * @return the signature
+     */
+    public NodeSignature signature(Object node) {
+        NodeSignature signature = baseline == null ? null : baseline.signature(node);
+        return signature != null ? signature : NodeSignature.of(node, signatures);
+    }
+
+    /**
+     * Runs a trial match, or returns its outcome if the same pair, or a pair of the same content, was already tried
+     * with the same comparator. The outcome of a probe that ran out of time isn't recorded.
+     *
+     * @param comparator comparator of the trial match
+     * @param expected   the expected JSON object or array
+     * @param actual     the actual value of the same class
+     * @param probe      probe result, see {@link JSONComparator#matches(Object, Object, JSONCompareDetailResult)}
+     * @return true if the values match
+     * @throws JSONException JSON parsing error
+     */
+    public boolean matches(JSONComparator comparator, Object expected, Object actual, JSONCompareDetailResult probe)
+            throws JSONException {
+        Pair pair = new Pair(comparator, signature(expected).getContentHash(), signature(actual).getContentHash());
+        Trial known = outcomes.get(pair);
+        if (known != null && NodeSignature.sameContent(known.expected, expected)
+                && NodeSignature.sameContent(known.actual, actual)) {
+            hitCount++;
+            return known.matched;
+        }
+        boolean matched = comparator.matches(expected, actual, probe);
+        // on a collision the pair tried first keeps the entry
+        if (known == null && !probe.isTimedOut() && outcomes.size() < MAX_OUTCOMES) {
+            outcomes.put(pair, new Trial(expected, actual, matched));
+        }
+        return matched;
+    }
+
+    /**
+     * @return number of trial matches settled from a recorded outcome
+     */
+    public int getHitCount() {
+        return hitCount;
+    }
+
+    private static final class Trial {
+        private final Object expected;
+        private final Object actual;
+        private final boolean matched;
+
+        Trial(Object expected, Object actual, boolean matched) {
+            this.expected = expected;
+            this.actual = actual;
+            this.matched = matched;
+        }
+    }
+
+    private static final class Pair {
+        private final JSONComparator comparator;
+        private final long expectedHash;
+        private final long actualHash;
+
+        Pair(JSONComparator comparator, long expectedHash, long actualHash) {
+            this.comparator = comparator;
+            this.expectedHash = expectedHash;
+            this.actualHash = actualHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Pair)) {
+                return false;
+            }
+            Pair other = (Pair) o;
+            return comparator == other.comparator && expectedHash == other.expectedHash
+                    && actualHash == other.actualHash;
+        }
+
+        @Override
+        public int hashCode() {
+            long h = expectedHash * 31 + actualHash;
+            return (int) (h ^ (h >>> 32)) * 31 + System.identityHashCode(comparator);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.comparator;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Map;
+
+/**
+ * Cheap summary of a {@link JSONObject} or {@link JSONArray} node: its element count, a histogram of the
+ * types of its direct children, a hash of its key set and a hash of its whole content.
+ *
+ * <p>The content hash distinguishes number classes and, for arrays, element order, so nodes with different content
+ * hashes are different documents. Equal hashes don't prove equal content, a collision can be found or crafted, so
+ * users of signatures confirm it with a deep check before treating two nodes as identical.</p>
+ */
+public final class NodeSignature {
+    public static final int TYPE_OBJECT = 0;
+    public static final int TYPE_ARRAY = 1;
+    public static final int TYPE_STRING = 2;
+    public static final int TYPE_NUMBER = 3;
+    public static final int TYPE_BOOLEAN = 4;
+    public static final int TYPE_NULL = 5;
+    public static final int TYPE_OTHER = 6;
+    private static final int TYPE_COUNT = 7;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int count;
+    private final int[] typeHistogram;
+    private final long keySetHash;
+    private final long contentHash;
+
+    private NodeSignature(int count, int[] typeHistogram, long keySetHash, long contentHash) {
+        this.count = count;
+        this.typeHistogram = typeHistogram;
+        this.keySetHash = keySetHash;
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * Returns the signature of a container node, computing it and the signatures of its container
+     * descendants on first use.
+     *
+     * @param node  a {@link JSONObject} or {@link JSONArray}
+     * @param cache signatures by node, keyed by identity
+     * @return the signature of the node
+     */
+    public static NodeSignature of(Object node, Map<Object, NodeSignature> cache) {
+        NodeSignature signature = cache.get(node);
+        if (signature == null) {
+            signature = node instanceof JSONObject ? ofObject((JSONObject) node, cache)
+                    : ofArray((JSONArray) node, cache);
+            cache.put(node, signature);
+        }
+        return signature;
+    }
+
+    /**
+     * Restores the signature of a container node whose hashes were computed before, e.g. by a
+     * {@link org.testtools.jsondiff.BaselineFile}. The count and types of the children are taken from the node.
+     *
+     * @param node        a {@link JSONObject} or {@link JSONArray}
+     * @param keySetHash  the {@link #getKeySetHash()} computed for the node
+     * @param contentHash the {@link #getContentHash()} computed for the node
+     * @return the signature of the node
+     */
+    public static NodeSignature restore(Object node, long keySetHash, long contentHash) {
+        int[] histogram = new int[TYPE_COUNT];
+        int count;
+        if (node instanceof JSONObject) {
+            JSONObject object = (JSONObject) node;
+            for (String key : object.keySet()) {
+                histogram[typeOf(object.opt(key))]++;
+            }
+            count = object.length();
+        } else {
+            JSONArray array = (JSONArray) node;
+            for (int i = 0; i < array.length(); i++) {
+                histogram[typeOf(array.opt(i))]++;
+            }
+            count = array.length();
+        }
+        return new NodeSignature(count, histogram, keySetHash, contentHash);
+    }
+
+    private static NodeSignature ofObject(JSONObject object, Map<Object, NodeSignature> cache) {
+        int[] histogram = new int[TYPE_COUNT];
+        long keySetHash = 0;
+        long contentHash = 0;
+        for (String key : object.keySet()) {
+            Object value = object.opt(key);
+            histogram[typeOf(value)]++;
+            long keyHash = mix(hashString(key));
+            keySetHash += keyHash;
+            // entries are combined order-insensitively, key order of a JSONObject is not significant
+            contentHash += mix(keyHash * FNV_PRIME ^ hashValue(value, cache));
+        }
+        return new NodeSignature(object.length(), histogram, keySetHash, mix(contentHash ^ TYPE_OBJECT));
+    }
+
+    private static NodeSignature ofArray(JSONArray array, Map<Object, NodeSignature> cache) {
+        int[] histogram = new int[TYPE_COUNT];
+        long contentHash = TYPE_ARRAY;
+        for (int i = 0; i < array.length(); i++) {
+            Object value = array.opt(i);
+            histogram[typeOf(value)]++;
+            contentHash = contentHash * 31 + hashValue(value, cache);
+        }
+        return new NodeSignature(array.length(), histogram, 0, mix(contentHash));
+    }
+
+    private static long hashValue(Object value, Map<Object, NodeSignature> cache) {
+        if (value instanceof JSONObject || value instanceof JSONArray) {
+            return of(value, cache).contentHash;
+        }
+        long classHash = value == null ? 0 : hashString(value.getClass().getName());
+        return mix(classHash * FNV_PRIME ^ hashString(String.valueOf(value)));
+    }
+
+    /**
+     * Tells whether two subtrees have exactly the same content, which equal signatures only suggest. Scalars must
+     * be of the same class, e.g. 1.50 and 1.5 differ.
+     *
+     * @param a a node
+     * @param b another node
+     * @return true if the subtrees are identical documents
+     */
+    static boolean sameContent(Object a, Object b) {
+        if (a == b) {
+            return true;
+        }
+        if (a instanceof JSONObject) {
+            if (!(b instanceof JSONObject) || ((JSONObject) a).length() != ((JSONObject) b).length()) {
+                return false;
+            }
+            JSONObject objectA = (JSONObject) a;
+            JSONObject objectB = (JSONObject) b;
+            for (String key : objectA.keySet()) {
+                if (!objectB.has(key) || !sameContent(objectA.opt(key), objectB.opt(key))) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (a instanceof JSONArray) {
+            if (!(b instanceof JSONArray) || ((JSONArray) a).length() != ((JSONArray) b).length()) {
+                return false;
+            }
+            JSONArray arrayA = (JSONArray) a;
+            JSONArray arrayB = (JSONArray) b;
+            for (int i = 0; i < arrayA.length(); i++) {
+                if (!sameContent(arrayA.opt(i), arrayB.opt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return a != null && b != null && a.getClass() == b.getClass() && a.equals(b);
+    }
+
+    static int typeOf(Object value) {
+        if (value instanceof JSONObject) {
+            return TYPE_OBJECT;
+        } else if (value instanceof JSONArray) {
+            return TYPE_ARRAY;
+        } else if (value instanceof String) {
+            return TYPE_STRING;
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Double
+                || value instanceof BigDecimal || value instanceof BigInteger || value instanceof Float) {
+            return TYPE_NUMBER;
+        } else if (value instanceof Boolean) {
+            return TYPE_BOOLEAN;
+        } else if (value == null || JSONObject.NULL.equals(value)) {
+            return TYPE_NULL;
+        }
+        return TYPE_OTHER;
+    }
+
+    private static long hashString(String s) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < s.length(); i++) {
+            hash ^= s.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * @return number of keys of an object or elements of an array
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @param type one of the {@code TYPE_} constants
+     * @return number of direct children of the given type
+     */
+    public int getTypeCount(int type) {
+        return typeHistogram[type];
+    }
+
+    /**
+     * @return order-insensitive hash of the keys of an object, 0 for arrays
+     */
+    public long getKeySetHash() {
+        return keySetHash;
+    }
+
+    /**
+     * @return exact hash of the whole subtree
+     */
+    public long getContentHash() {
+        return contentHash;
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.comparator;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts the elements of a simple-value {@link JSONArray} for sort-merge comparison.
+ *
+ * <p>Arrays up to the spill threshold are sorted in memory. Larger arrays are sorted externally:
+ * the array is cut into sorted runs that are written to spill files, and the runs are merged
+ * back lazily while the returned cursor is consumed.</p>
+ */
+public final class SimpleValueSorter {
+
+    /**
+     * Total order over normalized simple values that is consistent with {@link Object#equals(Object)}:
+     * null sorts first, then booleans, numbers and strings. Numbers of different classes are ordered by
+     * value and then by class so that, like in a cardinality map, {@code 1} and {@code 1L} stay distinct.
+     */
+    public static final Comparator<Object> ORDER = SimpleValueSorter::compareValues;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_FALSE = 1;
+    private static final byte TAG_TRUE = 2;
+    private static final byte TAG_INTEGER = 3;
+    private static final byte TAG_LONG = 4;
+    private static final byte TAG_DOUBLE = 5;
+    private static final byte TAG_FLOAT = 6;
+    private static final byte TAG_BIG_INTEGER = 7;
+    private static final byte TAG_BIG_DECIMAL = 8;
+    private static final byte TAG_STRING = 9;
+
+    private SimpleValueSorter() {
+    }
+
+    /**
+     * Returns the normalized elements of {@code array} in {@link #ORDER}.
+     *
+     * @param array          simple-value array to sort
+     * @param spillThreshold maximum number of elements sorted in memory, a value less than one disables spilling
+     * @param spillDirectory directory for spill files, or null for the default temporary directory
+     * @return cursor over the sorted values, must be closed by the caller
+     * @throws JSONException JSON parsing error
+     */
+    public static SortedValueCursor sort(JSONArray array, int spillThreshold, File spillDirectory)
+            throws JSONException {
+        return sort(array, spillThreshold, spillDirectory, false);
+    }
+
+    /**
+     * Returns the normalized elements of {@code array} in {@link #ORDER}, sorting them in memory with
+     * {@link Arrays#parallelSort} if {@code parallel} is set. The order is the same either way.
+     *
+     * @param array          simple-value array to sort
+     * @param spillThreshold maximum number of elements sorted in memory, a value less than one disables spilling
+     * @param spillDirectory directory for spill files, or null for the default temporary directory
+     * @param parallel       true to sort in memory on the common fork/join pool
+     * @return cursor over the sorted values, must be closed by the caller
+     * @throws JSONException JSON parsing error
+     */
+    public static SortedValueCursor sort(JSONArray array, int spillThreshold, File spillDirectory, boolean parallel)
+            throws JSONException {
+        int length = array.length();
+        if (spillThreshold <= 0 || length <= spillThreshold || !allSpillable(array)) {
+            Object[] values = new Object[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = JSONCompareUtil.normalizeSimpleValue(array.get(i));
+            }
+            if (parallel) {
+                Arrays.parallelSort(values, ORDER);
+            } else {
+                Arrays.sort(values, ORDER);
+            }
+            return new ArrayCursor(values);
+        }
+        return externalSort(array, spillThreshold, spillDirectory);
+    }
+
+    /**
+     * Returns a cursor over values that are already normalized and in {@link #ORDER}, such as the ones of
+     * {@link BaselineIndex#sortedValues(JSONArray)}. The array is not modified.
+     *
+     * @param sortedValues the sorted values
+     * @return cursor over the values
+     */
+    public static SortedValueCursor sorted(Object[] sortedValues) {
+        return new ArrayCursor(sortedValues);
+    }
+
+    private static SortedValueCursor externalSort(JSONArray array, int runSize, File spillDirectory)
+            throws JSONException {
+        List<RunReader> runs = new ArrayList<RunReader>();
+        Object[] buffer = new Object[runSize];
+        try {
+            int length = array.length();
+            for (int from = 0; from < length; from += runSize) {
+                int count = Math.min(runSize, length - from);
+                for (int i = 0; i < count; i++) {
+                    buffer[i] = JSONCompareUtil.normalizeSimpleValue(array.get(from + i));
+                }
+                Arrays.sort(buffer, 0, count, ORDER);
+                runs.add(writeRun(buffer, count, spillDirectory));
+                Arrays.fill(buffer, 0, count, null);
+            }
+            return new MergeCursor(runs);
+        } catch (IOException e) {
+            for (RunReader run : runs) {
+                run.close();
+            }
+            throw new UncheckedIOException("Failed to spill array to disk", e);
+        }
+    }
+
+    private static RunReader writeRun(Object[] values, int count, File spillDirectory) throws IOException {
+        Path file = spillDirectory == null ? Files.createTempFile("ujd-sort-", ".run")
+                : Files.createTempFile(spillDirectory.toPath(), "ujd-sort-", ".run");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            for (int i = 0; i < count; i++) {
+                writeValue(out, values[i]);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return new RunReader(file, count);
+    }
+
+    private static boolean allSpillable(JSONArray array) throws JSONException {
+        for (int i = 0; i < array.length(); i++) {
+            Object o = array.get(i);
+            if (!(JSONObject.NULL.equals(o) || o instanceof Boolean || o instanceof Integer || o instanceof Long
+                    || o instanceof Double || o instanceof Float || o instanceof BigInteger
+                    || o instanceof BigDecimal || o instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeValue(DataOutputStream out, Object o) throws IOException {
+        if (o instanceof Boolean) {
+            out.writeByte((Boolean) o ? TAG_TRUE : TAG_FALSE);
+        } else if (o instanceof Integer) {
+            out.writeByte(TAG_INTEGER);
+            out.writeInt((Integer) o);
+        } else if (o instanceof Long) {
+            out.writeByte(TAG_LONG);
+            out.writeLong((Long) o);
+        } else if (o instanceof Double) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double) o);
+        } else if (o instanceof Float) {
+            out.writeByte(TAG_FLOAT);
+            out.writeFloat((Float) o);
+        } else if (o instanceof BigInteger) {
+            out.writeByte(TAG_BIG_INTEGER);
+            writeString(out, o.toString());
+        } else if (o instanceof BigDecimal) {
+            out.writeByte(TAG_BIG_DECIMAL);
+            writeString(out, o.toString());
+        } else if (o instanceof String) {
+            out.writeByte(TAG_STRING);
+            writeString(out, (String) o);
+        } else {
+            out.writeByte(TAG_NULL);
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_INTEGER:
+                return in.readInt();
+            case TAG_LONG:
+                return in.readLong();
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_FLOAT:
+                return in.readFloat();
+            case TAG_BIG_INTEGER:
+                return new BigInteger(readString(in));
+            case TAG_BIG_DECIMAL:
+                return new BigDecimal(readString(in));
+            case TAG_STRING:
+                return readString(in);
+            default:
+                return JSONObject.NULL;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int compareValues(Object a, Object b) {
+        int rankA = rank(a);
+        int rankB = rank(b);
+        if (rankA != rankB) {
+            return Integer.compare(rankA, rankB);
+        }
+        switch (rankA) {
+            case 0:
+                return 0;
+            case 1:
+                return ((Boolean) a).compareTo((Boolean) b);
+            case 2:
+                return compareNumbers((Number) a, (Number) b);
+            case 3:
+                return ((String) a).compareTo((String) b);
+            default:
+                int c = a.getClass().getName().compareTo(b.getClass().getName());
+                return c != 0 ? c : a.toString().compareTo(b.toString());
+        }
+    }
+
+    private static int rank(Object o) {
+        if (o == null || JSONObject.NULL.equals(o)) {
+            return 0;
+        } else if (o instanceof Boolean) {
+            return 1;
+        } else if (o instanceof Number) {
+            return 2;
+        } else if (o instanceof String) {
+            return 3;
+        }
+        return 4;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareNumbers(Number a, Number b) {
+        if (a.getClass() == b.getClass() && a instanceof Comparable) {
+            int c = ((Comparable<Object>) a).compareTo(b);
+            if (c != 0 || !(a instanceof BigDecimal)) {
+                return c;
+            }
+            // 1.0 and 1.00 are not equal as map keys, keep them apart
+            return Integer.compare(((BigDecimal) a).scale(), ((BigDecimal) b).scale());
+        }
+        int c;
+        try {
+            c = new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString()));
+        } catch (NumberFormatException e) {
+            c = Double.compare(a.doubleValue(), b.doubleValue());
+        }
+        return c != 0 ? c : a.getClass().getName().compareTo(b.getClass().getName());
+    }
+
+    private static final class ArrayCursor implements SortedValueCursor {
+        private final Object[] values;
+        private int position;
+
+        ArrayCursor(Object[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < values.length;
+        }
+
+        @Override
+        public Object peek() {
+            return values[position];
+        }
+
+        @Override
+        public Object next() {
+            return values[position++];
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class RunReader {
+        private final Path file;
+        private int remaining;
+        private DataInputStream in;
+        private Object head;
+
+        RunReader(Path file, int count) {
+            this.file = file;
+            this.remaining = count;
+        }
+
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                head = null;
+                return false;
+            }
+            if (in == null) {
+                in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+            }
+            head = readValue(in);
+            remaining--;
+            return true;
+        }
+
+        void close() {
+            try {
+                if (in != null) {
+                    in.close();
+                }
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    private static final class MergeCursor implements SortedValueCursor {
+        private final List<RunReader> runs;
+        private final PriorityQueue<RunReader> queue;
+
+        MergeCursor(List<RunReader> runs) throws IOException {
+            this.runs = runs;
+            this.queue = new PriorityQueue<RunReader>(Math.max(1, runs.size()),
+                    (r1, r2) -> ORDER.compare(r1.head, r2.head));
+            for (RunReader run : runs) {
+                if (run.advance()) {
+                    queue.add(run);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public Object peek() {
+            return queue.peek().head;
+        }
+
+        @Override
+        public Object next() {
+            RunReader run = queue.poll();
+            Object value = run.head;
+            try {
+                if (run.advance()) {
+                    queue.add(run);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read spilled array from disk", e);
+            }
+            return value;
+        }
+
+        @Override
+        public void close() {
+            for (RunReader run : runs) {
+                run.close();
+            }
+            queue.clear();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.comparator;
+
+import java.io.Closeable;
+
+/**
+ * Forward-only cursor over the elements of a simple-value array in {@link SimpleValueSorter#ORDER}.
+ * Cursors backed by spill files must be closed to release them.
+ */
+public interface SortedValueCursor extends Closeable {
+
+    /**
+     * @return true if there are more values
+     */
+    boolean hasNext();
+
+    /**
+     * Returns the next value without consuming it.
+     *
+     * @return the next value
+     */
+    Object peek();
+
+    /**
+     * Returns and consumes the next value.
+     *
+     * @return the next value
+     */
+    Object next();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.comparator;
+
+import org.testtools.jsondiff.CompareContext;
+import org.testtools.jsondiff.JSONCompareDetailResult;
+import org.json.JSONObject;
+
+/**
+ * Cheap precheck tier used before a deep comparison of two subtrees.
+ *
+ * <p>The precheck compares {@link NodeSignature}s, which are computed lazily and cached per node for the
+ * lifetime of the comparison, so an element that is tried against many candidates is summarized only once.
+ * A verdict is only returned when it is implied by the comparison rules of the comparator: identical
+ * content always compares equal, and a count, key-set or type mismatch that the comparator would
+ * report proves a difference. Identical content is confirmed by an exact check of the subtrees, as equal hashes
+ * don't prove it. Everything else is left to the deep comparison.</p>
+ *
+ * <p>Signatures are cached in the {@link MatchMemo} of the comparison. Signatures of an expected document with a
+ * {@link BaselineIndex} are taken from the index, so they are computed once for all comparisons against it.</p>
+ */
+public final class SubtreePrecheck {
+
+    /**
+     * Outcome of a precheck.
+     */
+    public enum Verdict {
+        /** The subtrees are verified identical, the deep comparison would pass. */
+        EQUAL,
+        /** The deep comparison would fail. */
+        DIFFERENT,
+        /** The signatures don't settle the comparison. */
+        UNKNOWN
+    }
+
+    private final boolean extensible;
+    private final boolean ignoreNull;
+    private final MatchMemo memo;
+
+    /**
+     * @param context context of the comparator whose outcome the precheck predicts
+     */
+    public SubtreePrecheck(CompareContext context) {
+        this(context, (BaselineIndex) null);
+    }
+
+    /**
+     * @param context  context of the comparator whose outcome the precheck predicts
+     * @param baseline index of the expected document whose signatures are reused, or null
+     */
+    public SubtreePrecheck(CompareContext context, BaselineIndex baseline) {
+        this(context, new MatchMemo(baseline));
+    }
+
+    /**
+     * @param context context of the comparator whose outcome the precheck predicts
+     * @param memo    memo of the comparison whose cached signatures are shared
+     */
+    public SubtreePrecheck(CompareContext context, MatchMemo memo) {
+        this.extensible = context.isExtensible();
+        this.ignoreNull = context.needIgnoreNull();
+        this.memo = memo;
+    }
+
+    /**
+     * Creates a precheck for a comparator.
+     *
+     * @param comparator comparator that compares the subtrees
+     * @return a precheck, or null if the comparator's outcome can't be predicted from signatures
+     */
+    public static SubtreePrecheck forComparator(JSONComparator comparator) {
+        return forComparator(comparator, null);
+    }
+
+    /**
+     * Creates a precheck for a comparator that shares the signatures cached by the comparison of a result,
+     * see {@link JSONCompareDetailResult#getMatchMemo()}.
+     *
+     * @param comparator comparator that compares the subtrees
+     * @param result     result of the comparison, or null
+     * @return a precheck, or null if the comparator's outcome can't be predicted from signatures
+     */
+    public static SubtreePrecheck forComparator(JSONComparator comparator, JSONCompareDetailResult result) {
+        if (comparator instanceof AbstractComparator && ((AbstractComparator) comparator).supportsPrecheck()) {
+            return new SubtreePrecheck(((AbstractComparator) comparator).getCompareContext(),
+                    result == null ? new MatchMemo(null) : result.getMatchMemo());
+        }
+        return null;
+    }
+
+    /**
+     * Prechecks two {@link JSONObject}s or two {@link org.json.JSONArray}s.
+     *
+     * @param expected expected node
+     * @param actual   actual node of the same class
+     * @return the verdict
+     */
+    public Verdict check(Object expected, Object actual) {
+        NodeSignature e = memo.signature(expected);
+        NodeSignature a = memo.signature(actual);
+        if (e.getCount() == a.getCount() && e.getKeySetHash() == a.getKeySetHash()
+                && e.getContentHash() == a.getContentHash()) {
+            // equal hashes only suggest equal content, a collision is left to the deep comparison
+            return NodeSignature.sameContent(expected, actual) ? Verdict.EQUAL : Verdict.UNKNOWN;
+        }
+        // an extensible object only needs the expected keys, arrays are always compared in full
+        boolean subset = extensible && expected instanceof JSONObject;
+        if (subset ? e.getCount() > a.getCount() : e.getCount() != a.getCount()) {
+            return Verdict.DIFFERENT;
+        }
+        if (!subset && e.getKeySetHash() != a.getKeySetHash()) {
+            return Verdict.DIFFERENT;
+        }
+        // with ignoreNull an expected null matches any type, so the types of the children prove nothing
+        if (!ignoreNull && e.getTypeCount(NodeSignature.TYPE_OTHER) == 0
+                && a.getTypeCount(NodeSignature.TYPE_OTHER) == 0) {
+            for (int type = NodeSignature.TYPE_OBJECT; type < NodeSignature.TYPE_OTHER; type++) {
+                if (subset ? e.getTypeCount(type) > a.getTypeCount(type)
+                        : e.getTypeCount(type) != a.getTypeCount(type)) {
+                    return Verdict.DIFFERENT;
+                }
+            }
+        }
+        return Verdict.UNKNOWN;
+    }
+}
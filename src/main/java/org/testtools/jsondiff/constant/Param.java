@@ -25,5 +25,12 @@ public class Param {
     public static final String PARAM_KEY = "param";
     public static final String NAME_KEY = "name";
     public static final String IGNORE_NULL_KEY = "ignoreNull";
+    public static final String SPILL_THRESHOLD_KEY = "spillThreshold";
+    public static final String SPILL_DIRECTORY_KEY = "spillDirectory";
+    public static final String MAX_FAILURES_KEY = "maxFailures";
+    public static final String MAX_FAILURES_PER_PATH_KEY = "maxFailuresPerPath";
+    public static final String MAX_FAILURES_PER_CATEGORY_KEY = "maxFailuresPerCategory";
+    public static final String PARALLEL_THRESHOLD_KEY = "parallelThreshold";
+    public static final String TIMEOUT_MILLIS_KEY = "timeoutMillis";
 
 }
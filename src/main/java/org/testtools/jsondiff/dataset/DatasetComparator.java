@@ -0,0 +1,655 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.dataset;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.Option;
+import com.jayway.jsonpath.spi.json.JsonOrgJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JsonOrgMappingProvider;
+import org.json.JSONObject;
+import org.testtools.jsondiff.CompiledCompareRules;
+import org.testtools.jsondiff.JSONCompare;
+import org.testtools.jsondiff.JSONCompareResult;
+import org.testtools.jsondiff.ParsedDocument;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Compares two datasets of JSON records, newline delimited or in a JSON array, matching the records by a key.
+ *
+ * <p>The comparison runs as a pipeline of stages connected by bounded queues: one reader per file, a pool
+ * of parsers that parse the records and read their keys, a single key join, a pool of comparators that apply
+ * the compiled rules to each joined pair of parsed records, and the calling thread, which hands the outcomes to
+ * a {@link DatasetResultHandler}. A record is parsed once, unless it is spilled to disk, see
+ * {@link #setPartitions(int)}. Each stage blocks when the next one falls behind, so the records in flight
+ * are bounded by the queue capacity.</p>
+ *
+ * <p>The join keeps the records whose key hasn't been seen on the other side yet, and the keys of the joined
+ * records to report a repeated key. Datasets exported in the same order are joined almost immediately; for
+ * unordered datasets the join holds up to a whole dataset, unless the datasets are partitioned on disk, see
+ * {@link #setPartitions(int)}.</p>
+ */
+public class DatasetComparator {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    // reads record keys straight from org.json documents, a missing key reads as null
+    private static final Configuration ORG_JSON = Configuration.builder()
+            .jsonProvider(new JsonOrgJsonProvider())
+            .mappingProvider(new JsonOrgMappingProvider())
+            .options(Option.DEFAULT_PATH_LEAF_TO_NULL, Option.SUPPRESS_EXCEPTIONS)
+            .build();
+
+    private static final int EXPECTED = RawRecord.EXPECTED;
+    private static final int ACTUAL = RawRecord.ACTUAL;
+    private static final String[] SIDE_NAMES = {"expected", "actual"};
+
+    private final CompiledCompareRules rules;
+    private final JsonPath recordKey;
+    private int parserThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private int compareThreads = Runtime.getRuntime().availableProcessors();
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private int partitions;
+    private Path spillDirectory;
+
+    /**
+     * @param recordKey JSONPath of the key of a record, e.g. {@code $.id}
+     * @param rules     compiled rules applied to each pair of records
+     */
+    public DatasetComparator(String recordKey, CompiledCompareRules rules) {
+        this.recordKey = JsonPath.compile(recordKey);
+        this.rules = rules;
+    }
+
+    /**
+     * @param parserThreads number of threads that parse records and extract their keys
+     * @return this comparator
+     */
+    public DatasetComparator setParserThreads(int parserThreads) {
+        if (parserThreads < 1) {
+            throw new IllegalArgumentException("parserThreads must be positive: " + parserThreads);
+        }
+        this.parserThreads = parserThreads;
+        return this;
+    }
+
+    /**
+     * @param compareThreads number of threads that compare joined records
+     * @return this comparator
+     */
+    public DatasetComparator setCompareThreads(int compareThreads) {
+        if (compareThreads < 1) {
+            throw new IllegalArgumentException("compareThreads must be positive: " + compareThreads);
+        }
+        this.compareThreads = compareThreads;
+        return this;
+    }
+
+    /**
+     * @param queueCapacity capacity of each queue between two stages
+     * @return this comparator
+     */
+    public DatasetComparator setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be positive: " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    /**
+     * Switches to an out-of-core join for datasets larger than memory. Both datasets are hash-partitioned by
+     * record key into spill files, then each pair of partitions is joined and compared on its own, one
+     * partition per compare thread. The heap then holds the expected records of one partition per compare
+     * thread instead of the unjoined records of the whole datasets.
+     *
+     * @param partitions number of partitions, 0 for the in-memory join
+     * @return this comparator
+     */
+    public DatasetComparator setPartitions(int partitions) {
+        if (partitions < 0) {
+            throw new IllegalArgumentException("partitions must not be negative: " + partitions);
+        }
+        this.partitions = partitions;
+        return this;
+    }
+
+    /**
+     * @param spillDirectory directory for the partition files, or null for the default temporary directory
+     * @return this comparator
+     */
+    public DatasetComparator setSpillDirectory(Path spillDirectory) {
+        this.spillDirectory = spillDirectory;
+        return this;
+    }
+
+    /**
+     * Compares two datasets. A file whose first character is {@code [} is read as a JSON array of records,
+     * any other file as NDJSON, whose blank lines are skipped. Returns once every outcome has been handed out.
+     *
+     * @param expected file of expected records
+     * @param actual   file of actual records
+     * @param handler  receives the outcome of each record on the calling thread
+     * @return counts of the comparison
+     * @throws IOException if a file can't be read
+     */
+    public DatasetSummary compare(Path expected, Path actual, DatasetResultHandler handler) throws IOException {
+        Pipeline pipeline = new Pipeline();
+        if (partitions > 0) {
+            pipeline.spill = new PartitionSpill(2, partitions, spillDirectory);
+        }
+        ExecutorService threads = Executors.newFixedThreadPool(2 + parserThreads + 1 + compareThreads,
+                new DaemonThreadFactory());
+        pipeline.threads = threads;
+        try {
+            threads.execute(pipeline.stage(new ReadTask(pipeline, expected, EXPECTED)));
+            threads.execute(pipeline.stage(new ReadTask(pipeline, actual, ACTUAL)));
+            for (int i = 0; i < parserThreads; i++) {
+                threads.execute(pipeline.stage(new ParseTask(pipeline)));
+            }
+            if (pipeline.spill == null) {
+                threads.execute(pipeline.stage(new JoinTask(pipeline)));
+                for (int i = 0; i < compareThreads; i++) {
+                    threads.execute(pipeline.stage(new CompareTask(pipeline)));
+                }
+            } else {
+                threads.execute(pipeline.stage(new SpillTask(pipeline)));
+                for (int i = 0; i < compareThreads; i++) {
+                    threads.execute(pipeline.stage(new PartitionTask(pipeline)));
+                }
+            }
+            return handOut(pipeline, handler);
+        } finally {
+            threads.shutdownNow();
+            if (pipeline.spill != null) {
+                awaitStages(threads);
+                pipeline.spill.close();
+            }
+        }
+    }
+
+    private static void awaitStages(ExecutorService threads) {
+        try {
+            // spill files can only be deleted once no stage writes or reads them
+            threads.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private DatasetSummary handOut(Pipeline pipeline, DatasetResultHandler handler) throws IOException {
+        long[] counts = new long[5];
+        int finished = 0;
+        try {
+            while (finished < compareThreads) {
+                Outcome outcome = pipeline.outcomes.poll(100, TimeUnit.MILLISECONDS);
+                if (outcome == null) {
+                    pipeline.rethrowFailure();
+                } else if (outcome == Outcome.END) {
+                    finished++;
+                } else {
+                    counts[outcome.kind]++;
+                    outcome.handOut(handler);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("dataset comparison interrupted", e);
+        }
+        pipeline.rethrowFailure();
+        return new DatasetSummary(counts[Outcome.EQUAL], counts[Outcome.DIFFERENT], counts[Outcome.MISSING],
+                counts[Outcome.EXTRA], counts[Outcome.ERROR]);
+    }
+
+    /**
+     * Queues and shared state of one comparison.
+     */
+    private final class Pipeline {
+        final BlockingQueue<RawRecord> raw = new ArrayBlockingQueue<RawRecord>(queueCapacity);
+        final BlockingQueue<KeyedRecord> keyed = new ArrayBlockingQueue<KeyedRecord>(queueCapacity);
+        final BlockingQueue<KeyedRecord[]> pairs = new ArrayBlockingQueue<KeyedRecord[]>(queueCapacity);
+        final BlockingQueue<Outcome> outcomes = new ArrayBlockingQueue<Outcome>(queueCapacity);
+        final BlockingQueue<Integer> partitionQueue = new LinkedBlockingQueue<Integer>();
+        final AtomicInteger readers = new AtomicInteger(2);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        ExecutorService threads;
+        PartitionSpill spill;
+
+        Runnable stage(final Stage stage) {
+            return new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        stage.run();
+                    } catch (InterruptedException e) {
+                        // the pipeline is being torn down
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                        threads.shutdownNow();
+                    }
+                }
+            };
+        }
+
+        void rethrowFailure() throws IOException {
+            Throwable t = failure.get();
+            if (t instanceof IOException) {
+                throw (IOException) t;
+            } else if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else if (t instanceof Error) {
+                throw (Error) t;
+            } else if (t != null) {
+                throw new IOException(t);
+            }
+        }
+    }
+
+    private interface Stage {
+        void run() throws Exception;
+    }
+
+    private final class ReadTask implements Stage {
+        private final Pipeline pipeline;
+        private final Path file;
+        private final int side;
+
+        ReadTask(Pipeline pipeline, Path file, int side) {
+            this.pipeline = pipeline;
+            this.file = file;
+            this.side = side;
+        }
+
+        @Override
+        public void run() throws Exception {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                long lineNumber = skipWhitespace(reader);
+                reader.mark(1);
+                boolean array = reader.read() == '[';
+                reader.reset();
+                if (array) {
+                    readElements(reader);
+                } else {
+                    readLines(reader, lineNumber);
+                }
+            }
+            if (pipeline.readers.decrementAndGet() == 0) {
+                for (int i = 0; i < parserThreads; i++) {
+                    pipeline.raw.put(RawRecord.END);
+                }
+            }
+        }
+
+        private void readLines(BufferedReader reader, long lineNumber) throws Exception {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (!line.trim().isEmpty()) {
+                    pipeline.raw.put(new RawRecord(side, lineNumber, false, line));
+                }
+            }
+        }
+
+        /**
+         * Splits the array into its elements, each copied to one line without the whitespace between its
+         * tokens, so that elements keep their source text, numbers included, and compare as they would from
+         * NDJSON. The elements are parsed by the parse tasks.
+         */
+        private void readElements(BufferedReader reader) throws Exception {
+            char[] buffer = new char[8192];
+            StringBuilder element = new StringBuilder();
+            boolean opened = false;
+            boolean inString = false;
+            boolean escaped = false;
+            int depth = 0;
+            long index = 0;
+            int length;
+            while ((length = reader.read(buffer)) != -1) {
+                for (int i = 0; i < length; i++) {
+                    char c = buffer[i];
+                    if (inString) {
+                        element.append(c);
+                        if (escaped) {
+                            escaped = false;
+                        } else if (c == '\\') {
+                            escaped = true;
+                        } else if (c == '"') {
+                            inString = false;
+                        }
+                    } else if (Character.isWhitespace(c)) {
+                        continue;
+                    } else if (!opened) {
+                        // the '[' the file starts with
+                        opened = true;
+                    } else if (depth == 0 && (c == ',' || c == ']')) {
+                        if (c == ',' || index > 0 || element.length() > 0) {
+                            pipeline.raw.put(new RawRecord(side, index++, true, element.toString()));
+                            element.setLength(0);
+                        }
+                        if (c == ']') {
+                            return;
+                        }
+                    } else {
+                        if (c == '"') {
+                            inString = true;
+                        } else if (c == '{' || c == '[') {
+                            depth++;
+                        } else if (c == '}' || c == ']') {
+                            depth--;
+                        }
+                        element.append(c);
+                    }
+                }
+            }
+            throw new IOException(SIDE_NAMES[side] + " JSON array is not closed");
+        }
+    }
+
+    /**
+     * Skips leading whitespace so the first character tells an array from NDJSON.
+     *
+     * @return number of lines skipped
+     */
+    private static long skipWhitespace(BufferedReader reader) throws IOException {
+        long lines = 0;
+        while (true) {
+            reader.mark(1);
+            int c = reader.read();
+            if (c == -1 || !Character.isWhitespace(c)) {
+                reader.reset();
+                return lines;
+            }
+            if (c == '\n') {
+                lines++;
+            }
+        }
+    }
+
+    private final class ParseTask implements Stage {
+        private final Pipeline pipeline;
+
+        ParseTask(Pipeline pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        @Override
+        public void run() throws Exception {
+            RawRecord record;
+            while ((record = pipeline.raw.take()) != RawRecord.END) {
+                ParsedDocument document;
+                Object key;
+                try {
+                    document = ParsedDocument.parse(record.text);
+                    key = recordKey.read(document.getDocument(), ORG_JSON);
+                } catch (RuntimeException e) {
+                    pipeline.outcomes.put(Outcome.error(null, record.describe() + " is not valid JSON: "
+                            + e.getMessage()));
+                    continue;
+                }
+                if (key == null || JSONObject.NULL.equals(key)) {
+                    pipeline.outcomes.put(Outcome.error(null, record.describe() + " has no key "
+                            + recordKey.getPath()));
+                    continue;
+                }
+                pipeline.keyed.put(new KeyedRecord(record, JSONObject.valueToString(key), document));
+            }
+            pipeline.keyed.put(KeyedRecord.END);
+        }
+    }
+
+    private final class JoinTask implements Stage {
+        private final Pipeline pipeline;
+
+        JoinTask(Pipeline pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        @Override
+        public void run() throws Exception {
+            // unjoined records by key, indexed by side
+            List<Map<String, KeyedRecord>> pending = new ArrayList<Map<String, KeyedRecord>>(2);
+            pending.add(new HashMap<String, KeyedRecord>());
+            pending.add(new HashMap<String, KeyedRecord>());
+            // only keys are kept once joined, so a key repeated after its match is still reported
+            Set<String> joined = new HashSet<String>();
+            int finished = 0;
+            while (finished < parserThreads) {
+                KeyedRecord record = pipeline.keyed.take();
+                if (record == KeyedRecord.END) {
+                    finished++;
+                    continue;
+                }
+                Map<String, KeyedRecord> own = pending.get(record.raw.side);
+                KeyedRecord match = pending.get(1 - record.raw.side).remove(record.key);
+                if (joined.contains(record.key)) {
+                    pipeline.outcomes.put(Outcome.error(record.key, record.raw.describe()
+                            + " repeats joined key " + record.key));
+                } else if (match != null) {
+                    joined.add(record.key);
+                    pipeline.pairs.put(record.raw.side == EXPECTED ? new KeyedRecord[]{record, match}
+                            : new KeyedRecord[]{match, record});
+                } else if (own.containsKey(record.key)) {
+                    pipeline.outcomes.put(repeatedKey(record, own.get(record.key)));
+                } else {
+                    own.put(record.key, record);
+                }
+            }
+            for (KeyedRecord record : pending.get(EXPECTED).values()) {
+                pipeline.outcomes.put(new Outcome(Outcome.MISSING, record.key, record.raw.text, null));
+            }
+            for (KeyedRecord record : pending.get(ACTUAL).values()) {
+                pipeline.outcomes.put(new Outcome(Outcome.EXTRA, record.key, record.raw.text, null));
+            }
+            for (int i = 0; i < compareThreads; i++) {
+                pipeline.pairs.put(KeyedRecord.END_PAIR);
+            }
+        }
+    }
+
+    private final class CompareTask implements Stage {
+        private final Pipeline pipeline;
+
+        CompareTask(Pipeline pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        @Override
+        public void run() throws Exception {
+            KeyedRecord[] pair;
+            while ((pair = pipeline.pairs.take()) != KeyedRecord.END_PAIR) {
+                pipeline.outcomes.put(compareRecords(pair[EXPECTED], pair[ACTUAL]));
+            }
+            pipeline.outcomes.put(Outcome.END);
+        }
+    }
+
+    private Outcome compareRecords(KeyedRecord expected, KeyedRecord actual) {
+        try {
+            JSONCompareResult result = JSONCompare.compareJSON(expected.parsed(), actual.parsed(), rules);
+            return result.getFailure().isEmpty() ? new Outcome(Outcome.EQUAL, expected.key, null, null)
+                    : new Outcome(Outcome.DIFFERENT, expected.key, null, result);
+        } catch (Exception e) {
+            return Outcome.error(expected.key, "record " + expected.key + " can't be compared: " + e);
+        }
+    }
+
+    /**
+     * Writes the keyed records to their partitions, then hands the partitions to the partition tasks.
+     */
+    private final class SpillTask implements Stage {
+        private final Pipeline pipeline;
+
+        SpillTask(Pipeline pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        @Override
+        public void run() throws Exception {
+            int finished = 0;
+            while (finished < parserThreads) {
+                KeyedRecord record = pipeline.keyed.take();
+                if (record == KeyedRecord.END) {
+                    finished++;
+                } else {
+                    pipeline.spill.write(record.raw.side, record.key, record.raw);
+                }
+            }
+            pipeline.spill.finishWriting();
+            for (int p = 0; p < pipeline.spill.getPartitionCount(); p++) {
+                pipeline.partitionQueue.put(p);
+            }
+            for (int i = 0; i < compareThreads; i++) {
+                pipeline.partitionQueue.put(-1);
+            }
+        }
+    }
+
+    /**
+     * Joins and compares partitions: the expected records of a partition are loaded by key, then the actual
+     * records are streamed against them.
+     */
+    private final class PartitionTask implements Stage {
+        private final Pipeline pipeline;
+
+        PartitionTask(Pipeline pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        @Override
+        public void run() throws Exception {
+            int partition;
+            while ((partition = pipeline.partitionQueue.take()) >= 0) {
+                compare(partition);
+                pipeline.spill.delete(partition);
+            }
+            pipeline.outcomes.put(Outcome.END);
+        }
+
+        private void compare(int partition) throws Exception {
+            Map<String, KeyedRecord> expected = new HashMap<String, KeyedRecord>();
+            try (PartitionSpill.Cursor cursor = pipeline.spill.open(EXPECTED, partition)) {
+                KeyedRecord record;
+                while ((record = cursor.next()) != null) {
+                    KeyedRecord previous = expected.get(record.key);
+                    if (previous != null) {
+                        pipeline.outcomes.put(repeatedKey(record, previous));
+                    } else {
+                        expected.put(record.key, record);
+                    }
+                }
+            }
+            Map<String, KeyedRecord> seen = new HashMap<String, KeyedRecord>();
+            try (PartitionSpill.Cursor cursor = pipeline.spill.open(ACTUAL, partition)) {
+                KeyedRecord record;
+                while ((record = cursor.next()) != null) {
+                    KeyedRecord previous = seen.get(record.key);
+                    if (previous != null) {
+                        pipeline.outcomes.put(repeatedKey(record, previous));
+                        continue;
+                    }
+                    // only a stub is kept for a compared record, to report a repeated key
+                    seen.put(record.key, new KeyedRecord(new RawRecord(ACTUAL, record.raw.number,
+                            record.raw.element, null), record.key));
+                    KeyedRecord match = expected.remove(record.key);
+                    pipeline.outcomes.put(match == null ? new Outcome(Outcome.EXTRA, record.key, record.raw.text, null)
+                            : compareRecords(match, record));
+                }
+            }
+            for (KeyedRecord record : expected.values()) {
+                pipeline.outcomes.put(new Outcome(Outcome.MISSING, record.key, record.raw.text, null));
+            }
+        }
+    }
+
+    private static Outcome repeatedKey(KeyedRecord record, KeyedRecord previous) {
+        return Outcome.error(record.key, record.raw.describe() + " repeats key " + record.key + " of "
+                + previous.raw.describe());
+    }
+
+    private static final class Outcome {
+        static final int EQUAL = 0;
+        static final int DIFFERENT = 1;
+        static final int MISSING = 2;
+        static final int EXTRA = 3;
+        static final int ERROR = 4;
+        static final Outcome END = new Outcome(-1, null, null, null);
+
+        final int kind;
+        final String key;
+        final String text;
+        final JSONCompareResult result;
+
+        Outcome(int kind, String key, String text, JSONCompareResult result) {
+            this.kind = kind;
+            this.key = key;
+            this.text = text;
+            this.result = result;
+        }
+
+        static Outcome error(String key, String message) {
+            return new Outcome(ERROR, key, message, null);
+        }
+
+        void handOut(DatasetResultHandler handler) {
+            switch (kind) {
+                case EQUAL:
+                    handler.onEqual(key);
+                    break;
+                case DIFFERENT:
+                    handler.onDifferent(key, result);
+                    break;
+                case MISSING:
+                    handler.onMissing(key, text);
+                    break;
+                case EXTRA:
+                    handler.onExtra(key, text);
+                    break;
+                default:
+                    handler.onError(key, text);
+            }
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "dataset-compare-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
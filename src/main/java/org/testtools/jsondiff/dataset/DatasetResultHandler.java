@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.dataset;
+
+import org.testtools.jsondiff.JSONCompareResult;
+
+/**
+ * Receives the outcome of each record of a dataset comparison. All calls are made from the thread that runs
+ * the comparison, so a handler doesn't need to be thread safe. Records are reported in the order their
+ * comparisons finish.
+ */
+public interface DatasetResultHandler {
+
+    /**
+     * Called for a record key that only exists in the expected dataset.
+     *
+     * @param key      the record key
+     * @param expected the expected record
+     */
+    void onMissing(String key, String expected);
+
+    /**
+     * Called for a record key that only exists in the actual dataset.
+     *
+     * @param key    the record key
+     * @param actual the actual record
+     */
+    void onExtra(String key, String actual);
+
+    /**
+     * Called for a record that differs under the rules.
+     *
+     * @param key    the record key
+     * @param result the differences
+     */
+    void onDifferent(String key, JSONCompareResult result);
+
+    /**
+     * Called for a record that is equal under the rules.
+     *
+     * @param key the record key
+     */
+    default void onEqual(String key) {
+    }
+
+    /**
+     * Called for a record that can't be compared: it can't be parsed, has no key, repeats a key of its
+     * dataset or makes the rules fail.
+     *
+     * @param key     the record key, or null if it is unknown
+     * @param message what went wrong
+     */
+    void onError(String key, String message);
+}
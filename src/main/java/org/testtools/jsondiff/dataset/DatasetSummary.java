@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.dataset;
+
+/**
+ * Counts of a finished dataset comparison.
+ */
+public final class DatasetSummary {
+    private final long equal;
+    private final long different;
+    private final long missing;
+    private final long extra;
+    private final long errors;
+
+    DatasetSummary(long equal, long different, long missing, long extra, long errors) {
+        this.equal = equal;
+        this.different = different;
+        this.missing = missing;
+        this.extra = extra;
+        this.errors = errors;
+    }
+
+    /**
+     * @return number of records equal under the rules
+     */
+    public long getEqual() {
+        return equal;
+    }
+
+    /**
+     * @return number of records with differences
+     */
+    public long getDifferent() {
+        return different;
+    }
+
+    /**
+     * @return number of record keys only in the expected dataset
+     */
+    public long getMissing() {
+        return missing;
+    }
+
+    /**
+     * @return number of record keys only in the actual dataset
+     */
+    public long getExtra() {
+        return extra;
+    }
+
+    /**
+     * @return number of records that couldn't be compared
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return true if every record was found on both sides and is equal
+     */
+    public boolean passed() {
+        return different == 0 && missing == 0 && extra == 0 && errors == 0;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.dataset;
+
+import org.json.JSONException;
+import org.testtools.jsondiff.ParsedDocument;
+
+/**
+ * A record of a dataset with its key.
+ */
+final class KeyedRecord {
+    static final KeyedRecord END = new KeyedRecord(null, null);
+    static final KeyedRecord[] END_PAIR = new KeyedRecord[0];
+
+    final RawRecord raw;
+    final String key;
+    private final ParsedDocument document;
+
+    /**
+     * @param raw the record
+     * @param key its key, the JSON text of the value at the record key path
+     */
+    KeyedRecord(RawRecord raw, String key) {
+        this(raw, key, null);
+    }
+
+    /**
+     * @param raw      the record
+     * @param key      its key, the JSON text of the value at the record key path
+     * @param document the parsed record, or null to parse it when it is compared
+     */
+    KeyedRecord(RawRecord raw, String key, ParsedDocument document) {
+        this.raw = raw;
+        this.key = key;
+        this.document = document;
+    }
+
+    /**
+     * @return the parsed record, parsed again if it was read back from a spill file
+     * @throws JSONException if the record is not valid JSON
+     */
+    ParsedDocument parsed() throws JSONException {
+        return document != null ? document : ParsedDocument.parse(raw.text);
+    }
+}
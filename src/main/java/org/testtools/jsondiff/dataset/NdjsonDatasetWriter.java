@@ -0,0 +1,133 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.dataset;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testtools.jsondiff.FailureField;
+import org.testtools.jsondiff.JSONCompareResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes the outcome of every record that isn't equal as one line of JSON (NDJSON) with a {@code key}, a
+ * {@code status} of {@code missing}, {@code extra}, {@code different} or {@code error}, and the record
+ * ({@code expected} or {@code actual}), the {@code failures} as {@link FailureField}s, or the
+ * {@code message}.
+ */
+public class NdjsonDatasetWriter implements DatasetResultHandler, Closeable {
+
+    private final Writer writer;
+
+    public NdjsonDatasetWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    public NdjsonDatasetWriter(Path file) throws IOException {
+        this(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void onMissing(String key, String expected) {
+        try {
+            startLine(key, "missing");
+            writer.write(",\"expected\":");
+            writer.write(expected.trim());
+            writer.write("}\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write dataset output", e);
+        }
+    }
+
+    @Override
+    public void onExtra(String key, String actual) {
+        try {
+            startLine(key, "extra");
+            writer.write(",\"actual\":");
+            writer.write(actual.trim());
+            writer.write("}\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write dataset output", e);
+        }
+    }
+
+    @Override
+    public void onDifferent(String key, JSONCompareResult result) {
+        try {
+            startLine(key, "different");
+            writer.write(",\"failures\":[");
+            boolean first = true;
+            for (FailureField failure : result.getFailure()) {
+                if (!first) {
+                    writer.write(',');
+                }
+                first = false;
+                writer.write("{\"expected\":");
+                writeValue(failure.getExpected());
+                writer.write(",\"actual\":");
+                writeValue(failure.getActual());
+                writer.write(",\"diffKey\":");
+                writer.write(JSONObject.quote(failure.getDiffKey()));
+                writer.write(",\"reason\":");
+                writer.write(JSONObject.quote(failure.getReason()));
+                writer.write('}');
+            }
+            writer.write("]}\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write dataset output", e);
+        }
+    }
+
+    @Override
+    public void onError(String key, String message) {
+        try {
+            startLine(key, "error");
+            writer.write(",\"message\":");
+            writer.write(JSONObject.quote(message));
+            writer.write("}\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write dataset output", e);
+        }
+    }
+
+    private void startLine(String key, String status) throws IOException {
+        writer.write("{\"key\":");
+        writer.write(key == null ? "null" : JSONObject.quote(key));
+        writer.write(",\"status\":\"");
+        writer.write(status);
+        writer.write('"');
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value instanceof JSONObject) {
+            ((JSONObject) value).write(writer);
+        } else if (value instanceof JSONArray) {
+            ((JSONArray) value).write(writer);
+        } else {
+            writer.write(JSONObject.valueToString(value));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
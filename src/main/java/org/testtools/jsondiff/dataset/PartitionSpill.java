@@ -0,0 +1,188 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.dataset;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Spill files of a hash-partitioned dataset comparison: one file per side and partition, each holding the
+ * keyed records whose key hashes to the partition. Records are written by one thread and each partition is
+ * read back by one thread once writing is finished.
+ */
+final class PartitionSpill implements Closeable {
+
+    private final Path[][] files;
+    private final DataOutputStream[][] outputs;
+
+    /**
+     * @param sides          number of datasets
+     * @param partitions     number of partitions
+     * @param spillDirectory directory for spill files, or null for the default temporary directory
+     * @throws IOException if a spill file can't be created
+     */
+    PartitionSpill(int sides, int partitions, Path spillDirectory) throws IOException {
+        files = new Path[sides][partitions];
+        outputs = new DataOutputStream[sides][partitions];
+        try {
+            for (int side = 0; side < sides; side++) {
+                for (int p = 0; p < partitions; p++) {
+                    files[side][p] = spillDirectory == null ? Files.createTempFile("ujd-part-", ".spill")
+                            : Files.createTempFile(spillDirectory, "ujd-part-", ".spill");
+                    outputs[side][p] = new DataOutputStream(new BufferedOutputStream(
+                            Files.newOutputStream(files[side][p])));
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param key        record key
+     * @param partitions number of partitions
+     * @return the partition of the key
+     */
+    static int partitionOf(String key, int partitions) {
+        int h = key.hashCode();
+        return ((h ^ (h >>> 16)) & Integer.MAX_VALUE) % partitions;
+    }
+
+    int getPartitionCount() {
+        return files[0].length;
+    }
+
+    void write(int side, String key, RawRecord record) throws IOException {
+        DataOutputStream out = outputs[side][partitionOf(key, getPartitionCount())];
+        out.writeLong(record.number);
+        out.writeBoolean(record.element);
+        writeString(out, key);
+        writeString(out, record.text);
+    }
+
+    /**
+     * Flushes and closes all spill files for writing.
+     *
+     * @throws IOException if a spill file can't be written
+     */
+    void finishWriting() throws IOException {
+        for (DataOutputStream[] sideOutputs : outputs) {
+            for (int p = 0; p < sideOutputs.length; p++) {
+                if (sideOutputs[p] != null) {
+                    sideOutputs[p].close();
+                    sideOutputs[p] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param side      dataset side
+     * @param partition partition
+     * @return a cursor over the records of the partition, in write order
+     * @throws IOException if the spill file can't be opened
+     */
+    Cursor open(int side, int partition) throws IOException {
+        return new Cursor(side, new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(files[side][partition]))));
+    }
+
+    /**
+     * Deletes the spill files of a partition that has been compared.
+     *
+     * @param partition partition
+     * @throws IOException if a file can't be deleted
+     */
+    void delete(int partition) throws IOException {
+        for (Path[] sideFiles : files) {
+            if (sideFiles[partition] != null) {
+                Files.deleteIfExists(sideFiles[partition]);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (int side = 0; side < files.length; side++) {
+            for (int p = 0; p < files[side].length; p++) {
+                try {
+                    if (outputs[side][p] != null) {
+                        outputs[side][p].close();
+                    }
+                    if (files[side][p] != null) {
+                        Files.deleteIfExists(files[side][p]);
+                    }
+                } catch (IOException e) {
+                    // best effort, the file is in a temporary directory
+                }
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the records of one spill file.
+     */
+    static final class Cursor implements Closeable {
+        private final int side;
+        private final DataInputStream in;
+
+        Cursor(int side, DataInputStream in) {
+            this.side = side;
+            this.in = in;
+        }
+
+        /**
+         * @return the next record, or null at the end of the partition
+         * @throws IOException if the spill file can't be read
+         */
+        KeyedRecord next() throws IOException {
+            long number;
+            try {
+                number = in.readLong();
+            } catch (EOFException e) {
+                return null;
+            }
+            boolean element = in.readBoolean();
+            String key = readString(in);
+            return new KeyedRecord(new RawRecord(side, number, element, readString(in)), key);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
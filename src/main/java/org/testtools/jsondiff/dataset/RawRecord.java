@@ -0,0 +1,51 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.dataset;
+
+/**
+ * A record of a dataset as read from its file, before its key is known.
+ */
+final class RawRecord {
+    static final int EXPECTED = 0;
+    static final int ACTUAL = 1;
+    static final RawRecord END = new RawRecord(-1, 0, false, null);
+
+    private static final String[] SIDE_NAMES = {"expected", "actual"};
+
+    final int side;
+    final long number;
+    final boolean element;
+    final String text;
+
+    /**
+     * @param side    {@link #EXPECTED} or {@link #ACTUAL}
+     * @param number  line number of an NDJSON record, or index of a JSON array element
+     * @param element true for an element of a JSON array
+     * @param text    the record, on one line
+     */
+    RawRecord(int side, long number, boolean element, String text) {
+        this.side = side;
+        this.number = number;
+        this.element = element;
+        this.text = text;
+    }
+
+    /**
+     * @return where the record comes from, e.g. {@code expected line 12}
+     */
+    String describe() {
+        return SIDE_NAMES[side] + (element ? " element " : " line ") + number;
+    }
+}
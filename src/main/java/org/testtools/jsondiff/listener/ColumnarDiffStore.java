@@ -0,0 +1,280 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.listener;
+
+import org.testtools.jsondiff.DiffListener;
+import org.testtools.jsondiff.FailureCategory;
+import org.testtools.jsondiff.FailureField;
+import org.testtools.jsondiff.FieldComparisonFailure;
+import org.testtools.jsondiff.JSONCompareResultUtil;
+import org.testtools.jsondiff.comparator.JSONCompareUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Compact, columnar store for large numbers of differences.
+ *
+ * <p>Each reported failure becomes one row of parallel arrays: the id of its path pattern in an interned
+ * dictionary (see {@link JSONCompareUtil#toPathPattern(String)}), its {@link FailureCategory} as a byte, an
+ * offset into a shared buffer holding the array selectors that rebuild the full path, and references to the
+ * expected and actual values of the compared documents, which are not copied. A row costs a few tens of bytes
+ * instead of a {@link FieldComparisonFailure} with its own path string.</p>
+ *
+ * <p>Failures are materialized on demand by the iterators, which mirror the views of
+ * {@link org.testtools.jsondiff.JSONCompareDetailResult}. The store is not thread-safe.</p>
+ */
+public class ColumnarDiffStore implements DiffListener {
+
+    private static final FailureCategory[] CATEGORIES = FailureCategory.values();
+
+    private final Map<String, Integer> patternIds = new HashMap<String, Integer>();
+    private final List<String> patterns = new ArrayList<String>();
+    private final StringBuilder selectors = new StringBuilder();
+    private final int[] categoryCounts = new int[CATEGORIES.length];
+    private int[] patternColumn = new int[16];
+    private int[] selectorColumn = new int[16];
+    private byte[] categoryColumn = new byte[16];
+    private Object[] expectedColumn = new Object[16];
+    private Object[] actualColumn = new Object[16];
+    private int size;
+
+    @Override
+    public void onFailure(FieldComparisonFailure failure) {
+        add(FailureCategory.FAILURE, failure.getField(), failure.getExpected(), failure.getActual());
+    }
+
+    @Override
+    public void onMissing(FieldComparisonFailure failure) {
+        add(FailureCategory.MISSING, failure.getField(), failure.getExpected(), null);
+    }
+
+    @Override
+    public void onUnexpected(FieldComparisonFailure failure) {
+        add(FailureCategory.UNEXPECTED, failure.getField(), null, failure.getActual());
+    }
+
+    /**
+     * Appends a row.
+     *
+     * @param category kind of failure
+     * @param path     failure path
+     * @param expected expected value, referenced as is
+     * @param actual   actual value, referenced as is
+     */
+    public void add(FailureCategory category, String path, Object expected, Object actual) {
+        if (size == patternColumn.length) {
+            int capacity = size * 2;
+            patternColumn = Arrays.copyOf(patternColumn, capacity);
+            selectorColumn = Arrays.copyOf(selectorColumn, capacity);
+            categoryColumn = Arrays.copyOf(categoryColumn, capacity);
+            expectedColumn = Arrays.copyOf(expectedColumn, capacity);
+            actualColumn = Arrays.copyOf(actualColumn, capacity);
+        }
+        selectorColumn[size] = selectors.length();
+        String pattern = JSONCompareUtil.toPathPattern(path, selectors);
+        Integer id = patternIds.get(pattern);
+        if (id == null) {
+            id = patterns.size();
+            patterns.add(pattern);
+            patternIds.put(pattern, id);
+        }
+        patternColumn[size] = id;
+        categoryColumn[size] = (byte) category.ordinal();
+        expectedColumn[size] = expected;
+        actualColumn[size] = actual;
+        categoryCounts[category.ordinal()]++;
+        size++;
+    }
+
+    /**
+     * @return number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param category kind of failure
+     * @return number of rows of the category
+     */
+    public int size(FailureCategory category) {
+        return categoryCounts[category.ordinal()];
+    }
+
+    /**
+     * @return number of distinct path patterns
+     */
+    public int getPatternCount() {
+        return patterns.size();
+    }
+
+    /**
+     * @param patternId id of a path pattern
+     * @return the path pattern
+     */
+    public String getPattern(int patternId) {
+        return patterns.get(patternId);
+    }
+
+    /**
+     * @param row row index
+     * @return id of the row's path pattern
+     */
+    public int getPatternId(int row) {
+        checkRow(row);
+        return patternColumn[row];
+    }
+
+    public FailureCategory getCategory(int row) {
+        checkRow(row);
+        return CATEGORIES[categoryColumn[row]];
+    }
+
+    public Object getExpected(int row) {
+        checkRow(row);
+        return expectedColumn[row];
+    }
+
+    public Object getActual(int row) {
+        checkRow(row);
+        return actualColumn[row];
+    }
+
+    /**
+     * Rebuilds the full path of a row from its pattern and selectors.
+     *
+     * @param row row index
+     * @return the failure path
+     */
+    public String getPath(int row) {
+        checkRow(row);
+        String pattern = patterns.get(patternColumn[row]);
+        int wildcard = pattern.indexOf("[*]");
+        if (wildcard < 0) {
+            return pattern;
+        }
+        StringBuilder sb = new StringBuilder(pattern.length() + 8);
+        int from = 0;
+        int selector = selectorColumn[row];
+        while (wildcard >= 0) {
+            int end = selectors.indexOf("\0", selector);
+            sb.append(pattern, from, wildcard + 1).append(selectors, selector, end).append(']');
+            selector = end + 1;
+            from = wildcard + 3;
+            wildcard = pattern.indexOf("[*]", from);
+        }
+        return sb.append(pattern, from, pattern.length()).toString();
+    }
+
+    /**
+     * @param row row index
+     * @return the row as a failure
+     */
+    public FieldComparisonFailure getFailure(int row) {
+        return new FieldComparisonFailure(getPath(row), expectedColumn[row], actualColumn[row]);
+    }
+
+    /**
+     * @return failures whose values differ, in reporting order
+     */
+    public Iterable<FieldComparisonFailure> getFieldFailures() {
+        return failures(FailureCategory.FAILURE);
+    }
+
+    /**
+     * @return fields only in the expected JSON, in reporting order
+     */
+    public Iterable<FieldComparisonFailure> getFieldMissing() {
+        return failures(FailureCategory.MISSING);
+    }
+
+    /**
+     * @return fields only in the actual JSON, in reporting order
+     */
+    public Iterable<FieldComparisonFailure> getFieldUnexpected() {
+        return failures(FailureCategory.UNEXPECTED);
+    }
+
+    /**
+     * Simple-mode view of the rows, in the order of
+     * {@link JSONCompareResultUtil#getSimpleResult(org.testtools.jsondiff.JSONCompareDetailResult)}.
+     * Descriptions are built while iterating.
+     *
+     * @return the rows as simple-mode failures
+     */
+    public Iterable<FailureField> getFailureFields() {
+        return () -> new Iterator<FailureField>() {
+            private int category;
+            private Iterator<FieldComparisonFailure> rows = failures(CATEGORIES[0]).iterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!rows.hasNext() && category < CATEGORIES.length - 1) {
+                    rows = failures(CATEGORIES[++category]).iterator();
+                }
+                return rows.hasNext();
+            }
+
+            @Override
+            public FailureField next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return JSONCompareResultUtil.toFailureField(rows.next(), CATEGORIES[category]);
+            }
+        };
+    }
+
+    private Iterable<FieldComparisonFailure> failures(final FailureCategory category) {
+        final byte code = (byte) category.ordinal();
+        return () -> new Iterator<FieldComparisonFailure>() {
+            private int row = seek(0);
+
+            private int seek(int from) {
+                while (from < size && categoryColumn[from] != code) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return row < size;
+            }
+
+            @Override
+            public FieldComparisonFailure next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                FieldComparisonFailure failure = getFailure(row);
+                row = seek(row + 1);
+                return failure;
+            }
+        };
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of " + size);
+        }
+    }
+}
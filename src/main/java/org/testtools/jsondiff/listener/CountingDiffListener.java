@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.listener;
+
+import org.testtools.jsondiff.DiffListener;
+import org.testtools.jsondiff.FieldComparisonFailure;
+
+/**
+ * Only counts the reported failures, for comparisons where the outcome and the number of differences are enough.
+ */
+public class CountingDiffListener implements DiffListener {
+
+    private long pathCount;
+    private long failureCount;
+    private long missingCount;
+    private long unexpectedCount;
+    private boolean passed;
+
+    @Override
+    public void onEnterPath(String path) {
+        pathCount++;
+    }
+
+    @Override
+    public void onFailure(FieldComparisonFailure failure) {
+        failureCount++;
+    }
+
+    @Override
+    public void onMissing(FieldComparisonFailure failure) {
+        missingCount++;
+    }
+
+    @Override
+    public void onUnexpected(FieldComparisonFailure failure) {
+        unexpectedCount++;
+    }
+
+    @Override
+    public void onComplete(boolean passed) {
+        this.passed = passed;
+    }
+
+    /**
+     * @return number of compared paths
+     */
+    public long getPathCount() {
+        return pathCount;
+    }
+
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    public long getMissingCount() {
+        return missingCount;
+    }
+
+    public long getUnexpectedCount() {
+        return unexpectedCount;
+    }
+
+    /**
+     * @return total number of reported differences
+     */
+    public long getTotalCount() {
+        return failureCount + missingCount + unexpectedCount;
+    }
+
+    /**
+     * @return the outcome reported on completion
+     */
+    public boolean passed() {
+        return passed;
+    }
+}
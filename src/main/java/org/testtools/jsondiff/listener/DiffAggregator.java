@@ -0,0 +1,257 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.listener;
+
+import org.testtools.jsondiff.DiffListener;
+import org.testtools.jsondiff.FailureCategory;
+import org.testtools.jsondiff.FailureField;
+import org.testtools.jsondiff.FieldComparisonFailure;
+import org.testtools.jsondiff.JSONCompareResultUtil;
+import org.testtools.jsondiff.comparator.JSONCompareUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Aggregates the differences of many comparisons by path pattern, for reports like "top diverging fields".
+ *
+ * <p>Failure paths are generalized with {@link JSONCompareUtil#toPathPattern(String)}, so
+ * {@code orders[3].price} and {@code orders[id=7].price} are both counted under {@code orders[*].price}.
+ * Each pattern keeps a counter per {@link FailureCategory} and the first few failures as samples, so memory
+ * grows with the number of distinct patterns, not with the number of failures. Patterns beyond the pattern
+ * limit are only counted as overflow.</p>
+ *
+ * <p>An aggregator is thread safe: one instance can be shared by the listeners of concurrent comparisons,
+ * or each thread can use its own and the results can be combined with {@link #merge(DiffAggregator)}.</p>
+ */
+public class DiffAggregator implements DiffListener {
+
+    public static final int DEFAULT_MAX_SAMPLES = 3;
+
+    private final int maxSamples;
+    private final int maxPatterns;
+    private final ConcurrentMap<String, PatternStats> patterns = new ConcurrentHashMap<String, PatternStats>();
+    private final AtomicLong overflowCount = new AtomicLong();
+    private final AtomicLong comparisonCount = new AtomicLong();
+    private final AtomicLong failedComparisonCount = new AtomicLong();
+
+    public DiffAggregator() {
+        this(DEFAULT_MAX_SAMPLES, 0);
+    }
+
+    /**
+     * @param maxSamples  number of sample failures kept per pattern
+     * @param maxPatterns maximum number of patterns, 0 for no limit
+     */
+    public DiffAggregator(int maxSamples, int maxPatterns) {
+        this.maxSamples = maxSamples;
+        this.maxPatterns = maxPatterns;
+    }
+
+    @Override
+    public void onFailure(FieldComparisonFailure failure) {
+        add(failure, FailureCategory.FAILURE);
+    }
+
+    @Override
+    public void onMissing(FieldComparisonFailure failure) {
+        add(failure, FailureCategory.MISSING);
+    }
+
+    @Override
+    public void onUnexpected(FieldComparisonFailure failure) {
+        add(failure, FailureCategory.UNEXPECTED);
+    }
+
+    @Override
+    public void onComplete(boolean passed) {
+        comparisonCount.incrementAndGet();
+        if (!passed) failedComparisonCount.incrementAndGet();
+    }
+
+    /**
+     * Counts a failure under the pattern of its path.
+     *
+     * @param failure  the failure
+     * @param category the kind of failure
+     */
+    public void add(FieldComparisonFailure failure, FailureCategory category) {
+        PatternStats stats = statsFor(JSONCompareUtil.toPathPattern(failure.getField()));
+        if (stats == null) {
+            overflowCount.incrementAndGet();
+            return;
+        }
+        stats.counts.incrementAndGet(category.ordinal());
+        if (stats.samples.size() < maxSamples) {
+            stats.addSample(JSONCompareResultUtil.toFailureField(failure, category), maxSamples);
+        }
+    }
+
+    /**
+     * Adds the counters and samples of another aggregator to this one.
+     *
+     * @param other aggregator to merge, it is not modified
+     * @return this aggregator
+     */
+    public DiffAggregator merge(DiffAggregator other) {
+        for (PatternStats source : other.patterns.values()) {
+            PatternStats stats = statsFor(source.pattern);
+            if (stats == null) {
+                overflowCount.addAndGet(source.getCount());
+                continue;
+            }
+            for (FailureCategory category : FailureCategory.values()) {
+                stats.counts.addAndGet(category.ordinal(), source.getCount(category));
+            }
+            for (FailureField sample : source.getSamples()) {
+                stats.addSample(sample, maxSamples);
+            }
+        }
+        overflowCount.addAndGet(other.overflowCount.get());
+        comparisonCount.addAndGet(other.comparisonCount.get());
+        failedComparisonCount.addAndGet(other.failedComparisonCount.get());
+        return this;
+    }
+
+    private PatternStats statsFor(String pattern) {
+        PatternStats stats = patterns.get(pattern);
+        if (stats == null) {
+            // the limit is checked before inserting, concurrent inserts may exceed it by the number of threads
+            if (maxPatterns > 0 && patterns.size() >= maxPatterns) {
+                return null;
+            }
+            PatternStats created = new PatternStats(pattern);
+            stats = patterns.putIfAbsent(pattern, created);
+            if (stats == null) stats = created;
+        }
+        return stats;
+    }
+
+    /**
+     * @param pattern a path pattern
+     * @return the statistics of the pattern, or null if no failure matched it
+     */
+    public PatternStats getPattern(String pattern) {
+        return patterns.get(pattern);
+    }
+
+    /**
+     * @return statistics of all patterns, in no particular order
+     */
+    public List<PatternStats> getPatterns() {
+        return new ArrayList<PatternStats>(patterns.values());
+    }
+
+    /**
+     * @param limit maximum number of patterns to return
+     * @return the patterns with the most failures, most failures first
+     */
+    public List<PatternStats> getTopPatterns(int limit) {
+        List<PatternStats> list = getPatterns();
+        Collections.sort(list, new Comparator<PatternStats>() {
+            @Override
+            public int compare(PatternStats a, PatternStats b) {
+                int cmp = Long.compare(b.getCount(), a.getCount());
+                return cmp != 0 ? cmp : a.getPattern().compareTo(b.getPattern());
+            }
+        });
+        return list.size() > limit ? new ArrayList<PatternStats>(list.subList(0, limit)) : list;
+    }
+
+    /**
+     * @return number of failures not counted under a pattern because of the pattern limit
+     */
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    /**
+     * @return number of completed comparisons reported to this aggregator
+     */
+    public long getComparisonCount() {
+        return comparisonCount.get();
+    }
+
+    /**
+     * @return number of completed comparisons that failed
+     */
+    public long getFailedComparisonCount() {
+        return failedComparisonCount.get();
+    }
+
+    /**
+     * Failure counters and sample failures of one path pattern.
+     */
+    public static final class PatternStats {
+        private final String pattern;
+        private final AtomicLongArray counts = new AtomicLongArray(FailureCategory.values().length);
+        private final List<FailureField> samples = Collections.synchronizedList(new ArrayList<FailureField>());
+
+        private PatternStats(String pattern) {
+            this.pattern = pattern;
+        }
+
+        private void addSample(FailureField sample, int maxSamples) {
+            synchronized (samples) {
+                if (samples.size() < maxSamples) samples.add(sample);
+            }
+        }
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        /**
+         * @return number of failures of all categories
+         */
+        public long getCount() {
+            long count = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                count += counts.get(i);
+            }
+            return count;
+        }
+
+        public long getCount(FailureCategory category) {
+            return counts.get(category.ordinal());
+        }
+
+        /**
+         * @return number of distinct failure reasons seen for the pattern
+         */
+        public int getReasonCount() {
+            int reasons = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                if (counts.get(i) > 0) reasons++;
+            }
+            return reasons;
+        }
+
+        /**
+         * @return the first failures of the pattern, in simple-mode form
+         */
+        public List<FailureField> getSamples() {
+            synchronized (samples) {
+                return new ArrayList<FailureField>(samples);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.listener;
+
+import org.testtools.jsondiff.DiffListener;
+import org.testtools.jsondiff.FieldComparisonFailure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the reported failures in memory, in the lists a {@link org.testtools.jsondiff.JSONCompareDetailResult}
+ * would hold.
+ */
+public class InMemoryDiffListener implements DiffListener {
+
+    private final List<FieldComparisonFailure> fieldFailures = new ArrayList<FieldComparisonFailure>();
+    private final List<FieldComparisonFailure> fieldMissing = new ArrayList<FieldComparisonFailure>();
+    private final List<FieldComparisonFailure> fieldUnexpected = new ArrayList<FieldComparisonFailure>();
+    private boolean passed;
+
+    @Override
+    public void onFailure(FieldComparisonFailure failure) {
+        fieldFailures.add(failure);
+    }
+
+    @Override
+    public void onMissing(FieldComparisonFailure failure) {
+        fieldMissing.add(failure);
+    }
+
+    @Override
+    public void onUnexpected(FieldComparisonFailure failure) {
+        fieldUnexpected.add(failure);
+    }
+
+    @Override
+    public void onComplete(boolean passed) {
+        this.passed = passed;
+    }
+
+    public List<FieldComparisonFailure> getFieldFailures() {
+        return Collections.unmodifiableList(fieldFailures);
+    }
+
+    public List<FieldComparisonFailure> getFieldMissing() {
+        return Collections.unmodifiableList(fieldMissing);
+    }
+
+    public List<FieldComparisonFailure> getFieldUnexpected() {
+        return Collections.unmodifiableList(fieldUnexpected);
+    }
+
+    /**
+     * @return the outcome reported on completion
+     */
+    public boolean passed() {
+        return passed;
+    }
+}
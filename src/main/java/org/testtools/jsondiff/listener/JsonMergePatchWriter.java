@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.listener;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.testtools.jsondiff.DiffListener;
+import org.testtools.jsondiff.FieldComparisonFailure;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the reported differences as a JSON Merge Patch (RFC 7386) that turns the expected JSON into the
+ * actual JSON.
+ *
+ * <p>The comparator reports the differences below an object one after the other, so the nested patch
+ * objects are opened and closed as the paths change and nothing is buffered. A merge patch can't address
+ * array elements: any difference inside an array replaces the whole array, taken from the actual document.
+ * A field only in the expected JSON is written as {@code null}, which also means that an actual
+ * {@code null} value can't be expressed and removes the field.</p>
+ */
+public class JsonMergePatchWriter implements DiffListener {
+
+    private final JsonGenerator generator;
+    private final Object actualRoot;
+    private final List<String> openKeys = new ArrayList<String>();
+    private String lastArray;
+    private boolean started;
+    private boolean replacedRoot;
+
+    /**
+     * @param generator  generator the patch is written to, it is flushed but not closed on completion
+     * @param actualRoot the actual document, arrays and a replaced root are taken from it
+     */
+    public JsonMergePatchWriter(JsonGenerator generator, Object actualRoot) {
+        this.generator = generator;
+        this.actualRoot = actualRoot;
+    }
+
+    @Override
+    public void onFailure(FieldComparisonFailure failure) {
+        write(failure.getField(), failure.getActual());
+    }
+
+    @Override
+    public void onMissing(FieldComparisonFailure failure) {
+        write(failure.getField(), null);
+    }
+
+    @Override
+    public void onUnexpected(FieldComparisonFailure failure) {
+        write(failure.getField(), failure.getActual());
+    }
+
+    @Override
+    public void onComplete(boolean passed) {
+        try {
+            if (!replacedRoot) {
+                ensureStarted();
+                for (int i = openKeys.size(); i > 0; i--) {
+                    generator.writeEndObject();
+                }
+                openKeys.clear();
+                generator.writeEndObject();
+            }
+            generator.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write JSON merge patch", e);
+        }
+    }
+
+    private void write(String field, Object value) {
+        if (replacedRoot) return;
+        try {
+            if (field.isEmpty() || field.charAt(0) == '[') {
+                // the roots differ in type or are arrays, the patch is the actual document
+                if (!started) {
+                    JsonValueWriter.writeValue(generator, actualRoot);
+                    replacedRoot = true;
+                }
+                return;
+            }
+            int bracket = field.indexOf('[');
+            if (bracket >= 0) {
+                field = field.substring(0, bracket);
+                if (field.equals(lastArray)) return;
+                lastArray = field;
+                value = JsonValueWriter.resolve(actualRoot, field);
+            }
+            ensureStarted();
+            String[] keys = field.split("\\.", -1);
+            int common = 0;
+            while (common < openKeys.size() && common < keys.length - 1 && openKeys.get(common).equals(keys[common])) {
+                common++;
+            }
+            for (int i = openKeys.size(); i > common; i--) {
+                generator.writeEndObject();
+                openKeys.remove(i - 1);
+            }
+            for (int i = common; i < keys.length - 1; i++) {
+                generator.writeObjectFieldStart(keys[i]);
+                openKeys.add(keys[i]);
+            }
+            generator.writeFieldName(keys[keys.length - 1]);
+            JsonValueWriter.writeValue(generator, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write JSON merge patch", e);
+        }
+    }
+
+    private void ensureStarted() throws IOException {
+        if (!started) {
+            generator.writeStartObject();
+            started = true;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.listener;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.testtools.jsondiff.DiffListener;
+import org.testtools.jsondiff.FieldComparisonFailure;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes the reported differences as a JSON Patch (RFC 6902) that turns the expected JSON into the actual JSON.
+ *
+ * <p>Operations are written to the generator while the comparator finds them, at the absolute paths tracked
+ * during traversal, so array indices are the real indices of the expected document under every array
+ * strategy:</p>
+ * <ul>
+ *     <li>a different value is a {@code replace} with the actual value;</li>
+ *     <li>a field only in the actual JSON is an {@code add}, array elements are appended with {@code /-};</li>
+ *     <li>a field only in the expected JSON is a {@code remove}. Removals of array elements would shift the
+ *     indices of later operations, so they are held back and written last, deepest and highest index
+ *     first;</li>
+ *     <li>any difference in an unordered array of simple values replaces the whole array, taken from the
+ *     actual document.</li>
+ * </ul>
+ * <p>Moves are not detected, a moved value is removed and added. The patch only covers reported
+ * differences: fields ignored by the comparator or suppressed by a failure budget are left as they are.</p>
+ */
+public class JsonPatchWriter implements DiffListener {
+
+    private final JsonGenerator generator;
+    private final Object actualRoot;
+    private final List<String> deferredRemovals = new ArrayList<String>();
+    private final Set<String> replacedArrays = new HashSet<String>();
+    private boolean started;
+    private int operationCount;
+
+    /**
+     * @param generator  generator the patch is written to, it is flushed but not closed on completion
+     * @param actualRoot the actual document, used to replace unordered arrays of simple values
+     */
+    public JsonPatchWriter(JsonGenerator generator, Object actualRoot) {
+        this.generator = generator;
+        this.actualRoot = actualRoot;
+    }
+
+    @Override
+    public boolean needsAbsolutePaths() {
+        return true;
+    }
+
+    @Override
+    public void onFailure(FieldComparisonFailure failure) {
+        if (replaceSimpleArray(failure)) return;
+        writeOperation("replace", failure.getExpectedPath(), failure.getActual(), true);
+    }
+
+    @Override
+    public void onMissing(FieldComparisonFailure failure) {
+        if (replaceSimpleArray(failure)) return;
+        String path = failure.getExpectedPath();
+        if (path == null) return;
+        if (path.endsWith("]")) {
+            deferredRemovals.add(path);
+        } else {
+            writeOperation("remove", path, null, false);
+        }
+    }
+
+    @Override
+    public void onUnexpected(FieldComparisonFailure failure) {
+        if (replaceSimpleArray(failure)) return;
+        writeOperation("add", failure.getExpectedPath(), failure.getActual(), true);
+    }
+
+    @Override
+    public void onComplete(boolean passed) {
+        Collections.sort(deferredRemovals, Collections.reverseOrder(DOCUMENT_ORDER));
+        for (String path : deferredRemovals) {
+            writeOperation("remove", path, null, false);
+        }
+        deferredRemovals.clear();
+        try {
+            ensureStarted();
+            generator.writeEndArray();
+            generator.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write JSON patch", e);
+        }
+    }
+
+    /**
+     * @return number of operations written so far
+     */
+    public int getOperationCount() {
+        return operationCount;
+    }
+
+    // An unordered array of simple values reports counts rather than positions, so it is replaced as a whole.
+    private boolean replaceSimpleArray(FieldComparisonFailure failure) {
+        if (!failure.getField().endsWith("[]")) return false;
+        String expectedPath = failure.getExpectedPath();
+        if (expectedPath != null && replacedArrays.add(expectedPath)) {
+            writeOperation("replace", expectedPath, JsonValueWriter.resolve(actualRoot, failure.getActualPath()), true);
+        }
+        return true;
+    }
+
+    private void writeOperation(String op, String path, Object value, boolean withValue) {
+        if (path == null) return;
+        try {
+            ensureStarted();
+            generator.writeStartObject();
+            generator.writeStringField("op", op);
+            generator.writeStringField("path", JsonValueWriter.toJsonPointer(path));
+            if (withValue) {
+                generator.writeFieldName("value");
+                JsonValueWriter.writeValue(generator, value);
+            }
+            generator.writeEndObject();
+            operationCount++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write JSON patch", e);
+        }
+    }
+
+    private void ensureStarted() throws IOException {
+        if (!started) {
+            generator.writeStartArray();
+            started = true;
+        }
+    }
+
+    // Orders paths as their fields appear in the document, comparing array indices numerically.
+    private static final Comparator<String> DOCUMENT_ORDER = new Comparator<String>() {
+        @Override
+        public int compare(String a, String b) {
+            int i = 0;
+            int j = 0;
+            while (i < a.length() && j < b.length()) {
+                char ca = a.charAt(i);
+                char cb = b.charAt(j);
+                if (Character.isDigit(ca) && Character.isDigit(cb)) {
+                    int endA = i;
+                    int endB = j;
+                    while (endA < a.length() && Character.isDigit(a.charAt(endA))) endA++;
+                    while (endB < b.length() && Character.isDigit(b.charAt(endB))) endB++;
+                    int lengthA = endA - i;
+                    int lengthB = endB - j;
+                    if (lengthA != lengthB) return lengthA - lengthB;
+                    int cmp = a.substring(i, endA).compareTo(b.substring(j, endB));
+                    if (cmp != 0) return cmp;
+                    i = endA;
+                    j = endB;
+                } else {
+                    if (ca != cb) return ca - cb;
+                    i++;
+                    j++;
+                }
+            }
+            return (a.length() - i) - (b.length() - j);
+        }
+    };
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.listener;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Writes org.json values to a Jackson {@link JsonGenerator}, walking objects and arrays instead of
+ * serializing them to strings first.
+ */
+public final class JsonValueWriter {
+
+    private JsonValueWriter() {
+    }
+
+    /**
+     * Writes a value.
+     *
+     * @param generator generator to write to
+     * @param value     a {@link JSONObject}, {@link JSONArray}, string, number, boolean, {@link JSONObject#NULL}
+     *                  or null; other values are written as their string
+     * @throws IOException if the generator fails
+     */
+    public static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            generator.writeStartObject();
+            for (String key : object.keySet()) {
+                generator.writeFieldName(key);
+                writeValue(generator, object.opt(key));
+            }
+            generator.writeEndObject();
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            generator.writeStartArray();
+            for (int i = 0; i < array.length(); i++) {
+                writeValue(generator, array.opt(i));
+            }
+            generator.writeEndArray();
+        } else if (value == null || JSONObject.NULL.equals(value)) {
+            generator.writeNull();
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            generator.writeNumber((Integer) value);
+        } else if (value instanceof Long) {
+            generator.writeNumber((Long) value);
+        } else if (value instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) value);
+        } else if (value instanceof BigInteger) {
+            generator.writeNumber((BigInteger) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                generator.writeNull();
+            } else {
+                generator.writeNumber(number);
+            }
+        } else if (value instanceof Number) {
+            generator.writeNumber(value.toString());
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+
+    /**
+     * Converts a path of the form {@code a.b[2].c}, as reported by
+     * {@link org.testtools.jsondiff.FieldComparisonFailure#getExpectedPath()}, to a JSON Pointer (RFC 6901).
+     *
+     * @param path dotted path, "" for the root
+     * @return the pointer, "" for the root
+     */
+    public static String toJsonPointer(String path) {
+        StringBuilder pointer = new StringBuilder(path.length() + 8);
+        int start = 0;
+        for (int i = 0; i <= path.length(); i++) {
+            char c = i < path.length() ? path.charAt(i) : '.';
+            if (c == '.' || c == '[') {
+                if (i > start) {
+                    appendSegment(pointer, path, start, i);
+                }
+                if (c == '[') {
+                    int end = path.indexOf(']', i);
+                    if (end < 0) end = path.length();
+                    appendSegment(pointer, path, i + 1, end);
+                    i = end;
+                }
+                start = i + 1;
+            }
+        }
+        return pointer.toString();
+    }
+
+    private static void appendSegment(StringBuilder pointer, String path, int start, int end) {
+        pointer.append('/');
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            if (c == '~') {
+                pointer.append("~0");
+            } else if (c == '/') {
+                pointer.append("~1");
+            } else {
+                pointer.append(c);
+            }
+        }
+    }
+
+    /**
+     * Resolves a dotted path against a document.
+     *
+     * @param root document root
+     * @param path dotted path with array indices, "" for the root
+     * @return the value, or null if the path doesn't exist
+     */
+    static Object resolve(Object root, String path) {
+        Object node = root;
+        int start = 0;
+        for (int i = 0; i <= path.length() && node != null; i++) {
+            char c = i < path.length() ? path.charAt(i) : '.';
+            if (c == '.' || c == '[') {
+                if (i > start) {
+                    node = node instanceof JSONObject ? ((JSONObject) node).opt(path.substring(start, i)) : null;
+                }
+                if (c == '[' && node != null) {
+                    int end = path.indexOf(']', i);
+                    if (end < 0) return null;
+                    try {
+                        int index = Integer.parseInt(path.substring(i + 1, end));
+                        node = node instanceof JSONArray ? ((JSONArray) node).opt(index) : null;
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                    i = end;
+                }
+                start = i + 1;
+            }
+        }
+        return node;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.listener;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testtools.jsondiff.DiffListener;
+import org.testtools.jsondiff.FailureCategory;
+import org.testtools.jsondiff.FieldComparisonFailure;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes every reported failure as one line of JSON (NDJSON) with the fields of a
+ * {@link org.testtools.jsondiff.FailureField}: {@code expected}, {@code actual}, {@code diffKey} and
+ * {@code reason}. Expected and actual values are written in full, objects and arrays are streamed
+ * to the writer rather than built as strings.
+ */
+public class NdjsonDiffListener implements DiffListener, Closeable {
+
+    private final Writer writer;
+
+    public NdjsonDiffListener(Writer writer) {
+        this.writer = writer;
+    }
+
+    public NdjsonDiffListener(Path file) throws IOException {
+        this(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void onFailure(FieldComparisonFailure failure) {
+        writeLine(failure, FailureCategory.FAILURE);
+    }
+
+    @Override
+    public void onMissing(FieldComparisonFailure failure) {
+        writeLine(failure, FailureCategory.MISSING);
+    }
+
+    @Override
+    public void onUnexpected(FieldComparisonFailure failure) {
+        writeLine(failure, FailureCategory.UNEXPECTED);
+    }
+
+    @Override
+    public void onComplete(boolean passed) {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to flush diff output", e);
+        }
+    }
+
+    private void writeLine(FieldComparisonFailure failure, FailureCategory category) {
+        try {
+            writer.write("{\"expected\":");
+            writeValue(failure.getExpected());
+            writer.write(",\"actual\":");
+            writeValue(failure.getActual());
+            writer.write(",\"diffKey\":");
+            writer.write(JSONObject.quote(failure.getField()));
+            writer.write(",\"reason\":");
+            writer.write(JSONObject.quote(category.getReason()));
+            writer.write("}\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write diff output", e);
+        }
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value instanceof JSONObject) {
+            ((JSONObject) value).write(writer);
+        } else if (value instanceof JSONArray) {
+            ((JSONArray) value).write(writer);
+        } else {
+            writer.write(JSONObject.valueToString(value));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
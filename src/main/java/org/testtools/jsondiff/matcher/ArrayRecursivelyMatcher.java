@@ -22,6 +22,8 @@ package org.testtools.jsondiff.matcher;
 import org.testtools.jsondiff.JSONCompareDetailResult;
 import org.testtools.jsondiff.CompareContext;
 import org.testtools.jsondiff.comparator.JSONComparator;
+import org.testtools.jsondiff.comparator.MatchMemo;
+import org.testtools.jsondiff.comparator.SubtreePrecheck;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -68,6 +70,9 @@ public class ArrayRecursivelyMatcher<T> implements CustomValueMatcher<T> {
             JSONArray expectedArray = expected instanceof JSONArray ? (JSONArray) expected: new JSONArray(new Object[] { expected });
 
             Set<Integer> matched = new HashSet<Integer>();
+            SubtreePrecheck precheck = SubtreePrecheck.forComparator(comparator, result);
+            JSONCompareDetailResult probe = JSONCompareDetailResult.newProbe(result);
+            MatchMemo memo = result.getMatchMemo();
             for (int i = 0; i < expectedArray.length(); ++i) {
                 if (result.quickFail()) return true;
                 Object expectedArrayElement = expectedArray.get(i);
@@ -77,16 +82,20 @@ public class ArrayRecursivelyMatcher<T> implements CustomValueMatcher<T> {
                     if (matched.contains(j) || !actualArrayElement.getClass().equals(expectedArrayElement.getClass())) {
                         continue;
                     }
-                    if (expectedArrayElement instanceof JSONObject) {
-                        if (comparator.compareJSON((JSONObject) expectedArrayElement,
-                                (JSONObject) actualArrayElement).passed()) {
+                    if (precheck != null && (expectedArrayElement instanceof JSONObject
+                            || expectedArrayElement instanceof JSONArray)) {
+                        SubtreePrecheck.Verdict verdict = precheck.check(expectedArrayElement, actualArrayElement);
+                        if (verdict == SubtreePrecheck.Verdict.DIFFERENT) {
+                            continue;
+                        }
+                        if (verdict == SubtreePrecheck.Verdict.EQUAL) {
                             matched.add(j);
                             matchFound = true;
                             break;
                         }
-                    } else if (expectedArrayElement instanceof JSONArray) {
-                        if (comparator.compareJSON((JSONArray) expectedArrayElement,
-                                (JSONArray) actualArrayElement).passed()) {
+                    }
+                    if (expectedArrayElement instanceof JSONObject || expectedArrayElement instanceof JSONArray) {
+                        if (memo.matches(comparator, expectedArrayElement, actualArrayElement, probe)) {
                             matched.add(j);
                             matchFound = true;
                             break;
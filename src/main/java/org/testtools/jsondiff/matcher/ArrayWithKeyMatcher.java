@@ -26,8 +26,10 @@ import org.json.JSONObject;
 
 import java.util.Map;
 
+import static org.testtools.jsondiff.comparator.JSONCompareUtil.arrayOfJsonObjectToIndexMap;
 import static org.testtools.jsondiff.comparator.JSONCompareUtil.arrayOfJsonObjectToMap;
 import static org.testtools.jsondiff.comparator.JSONCompareUtil.formatUniqueKey;
+import static org.testtools.jsondiff.comparator.JSONCompareUtil.indexOf;
 
 /**
  * <p>A value matcher for arrays of JsonObjects. This operates like
@@ -103,21 +105,34 @@ public class ArrayWithKeyMatcher<T> implements CustomValueMatcher<T> {
             JSONArray expectedArray = expected instanceof JSONArray ? (JSONArray) expected: new JSONArray(new Object[] { expected });
             Map<Object, JSONObject> expectedValueMap = arrayOfJsonObjectToMap(expectedArray, uniqueKey);
             Map<Object, JSONObject> actualValueMap = arrayOfJsonObjectToMap(actualArray, uniqueKey);
+            boolean trackPaths = result.isTrackingAbsolutePaths();
+            Map<Object, Integer> expectedIndexMap = trackPaths ? arrayOfJsonObjectToIndexMap(expectedArray, uniqueKey) : null;
+            Map<Object, Integer> actualIndexMap = trackPaths ? arrayOfJsonObjectToIndexMap(actualArray, uniqueKey) : null;
             for (Object id : expectedValueMap.keySet()) {
                 if (result.quickFail()) return true;
-                if (!actualValueMap.containsKey(id)) {
-                    result.missing(formatUniqueKey(prefix, uniqueKey, id), expectedValueMap.get(id));
-                    continue;
+                String elementKey = formatUniqueKey(prefix, uniqueKey, id);
+                if (trackPaths) {
+                    result.pushPathFrame(prefix, elementKey, indexOf(expectedIndexMap, id), indexOf(actualIndexMap, id));
+                }
+                try {
+                    if (!actualValueMap.containsKey(id)) {
+                        result.missing(elementKey, expectedValueMap.get(id));
+                        continue;
+                    }
+                    JSONObject expectedValue = expectedValueMap.get(id);
+                    JSONObject actualValue = actualValueMap.get(id);
+                    comparator.compareValues(elementKey, expectedValue, actualValue, result);
+                } finally {
+                    if (trackPaths) result.popPathFrame();
                 }
-                JSONObject expectedValue = expectedValueMap.get(id);
-                JSONObject actualValue = actualValueMap.get(id);
-                comparator.compareValues(formatUniqueKey(prefix, uniqueKey, id), expectedValue,
-                        actualValue, result);
             }
             for (Object id : actualValueMap.keySet()) {
                 if (extensible || result.quickFail()) return true;
                 if (!expectedValueMap.containsKey(id)) {
-                    result.unexpected(formatUniqueKey(prefix, uniqueKey, id), actualValueMap.get(id));
+                    String elementKey = formatUniqueKey(prefix, uniqueKey, id);
+                    if (trackPaths) result.pushPathFrame(prefix, elementKey, -1, indexOf(actualIndexMap, id));
+                    result.unexpected(elementKey, actualValueMap.get(id));
+                    if (trackPaths) result.popPathFrame();
                 }
             }
 
@@ -0,0 +1,122 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.testtools.jsondiff.matcher;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Bounded cache of compiled regular expressions, shared by the {@link RegularExpressionValueMatcher}s that take
+ * their pattern from the expected value. A baseline that puts the same few patterns on every element of a large
+ * array then compiles each of them once.
+ *
+ * <p>The cache can be used by concurrent comparisons. When it is full, an arbitrary pattern is evicted to make
+ * room for a new one. Invalid patterns are not cached.</p>
+ */
+public final class PatternCache {
+
+    public static final int DEFAULT_MAX_PATTERNS = 1024;
+
+    private static final PatternCache SHARED = new PatternCache(DEFAULT_MAX_PATTERNS);
+
+    private final int maxPatterns;
+    private final ConcurrentHashMap<String, Pattern> patterns = new ConcurrentHashMap<String, Pattern>();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * @param maxPatterns maximum number of cached patterns
+     */
+    public PatternCache(int maxPatterns) {
+        if (maxPatterns < 1) {
+            throw new IllegalArgumentException("maxPatterns must be positive: " + maxPatterns);
+        }
+        this.maxPatterns = maxPatterns;
+    }
+
+    /**
+     * @return the cache shared by the dynamic {@link RegularExpressionValueMatcher}s
+     */
+    public static PatternCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the compiled pattern of a regular expression, compiling it on a miss.
+     *
+     * @param regex the regular expression
+     * @return the compiled pattern
+     * @throws PatternSyntaxException if the regular expression is invalid
+     */
+    public Pattern compile(String regex) throws PatternSyntaxException {
+        Pattern pattern = patterns.get(regex);
+        if (pattern != null) {
+            hitCount.increment();
+            return pattern;
+        }
+        missCount.increment();
+        pattern = Pattern.compile(regex);
+        if (patterns.size() >= maxPatterns) {
+            Iterator<String> eldest = patterns.keySet().iterator();
+            if (eldest.hasNext()) {
+                patterns.remove(eldest.next());
+            }
+        }
+        patterns.put(regex, pattern);
+        return pattern;
+    }
+
+    /**
+     * @return number of compilations served from the cache
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return number of compilations that had to compile the pattern
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return share of compilations served from the cache, 0 before the first one
+     */
+    public double getHitRate() {
+        long hits = hitCount.sum();
+        long total = hits + missCount.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return number of cached patterns
+     */
+    public int size() {
+        return patterns.size();
+    }
+
+    /**
+     * Removes all cached patterns and resets the counts.
+     */
+    public void clear() {
+        patterns.clear();
+        hitCount.reset();
+        missCount.reset();
+    }
+}
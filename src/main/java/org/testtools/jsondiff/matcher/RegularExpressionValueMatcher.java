@@ -74,7 +74,7 @@ public class RegularExpressionValueMatcher<T> implements ValueMatcher<T> {
 		String actualString = actual.toString();
 		String expectedString = expected.toString();
 		try {
-			Pattern pattern = isStaticPattern() ? expectedPattern : Pattern
+			Pattern pattern = isStaticPattern() ? expectedPattern : PatternCache.shared()
 					.compile(expectedString);
 			if (!pattern.matcher(actualString).matches()) {
 				throw new ValueMatcherException(getPatternType() + " expected pattern did not match value", pattern.toString(), actualString);
@@ -86,6 +86,24 @@ public class RegularExpressionValueMatcher<T> implements ValueMatcher<T> {
 		return true;
 	}
 
+	/**
+	 * Compiles the pattern of an expected value into the shared
+	 * {@link PatternCache} ahead of the comparisons. Invalid patterns are
+	 * left to be reported by {@link #equal(Object, Object)}.
+	 */
+	@Override
+	public void prepareExpected(T expected) {
+		if (isStaticPattern() || expected == null) {
+			return;
+		}
+		try {
+			PatternCache.shared().compile(expected.toString());
+		}
+		catch (PatternSyntaxException e) {
+			// reported when the value is compared
+		}
+	}
+
 	private boolean isStaticPattern() {
 		return expectedPattern != null;
 	}
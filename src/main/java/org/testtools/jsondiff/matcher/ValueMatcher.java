@@ -37,4 +37,14 @@ public interface ValueMatcher<T> {
      */
     void matcherInit(String param, CompareContext compareContext);
 
+    /**
+     * Called for each value of an expected document that is prepared once for many comparisons and that this
+     * matcher applies to, so the matcher can precompute what it derives from the expected value.
+     *
+     * @param expected an expected value
+     * @see org.testtools.jsondiff.comparator.CustomComparator#prepareExpected(Object)
+     */
+    default void prepareExpected(T expected) {
+    }
+
 }
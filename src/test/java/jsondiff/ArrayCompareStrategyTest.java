@@ -0,0 +1,255 @@
+/*
+ * ArrayCompareStrategyTest.java
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jsondiff;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.testtools.jsondiff.CancellationToken;
+import org.testtools.jsondiff.CompareContext;
+import org.testtools.jsondiff.FieldComparisonFailure;
+import org.testtools.jsondiff.JSONCompare;
+import org.testtools.jsondiff.JSONCompareDetailResult;
+import org.testtools.jsondiff.comparator.ArraySizeComparator;
+import org.testtools.jsondiff.comparator.BaselineIndex;
+import org.testtools.jsondiff.comparator.DefaultComparator;
+import org.testtools.jsondiff.comparator.NodeSignature;
+import org.testtools.jsondiff.comparator.SubtreePrecheck;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the array comparison strategies of the comparators
+ */
+public class ArrayCompareStrategyTest {
+
+    private static JSONCompareDetailResult compareUnordered(String expected, String actual, int spillThreshold) {
+        CompareContext context = new CompareContext(true, false, false, false);
+        context.setSpillThreshold(spillThreshold);
+        return new DefaultComparator(context).compareJSON(new JSONArray(expected), new JSONArray(actual));
+    }
+
+    private static List<String> describe(List<FieldComparisonFailure> failures) {
+        List<String> described = new ArrayList<>();
+        for (FieldComparisonFailure f : failures) {
+            described.add(f.getField() + "|" + f.getExpected() + "|" + f.getActual());
+        }
+        return described;
+    }
+
+    @Test
+    public void testSimpleValuesInAnyOrderPass() {
+        JSONCompareDetailResult result = compareUnordered("[3, 1, 2, \"a\", true, null]",
+                "[null, \"a\", 2, true, 1, 3]", 0);
+        assertTrue(result.getMessage(), result.passed());
+    }
+
+    @Test
+    public void testSimpleValuesReportMissingUnexpectedAndCounts() {
+        JSONCompareDetailResult result = compareUnordered("[1, 1, 2, 4]", "[1, 2, 2, 5]", 0);
+        assertEquals(1, result.getFieldMissing().size());
+        assertEquals(4, result.getFieldMissing().get(0).getExpected());
+        assertEquals(1, result.getFieldUnexpected().size());
+        assertEquals(5, result.getFieldUnexpected().get(0).getActual());
+        assertEquals(2, result.getFieldFailures().size());
+        assertEquals("Expected 2 occurrence(s) of 1", result.getFieldFailures().get(0).getExpected());
+        assertEquals(" but got 1 occurrence(s)", result.getFieldFailures().get(0).getActual());
+    }
+
+    @Test
+    public void testNumbersOfDifferentTypesStayDistinct() {
+        // values match on equals(), as they did in the cardinality maps: 1 vs 1.0 and 2.5 vs 2.50 differ
+        JSONCompareDetailResult result = compareUnordered("[1, 2.5]", "[1.0, 2.50]", 0);
+        assertEquals(2, result.getFieldMissing().size());
+        assertEquals(2, result.getFieldUnexpected().size());
+    }
+
+    @Test
+    public void testSpilledSortMatchesInMemorySort() {
+        StringBuilder expected = new StringBuilder("[");
+        StringBuilder actual = new StringBuilder("[");
+        for (int i = 0; i < 500; i++) {
+            if (i > 0) {
+                expected.append(',');
+                actual.append(',');
+            }
+            expected.append(i % 7 == 0 ? "\"id-" + i + "\"" : String.valueOf(i * 31 % 97));
+            actual.append(i % 5 == 0 ? "\"id-" + i + "\"" : String.valueOf(i * 31 % 89));
+        }
+        expected.append(']');
+        actual.append(']');
+
+        JSONCompareDetailResult inMemory = compareUnordered(expected.toString(), actual.toString(), 0);
+        JSONCompareDetailResult spilled = compareUnordered(expected.toString(), actual.toString(), 16);
+        assertTrue(inMemory.failed());
+        assertEquals(describe(inMemory.getFieldMissing()), describe(spilled.getFieldMissing()));
+        assertEquals(describe(inMemory.getFieldUnexpected()), describe(spilled.getFieldUnexpected()));
+        assertEquals(describe(inMemory.getFieldFailures()), describe(spilled.getFieldFailures()));
+    }
+
+    @Test
+    public void testRecursiveMatchingWithPrecheck() {
+        // mixed element kinds force the recursive strategy
+        JSONCompareDetailResult result = compareUnordered("[[1, 2], {\"a\": 1, \"b\": [true]}, {\"a\": 2}, 3]",
+                "[3, {\"a\": 2}, {\"b\": [true], \"a\": 1}, [1, 2]]", 0);
+        assertTrue(result.getMessage(), result.passed());
+
+        result = compareUnordered("[{\"a\": 1}, {\"a\": 1, \"b\": 2}, [1], 3]",
+                "[{\"a\": 1, \"b\": \"2\"}, {\"a\": 1}, [1, 1], 3]", 0);
+        assertEquals(2, result.getFieldMissing().size());
+        assertEquals("[1]", result.getFieldMissing().get(0).getField());
+        assertEquals("[2]", result.getFieldMissing().get(1).getField());
+        assertEquals(2, result.getFieldUnexpected().size());
+    }
+
+    @Test
+    public void testPrecheckRespectsComparatorSemantics() {
+        // an extensible object may match a wider candidate, an ignored null may match any type
+        CompareContext context = new CompareContext(true, false, true, false);
+        JSONCompareDetailResult result = new DefaultComparator(context).compareJSON(
+                new JSONArray("[{\"a\": null}, 1]"), new JSONArray("[1, {\"a\": [5], \"b\": 0}]"));
+        assertTrue(result.getMessage(), result.passed());
+
+        // the expected arrays of an ArraySizeComparator hold sizes, identical arrays don't match
+        result = new ArraySizeComparator(new CompareContext(false, false, false, false)).compareJSON(
+                new JSONArray("[[2], 1]"), new JSONArray("[1, [2]]"));
+        assertTrue(result.failed());
+    }
+
+    @Test
+    public void testProbeRecordsNothingAndIsReusable() {
+        DefaultComparator comparator = new DefaultComparator(new CompareContext(false, false, false, false));
+        JSONCompareDetailResult probe = JSONCompareDetailResult.newProbe();
+        assertFalse(comparator.matches(new JSONObject("{\"a\": 1, \"b\": [1, 2], \"c\": 3}"),
+                new JSONObject("{\"a\": 2, \"b\": [1], \"d\": 3}"), probe));
+        assertTrue(probe.quickFail());
+        assertTrue(probe.getFieldFailures().isEmpty());
+        assertTrue(probe.getFieldMissing().isEmpty());
+        assertEquals("", probe.getMessage());
+
+        assertTrue(comparator.matches(new JSONArray("[{\"a\": 1}, 2]"), new JSONArray("[2, {\"a\": 1}]"), probe));
+        assertFalse(probe.quickFail());
+    }
+
+    @Test
+    public void testRepeatedTrialMatchesAreMemoized() {
+        // duplicate elements with nested unordered arrays, each distinct pair is only compared once
+        StringBuilder expected = new StringBuilder("[{\"n\": [{\"v\": [9]}]}");
+        StringBuilder actual = new StringBuilder("[{\"n\": [{\"v\": [8]}]}");
+        for (int i = 0; i < 300; i++) {
+            expected.append(", {\"n\": [{\"v\": [1, 2]}, {\"v\": [3]}]}");
+            actual.append(", {\"n\": [{\"v\": [3]}, {\"v\": [2, 1]}]}");
+        }
+        expected.append("]");
+        actual.append("]");
+        JSONCompareDetailResult result = compareUnordered(expected.toString(), actual.toString(), 0);
+        assertEquals(1, result.getFieldMissing().size());
+        assertEquals("[0]", result.getFieldMissing().get(0).getField());
+        assertEquals(1, result.getFieldUnexpected().size());
+        assertEquals("[0]", result.getFieldUnexpected().get(0).getField());
+        assertEquals(0, result.getFieldFailures().size());
+        assertTrue(result.getMatchMemo().getHitCount() >= 299);
+
+        // memoized outcomes follow the rules of the comparator, an extensible one matches the wider duplicates
+        String duplicates = "[{\"a\": 1}, {\"a\": 1}, 2]";
+        String wider = "[2, {\"a\": 1, \"b\": 1}, {\"a\": 1, \"b\": 1}]";
+        JSONCompareDetailResult strict = new DefaultComparator(new CompareContext(false, false, false, false))
+                .compareJSON(new JSONArray(duplicates), new JSONArray(wider));
+        assertEquals(2, strict.getFieldMissing().size());
+        JSONCompareDetailResult extensible = compareUnordered(duplicates, wider, 0);
+        assertTrue(extensible.getMessage(), extensible.passed());
+    }
+
+    @Test
+    public void testSignatureCollisionIsComparedDeeply() {
+        // give the expected elements the signature of different actual elements, as a hash collision would
+        JSONArray expected = new JSONArray("[{\"a\": 1}, {\"a\": 1}]");
+        JSONArray actual = new JSONArray("[{\"a\": 9}, {\"a\": 9}]");
+        Map<Object, NodeSignature> signatures = new IdentityHashMap<>();
+        NodeSignature.of(expected, signatures);
+        NodeSignature forged = NodeSignature.of(actual.get(0), new IdentityHashMap<>());
+        for (int i = 0; i < expected.length(); i++) {
+            signatures.put(expected.get(i), NodeSignature.restore(expected.get(i), forged.getKeySetHash(), forged.getContentHash()));
+        }
+        BaselineIndex index = BaselineIndex.of(expected, signatures, Collections.emptyMap());
+        CompareContext context = new CompareContext(true, false, false, false);
+        assertEquals(SubtreePrecheck.Verdict.UNKNOWN, new SubtreePrecheck(context, index).check(expected.get(0), actual.get(0)));
+        assertEquals(SubtreePrecheck.Verdict.EQUAL, new SubtreePrecheck(context, index).check(expected.get(0), expected.get(1)));
+
+        JSONCompareDetailResult result = new JSONCompareDetailResult();
+        result.setBaselineIndex(index);
+        JSONCompare.compareJSON(expected, actual, new DefaultComparator(context), result);
+        assertTrue(result.failed());
+        assertEquals(2, result.getFieldMissing().size());
+    }
+
+    @Test
+    public void testSubclassComparingValuesDifferentlyIsNotPrechecked() {
+        // the type histograms differ, yet this comparator equates "1" and 1
+        DefaultComparator lenient = new DefaultComparator(new CompareContext(true, false, false, false)) {
+            @Override
+            public void compareValues(String prefix, Object expectedValue, Object actualValue,
+                                      JSONCompareDetailResult result) {
+                if (!String.valueOf(expectedValue).equals(String.valueOf(actualValue))) {
+                    super.compareValues(prefix, expectedValue, actualValue, result);
+                }
+            }
+        };
+        JSONCompareDetailResult result = lenient.compareJSON(new JSONArray("[{\"a\": \"1\"}, {\"a\": \"1\"}, {\"a\": \"2\"}]"),
+                new JSONArray("[{\"a\": 2}, {\"a\": 1}, {\"a\": 1}]"));
+        assertTrue(result.getMessage(), result.passed());
+    }
+
+    @Test
+    public void testDeadlineEndsRecursiveMatching() {
+        // every trial match of the recursive strategy fails late, so a full comparison is quadratic
+        StringBuilder expected = new StringBuilder("[3");
+        StringBuilder actual = new StringBuilder("[3");
+        for (int i = 0; i < 3000; i++) {
+            expected.append(", [{\"k\": [0, 1, 2, 3, 4, 5, 6, 7, 8, 9, ").append(i).append("]}]");
+            actual.append(", [{\"k\": [0, 1, 2, 3, 4, 5, 6, 7, 8, 9, ").append(-i - 1).append("]}]");
+        }
+        expected.append("]");
+        actual.append("]");
+        CompareContext context = new CompareContext(true, false, false, false);
+        context.setTimeoutMillis(100);
+        long start = System.nanoTime();
+        JSONCompareDetailResult result = new DefaultComparator(context).compareJSON(
+                new JSONArray(expected.toString()), new JSONArray(actual.toString()));
+        assertTrue(result.isTimedOut());
+        assertTrue(result.failed());
+        assertTrue(System.nanoTime() - start < 5_000_000_000L);
+
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        context.setTimeoutMillis(0);
+        context.setCancellationToken(token);
+        result = new DefaultComparator(context).compareJSON(new JSONArray("[{\"a\": 1}, 2]"), new JSONArray("[2, {\"a\": 1}]"));
+        assertTrue(result.isTimedOut());
+        assertTrue(result.failed());
+
+        context.setCancellationToken(new CancellationToken());
+        result = new DefaultComparator(context).compareJSON(new JSONArray("[{\"a\": 1}, 2]"), new JSONArray("[2, {\"a\": 1}]"));
+        assertFalse(result.isTimedOut());
+        assertTrue(result.getMessage(), result.passed());
+    }
+}
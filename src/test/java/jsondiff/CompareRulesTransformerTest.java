@@ -1,12 +1,18 @@
 package jsondiff;
 
+import org.json.JSONObject;
 import org.junit.Test;
+import org.testtools.jsondiff.CompareContext;
 import org.testtools.jsondiff.CompareRule;
 import org.testtools.jsondiff.CompareRules;
 import org.testtools.jsondiff.CompareRulesTransformer;
+import org.testtools.jsondiff.Customization;
+import org.testtools.jsondiff.FieldComparisonFailure;
 import org.testtools.jsondiff.comparator.CustomComparator;
+import org.testtools.jsondiff.matcher.RegularExpressionValueMatcher;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.*;
@@ -94,6 +100,62 @@ public class CompareRulesTransformerTest {
         }
     }
 
+    @Test
+    public void testCustomizationResolutionPerPathShape() {
+        // wildcard rules apply to every element alike, an index-specific rule only to its index
+        assertTrue(new Customization("orders[*].code", new RegularExpressionValueMatcher<>()).isIndexInsensitive());
+        assertTrue(new Customization("**.code", new RegularExpressionValueMatcher<>()).isIndexInsensitive());
+        assertFalse(new Customization("orders[1].code", new RegularExpressionValueMatcher<>()).isIndexInsensitive());
+        assertFalse(new Customization("orders*1*", new RegularExpressionValueMatcher<>()).isIndexInsensitive());
+
+        JSONObject expected = new JSONObject("{\"orders\": [{\"code\": \"A\"}, {\"code\": \"A\"}, {\"code\": \"A\"}, {\"code\": \"A\"}]}");
+        JSONObject actual = new JSONObject("{\"orders\": [{\"code\": \"A\"}, {\"code\": \"BCD\"}, {\"code\": \"abc\"}, {\"code\": \"Q\"}]}");
+        CompareContext context = new CompareContext(true, true, false, false);
+        CustomComparator wildcard = new CustomComparator(context,
+                new Customization("orders[*].code", new RegularExpressionValueMatcher<>("[A-Z]+")));
+        for (int round = 0; round < 2; round++) {
+            List<FieldComparisonFailure> failures = wildcard.compareJSON(expected, actual).getFieldFailures();
+            assertEquals(1, failures.size());
+            assertEquals("orders[2].code", failures.get(0).getField());
+        }
+        CustomComparator indexed = new CustomComparator(context,
+                new Customization("orders[1].code", new RegularExpressionValueMatcher<>("[A-Z]+")));
+        for (int round = 0; round < 2; round++) {
+            List<FieldComparisonFailure> failures = indexed.compareJSON(expected, actual).getFieldFailures();
+            assertEquals(2, failures.size());
+            assertEquals("orders[2].code", failures.get(0).getField());
+            assertEquals("orders[3].code", failures.get(1).getField());
+        }
+
+        // unique key values with dots are resolved without the cache
+        CustomComparator keyed = new CustomComparator(new CompareContext(true, false, false, false),
+                new Customization("rates[*].label", new RegularExpressionValueMatcher<>("[a-z]+")));
+        JSONObject expectedRates = new JSONObject("{\"rates\": [{\"r\": 1.5, \"label\": \"x\"}, {\"r\": 2, \"label\": \"x\"}]}");
+        JSONObject actualRates = new JSONObject("{\"rates\": [{\"r\": 2, \"label\": \"z\"}, {\"r\": 1.5, \"label\": \"W\"}]}");
+        List<FieldComparisonFailure> failures = keyed.compareJSON(expectedRates, actualRates).getFieldFailures();
+        assertEquals(1, failures.size());
+        assertEquals("rates[r=1.5].label", failures.get(0).getField());
+    }
+
+    @Test
+    public void testLiteralNextToWildcardDisablesResolutionPerPathShape() {
+        // the wildcard of orders*1].price covers "[", so the rule only applies to index 1
+        assertFalse(new Customization("orders*1].price", new RegularExpressionValueMatcher<>()).isIndexInsensitive());
+        assertFalse(new Customization("orders[*]*x.price", new RegularExpressionValueMatcher<>()).isIndexInsensitive());
+        assertTrue(new Customization("orders*].price", new RegularExpressionValueMatcher<>()).isIndexInsensitive());
+
+        JSONObject expected = new JSONObject("{\"orders\": [{\"price\": 1}, {\"price\": 1}, {\"price\": 1}]}");
+        JSONObject actual = new JSONObject("{\"orders\": [{\"price\": 9}, {\"price\": 9}, {\"price\": 9}]}");
+        CustomComparator comparator = new CustomComparator(new CompareContext(false, true, false, false),
+                new Customization("orders*1].price", new RegularExpressionValueMatcher<>(".*")));
+        for (int round = 0; round < 2; round++) {
+            List<FieldComparisonFailure> failures = comparator.compareJSON(expected, actual).getFieldFailures();
+            assertEquals(2, failures.size());
+            assertEquals("orders[0].price", failures.get(0).getField());
+            assertEquals("orders[2].price", failures.get(1).getField());
+        }
+    }
+
     @Test
     public void testStringToCompareRulesWithInvalidJson() {
         // Test that invalid JSON returns empty CompareRules instead of throwing exception
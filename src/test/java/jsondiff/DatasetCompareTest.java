@@ -0,0 +1,233 @@
+/*
+ * DatasetCompareTest.java
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jsondiff;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.testtools.jsondiff.JSONCompare;
+import org.testtools.jsondiff.dataset.DatasetComparator;
+import org.testtools.jsondiff.dataset.DatasetSummary;
+import org.testtools.jsondiff.dataset.NdjsonDatasetWriter;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test class for comparing keyed NDJSON datasets
+ */
+public class DatasetCompareTest {
+
+    private static final String RULES = "- subRule:\n    jsonPath: $\n    extensible: false\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test that records are joined by key whatever their order, and that missing, extra, different
+     * and broken records are all reported
+     */
+    @Test
+    public void testCompareKeyedDatasets() throws Exception {
+        List<String> expected = new ArrayList<>();
+        List<String> actual = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            expected.add("{\"id\": " + i + ", \"price\": " + i + "}");
+        }
+        for (int i = 499; i >= 0; i--) {
+            if (i % 100 == 1) {
+                continue;
+            }
+            actual.add("{\"price\": " + (i % 50 == 0 ? -i - 1 : i) + ", \"id\": " + i + "}");
+        }
+        actual.add("{\"id\": 1000, \"price\": 0}");
+        actual.add("");
+        actual.add("{\"price\": 0}");
+        actual.add("{\"id\": ");
+        Path expectedFile = write("expected.ndjson", expected);
+        Path actualFile = write("actual.ndjson", actual);
+
+        StringWriter out = new StringWriter();
+        DatasetSummary summary;
+        try (NdjsonDatasetWriter writer = new NdjsonDatasetWriter(out)) {
+            summary = new DatasetComparator("$.id", JSONCompare.compileRules(RULES))
+                    .setParserThreads(2).setCompareThreads(3).setQueueCapacity(8)
+                    .compare(expectedFile, actualFile, writer);
+        }
+        assertEquals(485, summary.getEqual());
+        assertEquals(10, summary.getDifferent());
+        assertEquals(5, summary.getMissing());
+        assertEquals(1, summary.getExtra());
+        assertEquals(2, summary.getErrors());
+        assertFalse(summary.passed());
+
+        Map<String, JSONObject> lines = new HashMap<>();
+        int errors = 0;
+        for (String line : out.toString().split("\n")) {
+            JSONObject record = new JSONObject(line);
+            if (record.isNull("key")) {
+                errors++;
+            } else {
+                lines.put(record.getString("key"), record);
+            }
+        }
+        assertEquals(2, errors);
+        assertEquals(16, lines.size());
+        assertEquals("missing", lines.get("101").getString("status"));
+        assertEquals(101, lines.get("101").getJSONObject("expected").getInt("price"));
+        assertEquals("extra", lines.get("1000").getString("status"));
+        JSONObject different = lines.get("150");
+        assertEquals("different", different.getString("status"));
+        assertEquals("price", different.getJSONArray("failures").getJSONObject(0).getString("diffKey"));
+        assertEquals(-151, different.getJSONArray("failures").getJSONObject(0).getInt("actual"));
+    }
+
+    /**
+     * Test that equal datasets pass and that a record repeating a key is reported
+     */
+    @Test
+    public void testDuplicateKeys() throws Exception {
+        List<String> records = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            records.add("{\"id\": \"r" + i + "\", \"tags\": [" + i + "]}");
+        }
+        Path expectedFile = write("expected.ndjson", records);
+        Path actualFile = write("actual.ndjson", records);
+        List<String> messages = new ArrayList<>();
+        DatasetSummary summary = JSONCompare.compareDatasets(expectedFile, actualFile, "$.id", RULES,
+                new NdjsonDatasetWriter(new StringWriter()) {
+                    @Override
+                    public void onError(String key, String message) {
+                        messages.add(message);
+                    }
+                });
+        assertTrue(summary.passed());
+        assertEquals(50, summary.getEqual());
+
+        records.add(records.get(3));
+        actualFile = write("actual.ndjson", records);
+        summary = new DatasetComparator("$.id", JSONCompare.compileRules(RULES)).setParserThreads(1)
+                .compare(actualFile, expectedFile, new NdjsonDatasetWriter(new StringWriter()) {
+                    @Override
+                    public void onError(String key, String message) {
+                        messages.add(key + ": " + message);
+                    }
+                });
+        assertEquals(1, summary.getErrors());
+        assertEquals(50, summary.getEqual());
+        assertTrue(messages.get(0), messages.get(0).startsWith("\"r3\": expected line 51 repeats"));
+    }
+
+    /**
+     * Test that the hash-partitioned join reports what the in-memory join reports, for a JSON array dataset
+     * against an NDJSON one, and that it removes its spill files
+     */
+    @Test
+    public void testPartitionedJoinMatchesInMemoryJoin() throws Exception {
+        StringBuilder array = new StringBuilder("\n[");
+        List<String> actual = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            array.append(i == 0 ? "" : ",\n  ").append("{\"id\": {\"n\": ").append(i).append("}, \"v\": [1.10, ")
+                    .append(i).append("]}");
+            if (i % 37 != 5) {
+                actual.add("{\"id\": {\"n\": " + (i % 41 == 0 ? i + 1000 : i) + "}, \"v\": [1.10, " + (i % 13 == 0 ? 0 : i) + "]}");
+            }
+        }
+        array.append("]");
+        actual.add("{\"id\": {\"n\": 7}, \"v\": []}");
+        Path expectedFile = folder.getRoot().toPath().resolve("expected.json");
+        Files.write(expectedFile, array.toString().getBytes(StandardCharsets.UTF_8));
+        Path actualFile = write("actual.ndjson", actual);
+        Path spillDirectory = folder.newFolder("spill").toPath();
+
+        StringWriter inMemory = new StringWriter();
+        DatasetSummary expectedSummary = new DatasetComparator("$.id", JSONCompare.compileRules(RULES))
+                .compare(expectedFile, actualFile, new NdjsonDatasetWriter(inMemory));
+        StringWriter partitioned = new StringWriter();
+        DatasetSummary summary = new DatasetComparator("$.id", JSONCompare.compileRules(RULES))
+                .setPartitions(7).setSpillDirectory(spillDirectory).setCompareThreads(3)
+                .compare(expectedFile, actualFile, new NdjsonDatasetWriter(partitioned));
+
+        assertEquals(expectedSummary.getEqual(), summary.getEqual());
+        assertEquals(expectedSummary.getDifferent(), summary.getDifferent());
+        assertEquals(expectedSummary.getMissing(), summary.getMissing());
+        assertEquals(expectedSummary.getExtra(), summary.getExtra());
+        assertEquals(1, summary.getErrors());
+        assertEquals(sortedLines(inMemory).size(), sortedLines(partitioned).size());
+        List<String> lines = sortedLines(partitioned);
+        lines.removeIf(line -> line.contains("\"error\""));
+        List<String> expectedLines = sortedLines(inMemory);
+        expectedLines.removeIf(line -> line.contains("\"error\""));
+        assertEquals(expectedLines, lines);
+        assertTrue(lines.contains("{\"key\":\"{\\\"n\\\":5}\",\"status\":\"missing\",\"expected\":{\"id\":{\"n\":5},\"v\":[1.10,5]}}"));
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    /**
+     * Test that the elements of a pretty-printed JSON array are split on their own brackets and commas, not on
+     * those in strings, and are handed out on one line with their source text
+     */
+    @Test
+    public void testPrettyPrintedArrayElements() throws Exception {
+        String array = "[\n  {\n    \"id\": 1,\n    \"s\": \"a, [b] {c} \\\"d\\\\\",\n    \"v\": [1.10, 0.000000000000000000001]\n  },\n"
+                + "  {\"id\": 2, \"s\": \"\\u00e9 \\/\"},\n  {\"id\": 3, \"v\": [\n    1E-21\n  ]},\n  {\"id\": 4, \"s\": \"x\"},\n"
+                + "  {\"id\": 5, \"s\": }\n]\n";
+        List<String> actual = Arrays.asList(
+                "{\"id\": 1, \"s\": \"a, [b] {c} \\\"d\\\\\", \"v\": [1.1, 0.000000000000000000001]}",
+                "{\"id\": 2, \"s\": \"é /\"}",
+                "{\"id\": 3, \"v\": [0.000000000000000000002]}");
+        Path expectedFile = folder.getRoot().toPath().resolve("expected.json");
+        Files.write(expectedFile, array.getBytes(StandardCharsets.UTF_8));
+        Path actualFile = write("actual.ndjson", actual);
+
+        StringWriter out = new StringWriter();
+        DatasetSummary summary = new DatasetComparator("$.id", JSONCompare.compileRules(RULES)).setParserThreads(2)
+                .compare(expectedFile, actualFile, new NdjsonDatasetWriter(out));
+        assertEquals(2, summary.getEqual());
+        assertEquals(1, summary.getDifferent());
+        assertEquals(1, summary.getMissing());
+        assertEquals(1, summary.getErrors());
+        assertTrue(out.toString(), out.toString().contains(
+                "{\"key\":\"4\",\"status\":\"missing\",\"expected\":{\"id\":4,\"s\":\"x\"}}\n"));
+        assertTrue(out.toString(), out.toString().contains("expected element 4 is not valid JSON"));
+    }
+
+    private static List<String> sortedLines(StringWriter out) {
+        List<String> lines = new ArrayList<>(Arrays.asList(out.toString().split("\n")));
+        Collections.sort(lines);
+        return lines;
+    }
+
+    private Path write(String name, List<String> lines) throws Exception {
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, lines, StandardCharsets.UTF_8);
+        return file;
+    }
+}
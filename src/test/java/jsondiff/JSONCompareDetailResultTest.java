@@ -0,0 +1,374 @@
+/*
+ * JSONCompareDetailResultTest.java
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jsondiff;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.testtools.jsondiff.CompareContext;
+import org.testtools.jsondiff.FailureField;
+import org.testtools.jsondiff.FailureCategory;
+import org.testtools.jsondiff.FieldComparisonFailure;
+import org.testtools.jsondiff.JSONCompare;
+import org.testtools.jsondiff.JSONCompareDeepDetailResult;
+import org.testtools.jsondiff.JSONCompareDetailResult;
+import org.testtools.jsondiff.JSONCompareResultUtil;
+import org.testtools.jsondiff.JSONCompareResultWriter;
+import org.testtools.jsondiff.comparator.DefaultComparator;
+import org.testtools.jsondiff.comparator.JSONCompareUtil;
+import org.testtools.jsondiff.listener.ColumnarDiffStore;
+import org.testtools.jsondiff.listener.CountingDiffListener;
+import org.testtools.jsondiff.listener.DiffAggregator;
+import org.testtools.jsondiff.listener.InMemoryDiffListener;
+import org.testtools.jsondiff.listener.JsonMergePatchWriter;
+import org.testtools.jsondiff.listener.JsonPatchWriter;
+import org.testtools.jsondiff.listener.NdjsonDiffListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the recording and rendering of comparison results
+ */
+public class JSONCompareDetailResultTest {
+
+    private static String shortenFully(String s) {
+        if (s.length() > 100) {
+            return s.substring(0, 60) + "<...>" + s.substring(s.length() - 40);
+        }
+        return s;
+    }
+
+    private static Object randomValue(Random random, int depth) {
+        int kind = random.nextInt(depth > 3 ? 5 : 7);
+        switch (kind) {
+            case 0:
+                return "s\"" + random.nextInt(1000) + "\n";
+            case 1:
+                return random.nextInt();
+            case 2:
+                return new BigDecimal(random.nextInt(10000)).movePointLeft(2);
+            case 3:
+                return random.nextBoolean();
+            case 4:
+                return JSONObject.NULL;
+            case 5:
+                JSONArray array = new JSONArray();
+                for (int i = random.nextInt(6); i > 0; i--) {
+                    array.put(randomValue(random, depth + 1));
+                }
+                return array;
+            default:
+                JSONObject object = new JSONObject();
+                for (int i = random.nextInt(6); i > 0; i--) {
+                    object.put("k" + random.nextInt(50), randomValue(random, depth + 1));
+                }
+                return object;
+        }
+    }
+
+    @Test
+    public void testShortenStringMatchesFullSerialization() {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            JSONObject object = new JSONObject();
+            object.put("root", randomValue(random, 0));
+            object.put("other", randomValue(random, 0));
+            JSONArray array = new JSONArray().put(object).put(randomValue(random, 0));
+            assertEquals(shortenFully(object.toString()), JSONCompareResultUtil.getShortenString(object));
+            assertEquals(shortenFully(array.toString()), JSONCompareResultUtil.getShortenString(array));
+        }
+    }
+
+    @Test
+    public void testMessageIsRenderedInRecordingOrder() {
+        JSONCompareDetailResult result = new JSONCompareDetailResult();
+        assertEquals("", result.getMessage());
+        assertTrue(result.getFieldFailures().isEmpty());
+
+        result.missing("a", new JSONArray("[1, 2]"));
+        result.fail("b", 1, 2);
+        assertEquals("a\nExpected: a JSON array: [1,2]\n     but none found\n ; b\nExpected: 1\n     got: 2\n",
+                result.getMessage());
+
+        result.fail("size mismatch");
+        result.unexpected("c", "x");
+        assertEquals("a\nExpected: a JSON array: [1,2]\n     but none found\n ; b\nExpected: 1\n     got: 2\n"
+                + " ; size mismatch ; c\nUnexpected: x\n", result.toString());
+        assertEquals(1, result.getFieldMissing().size());
+        assertEquals(1, result.getFieldFailures().size());
+        assertEquals(1, result.getFieldUnexpected().size());
+    }
+
+    @Test
+    public void testFailureBudgetsSummarizeOverflow() {
+        JSONArray expected = new JSONArray();
+        JSONArray actual = new JSONArray();
+        for (int i = 0; i < 50; i++) {
+            expected.put(new JSONObject().put("price", i).put("name", "n" + i));
+            actual.put(new JSONObject().put("price", i + 1).put("name", "n" + i).put("extra", i));
+        }
+        CompareContext context = new CompareContext(false, true, false, false);
+        context.setMaxFailuresPerPath(3);
+        JSONCompareDetailResult result = new DefaultComparator(context).compareJSON(expected, actual);
+        assertEquals(3, result.getFieldFailures().size());
+        assertEquals(3, result.getFieldUnexpected().size());
+        assertEquals(47, result.getSuppressedCount(FailureCategory.FAILURE));
+        assertEquals(47, result.getSuppressedCount(FailureCategory.UNEXPECTED));
+        assertTrue(result.isTruncated());
+        assertTrue(result.getMessage().endsWith(" ; 94 more failure(s) suppressed by the failure budget"));
+
+        // the comparison ends on the first failure over the total budget
+        context = new CompareContext(false, true, false, false);
+        context.setMaxFailures(5);
+        result = new DefaultComparator(context).compareJSON(expected, actual);
+        assertEquals(5, result.getFieldFailures().size() + result.getFieldUnexpected().size());
+        assertEquals(1, result.getSuppressedCount());
+        assertTrue(result.failed());
+    }
+
+    @Test
+    public void testPathPattern() {
+        assertEquals("items[*].price", JSONCompareUtil.toPathPattern("items[3].price"));
+        assertEquals("items[*].tags[]", JSONCompareUtil.toPathPattern("items[id=7].tags[]"));
+        assertEquals("[*]", JSONCompareUtil.toPathPattern("[0]"));
+        assertEquals("a.b", JSONCompareUtil.toPathPattern("a.b"));
+    }
+
+    @Test
+    public void testListenersReceiveFailuresWithoutRetaining() {
+        String expected = "{\"a\": 1, \"b\": {\"c\": [1, 2]}, \"d\": \"x\"}";
+        String actual = "{\"a\": 2, \"d\": \"x\", \"e\": null}";
+        DefaultComparator comparator = new DefaultComparator(new CompareContext(false, true, false, false));
+
+        InMemoryDiffListener inMemory = new InMemoryDiffListener();
+        JSONCompareDetailResult streamed = JSONCompare.compareJSON(expected, actual, comparator, inMemory);
+        JSONCompareDetailResult retained = comparator.compareJSON(new JSONObject(expected), new JSONObject(actual));
+        assertTrue(streamed.failed());
+        assertFalse(inMemory.passed());
+        assertTrue(streamed.getFieldFailures().isEmpty());
+        assertEquals(retained.getFieldFailures().size(), inMemory.getFieldFailures().size());
+        assertEquals(retained.getFieldMissing().get(0).getField(), inMemory.getFieldMissing().get(0).getField());
+        assertEquals(retained.getFieldUnexpected().get(0).getField(), inMemory.getFieldUnexpected().get(0).getField());
+
+        CountingDiffListener counting = new CountingDiffListener();
+        JSONCompare.compareJSON(expected, actual, comparator, counting);
+        assertEquals(3, counting.getTotalCount());
+        assertEquals(1, counting.getMissingCount());
+
+        StringWriter out = new StringWriter();
+        JSONCompare.compareJSON(expected, actual, comparator, new NdjsonDiffListener(out));
+        assertEquals("{\"expected\":1,\"actual\":2,\"diffKey\":\"a\",\"reason\":\"actual unequals to expected\"}\n"
+                + "{\"expected\":{\"c\":[1,2]},\"actual\":null,\"diffKey\":\"b\",\"reason\":\"only in expected\"}\n"
+                + "{\"expected\":null,\"actual\":null,\"diffKey\":\"e\",\"reason\":\"only in actual\"}\n",
+                out.toString());
+    }
+
+    @Test
+    public void testColumnarStoreMirrorsResultViews() {
+        JSONArray expected = new JSONArray();
+        JSONArray actual = new JSONArray();
+        for (int i = 0; i < 40; i++) {
+            expected.put(new JSONObject().put("id", i).put("v", i).put("tags", new JSONArray().put("t" + i)));
+            actual.put(new JSONObject().put("id", i).put("v", i % 3).put("tags", new JSONArray().put("t" + i % 4)));
+        }
+        actual.put(new JSONObject().put("id", 99).put("v", 0).put("tags", new JSONArray()));
+        CompareContext context = new CompareContext(false, false, false, false);
+        JSONCompareDetailResult retained = new DefaultComparator(context).compareJSON(expected, actual);
+
+        ColumnarDiffStore store = new ColumnarDiffStore();
+        JSONCompareDetailResult streamed = new JSONCompareDetailResult();
+        streamed.setListener(store, false);
+        JSONCompare.compareJSON(expected, actual, new DefaultComparator(context), streamed);
+
+        assertEquals(retained.getFieldFailures().size() + retained.getFieldMissing().size()
+                + retained.getFieldUnexpected().size(), store.size());
+        assertTrue(store.getPatternCount() <= 4);
+        assertSameFailures(retained.getFieldFailures(), store.getFieldFailures());
+        assertSameFailures(retained.getFieldMissing(), store.getFieldMissing());
+        assertSameFailures(retained.getFieldUnexpected(), store.getFieldUnexpected());
+
+        Iterator<FailureField> fields = store.getFailureFields().iterator();
+        for (FailureField f : JSONCompareResultUtil.getSimpleResult(retained).getFailure()) {
+            FailureField g = fields.next();
+            assertEquals(f.getDiffKey(), g.getDiffKey());
+            assertEquals(f.getReason(), g.getReason());
+            assertEquals(String.valueOf(f.getExpected()), String.valueOf(g.getExpected()));
+        }
+        assertFalse(fields.hasNext());
+    }
+
+    private static void assertSameFailures(List<FieldComparisonFailure> expected, Iterable<FieldComparisonFailure> actual) {
+        Iterator<FieldComparisonFailure> it = actual.iterator();
+        for (FieldComparisonFailure f : expected) {
+            FieldComparisonFailure g = it.next();
+            assertEquals(f.getField(), g.getField());
+            assertEquals(f.getExpected(), g.getExpected());
+            assertEquals(f.getActual(), g.getActual());
+        }
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testAbsolutePathsRecordedWhileComparing() {
+        // ids are the unique keys; "v" and "n" repeat in the expected arrays so they can't be chosen instead
+        String expected = "{\"items\": [{\"id\": 1, \"v\": 1, \"sub\": [{\"k\": \"a\", \"n\": 1}, {\"k\": \"b\", \"n\": 1}]},"
+                + " {\"id\": 2, \"v\": 1, \"tags\": [1, 2]}, {\"id\": 3, \"v\": 3}], \"list\": [1, 2]}";
+        String actual = "{\"items\": [{\"id\": 3, \"v\": 3}, {\"id\": 2, \"v\": 5, \"tags\": [1, 3]},"
+                + " {\"id\": 1, \"v\": 1, \"sub\": [{\"k\": \"b\", \"n\": 4}, {\"k\": \"a\", \"n\": 1}, {\"k\": \"c\", \"n\": 1}]},"
+                + " {\"id\": 4, \"v\": 4}], \"list\": [1, 3]}";
+        DefaultComparator comparator = new DefaultComparator(new CompareContext(false, false, false, false));
+
+        JSONCompareDeepDetailResult tracked = JSONCompare.compareJSONDeepDetail(expected, actual, comparator);
+        JSONCompareDeepDetailResult resolved = new JSONCompareDeepDetailResult(
+                comparator.compareJSON(new JSONObject(expected), new JSONObject(actual)));
+        JSONCompareResultUtil.getAbsolutePath(new JSONObject(expected), new JSONObject(actual), resolved);
+
+        assertEquals(resolved.getExpectedFailureFields(), tracked.getExpectedFailureFields());
+        assertEquals(resolved.getActualFailureFields(), tracked.getActualFailureFields());
+        assertEquals(resolved.getMissingFields(), tracked.getMissingFields());
+        assertEquals(resolved.getUnexpectedFields(), tracked.getUnexpectedFields());
+        assertTrue(tracked.getActualFailureFields().contains("items[1].v"));
+        assertTrue(tracked.getExpectedFailureFields().contains("items[0].sub[1].n"));
+        assertTrue(tracked.getActualFailureFields().contains("items[2].sub[0].n"));
+        assertTrue(tracked.getUnexpectedFields().contains("items[2].sub[2]"));
+        assertTrue(tracked.getUnexpectedFields().contains("items[3]"));
+        assertTrue(tracked.getMissingFields().contains("items[1].tags"));
+    }
+
+    @Test
+    public void testPatchesTurnExpectedIntoActual() throws IOException {
+        String expected = "{\"items\": [{\"id\": 1, \"v\": 1, \"sub\": [{\"k\": \"a\", \"n\": 1}, {\"k\": \"b\", \"n\": 1}]},"
+                + " {\"id\": 2, \"v\": 1, \"tags\": [1, 2]}, {\"id\": 3, \"v\": 3}], \"list\": [1, 2, 3, 4],"
+                + " \"strict\": [5, 6, 7], \"gone\": {\"x\": 1}, \"same\": \"s\"}";
+        String actual = "{\"items\": [{\"id\": 3, \"v\": 3}, {\"id\": 2, \"v\": 5, \"tags\": [1, 3], \"new\": true},"
+                + " {\"id\": 1, \"v\": 1, \"sub\": [{\"k\": \"b\", \"n\": 4}, {\"k\": \"a\", \"n\": 1}, {\"k\": \"c\", \"n\": 1}]},"
+                + " {\"id\": 4, \"v\": 4}], \"list\": [1, 3], \"strict\": [5, 8], \"same\": \"s\", \"added\": [1]}";
+        ObjectMapper mapper = new ObjectMapper();
+        for (boolean strictOrder : new boolean[]{false, true}) {
+            DefaultComparator comparator = new DefaultComparator(new CompareContext(strictOrder, false, false, false));
+
+            StringWriter patch = new StringWriter();
+            JsonGenerator generator = mapper.getFactory().createGenerator(patch);
+            JSONCompare.compareJSON(expected, actual, comparator, new JsonPatchWriter(generator, new JSONObject(actual)));
+            JsonNode patched = mapper.readTree(expected);
+            for (JsonNode op : mapper.readTree(patch.toString())) {
+                applyOperation(patched, op);
+            }
+            assertTrue(patch.toString(), JSONCompare.compareJSONInternal(patched.toString(), actual, comparator).passed());
+
+            StringWriter mergePatch = new StringWriter();
+            generator = mapper.getFactory().createGenerator(mergePatch);
+            JSONCompare.compareJSON(expected, actual, comparator, new JsonMergePatchWriter(generator, new JSONObject(actual)));
+            JsonNode merged = mergePatch(mapper.readTree(expected), mapper.readTree(mergePatch.toString()));
+            assertTrue(mergePatch.toString(), JSONCompare.compareJSONInternal(merged.toString(), actual, comparator).passed());
+        }
+    }
+
+    private static void applyOperation(JsonNode root, JsonNode op) {
+        String path = op.get("path").asText();
+        int slash = path.lastIndexOf('/');
+        JsonNode parent = root.at(path.substring(0, slash));
+        String last = path.substring(slash + 1).replace("~1", "/").replace("~0", "~");
+        String name = op.get("op").asText();
+        if (parent instanceof ObjectNode) {
+            if (name.equals("remove")) {
+                ((ObjectNode) parent).remove(last);
+            } else {
+                ((ObjectNode) parent).set(last, op.get("value"));
+            }
+        } else if (name.equals("add")) {
+            ArrayNode array = (ArrayNode) parent;
+            array.insert(last.equals("-") ? array.size() : Integer.parseInt(last), op.get("value"));
+        } else if (name.equals("remove")) {
+            ((ArrayNode) parent).remove(Integer.parseInt(last));
+        } else {
+            ((ArrayNode) parent).set(Integer.parseInt(last), op.get("value"));
+        }
+    }
+
+    private static JsonNode mergePatch(JsonNode target, JsonNode patch) {
+        if (!patch.isObject()) return patch;
+        ObjectNode result = target.isObject() ? (ObjectNode) target : new ObjectMapper().createObjectNode();
+        Iterator<String> names = patch.fieldNames();
+        while (names.hasNext()) {
+            String name = names.next();
+            JsonNode value = patch.get(name);
+            if (value.isNull()) {
+                result.remove(name);
+            } else {
+                result.set(name, mergePatch(result.path(name), value));
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testAggregatorCountsByPathPatternAndMerges() {
+        DefaultComparator comparator = new DefaultComparator(new CompareContext(false, true, false, false));
+        DiffAggregator first = new DiffAggregator(2, 0);
+        DiffAggregator second = new DiffAggregator(2, 0);
+        for (int i = 0; i < 10; i++) {
+            String expected = "{\"orders\": [{\"price\": 1, \"qty\": 1}, {\"price\": 2, \"qty\": 1}]}";
+            String actual = "{\"orders\": [{\"price\": " + (i + 10) + ", \"qty\": 1}, {\"price\": 3}]}";
+            JSONCompare.compareJSON(expected, actual, comparator, i % 2 == 0 ? first : second);
+        }
+        DiffAggregator merged = new DiffAggregator(2, 0).merge(first).merge(second);
+
+        assertEquals(10, merged.getComparisonCount());
+        assertEquals(10, merged.getFailedComparisonCount());
+        List<DiffAggregator.PatternStats> top = merged.getTopPatterns(5);
+        assertEquals(2, top.size());
+        assertEquals("orders[*].price", top.get(0).getPattern());
+        assertEquals(20, top.get(0).getCount(FailureCategory.FAILURE));
+        assertEquals(1, top.get(0).getReasonCount());
+        assertEquals(2, top.get(0).getSamples().size());
+        assertEquals("orders[*].qty", top.get(1).getPattern());
+        assertEquals(10, top.get(1).getCount(FailureCategory.MISSING));
+
+        DiffAggregator limited = new DiffAggregator(1, 1).merge(merged);
+        assertEquals(1, limited.getPatterns().size());
+        assertEquals(30, limited.getPatterns().get(0).getCount() + limited.getOverflowCount());
+    }
+
+    @Test
+    public void testResultWriterMatchesSerializedSimpleResult() throws IOException {
+        String expected = "{\"a\": 1.50, \"b\": {\"c\": [1, 2]}, \"d\": \"x\", \"n\": null, \"t\": true,"
+                + " \"list\": [{\"id\": 1, \"v\": \"a\"}, {\"id\": 2, \"v\": \"b\"}]}";
+        String actual = "{\"a\": 2, \"d\": [\"x\"], \"n\": 0, \"t\": false, \"e\": null,"
+                + " \"list\": [{\"id\": 2, \"v\": \"c\"}, {\"id\": 3, \"v\": \"b\"}, {\"id\": 1, \"v\": \"a\"}]}";
+        JSONCompareDetailResult result = new DefaultComparator(new CompareContext(false, false, false, false))
+                .compareJSON(new JSONObject(expected), new JSONObject(actual));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JSONCompareResultWriter.writeFailures(result, out);
+        String serialized = new ObjectMapper().writeValueAsString(JSONCompareResultUtil.getSimpleResult(result).getFailure());
+        assertEquals(serialized, new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
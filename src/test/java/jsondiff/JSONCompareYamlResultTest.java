@@ -15,20 +15,51 @@
 
 package jsondiff;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testtools.jsondiff.Baseline;
+import org.testtools.jsondiff.BaselineCache;
+import org.testtools.jsondiff.BaselineCompiler;
+import org.testtools.jsondiff.BaselineFile;
+import org.testtools.jsondiff.CompareOptions;
+import org.testtools.jsondiff.CompiledCompareRules;
+import org.testtools.jsondiff.FailureField;
 import org.testtools.jsondiff.JSONCompare;
 import org.testtools.jsondiff.JSONCompareResult;
+import org.testtools.jsondiff.JSONParser;
+import org.testtools.jsondiff.ParsedDocument;
+import org.testtools.jsondiff.SymbolTable;
+import org.testtools.jsondiff.batch.BatchComparator;
+import org.testtools.jsondiff.batch.BatchItemResult;
+import org.testtools.jsondiff.batch.BatchSummary;
+import org.testtools.jsondiff.batch.CaseDirectoryRunner;
+import org.testtools.jsondiff.batch.CaseResult;
+import org.testtools.jsondiff.batch.ComparePair;
+import org.testtools.jsondiff.matcher.PatternCache;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 import org.junit.Test;
 import org.junit.Before;
 import org.junit.After;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.*;
 
@@ -87,6 +118,18 @@ public class JSONCompareYamlResultTest {
         // Serialize comparison result
         String actualResult = objectMapper.writeValueAsString(result.getFailure());
         
+        // The streamed result must match the serialized failures
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        boolean passed = JSONCompare.compareJSON(expectedJSON, actualJSON, rules, streamed);
+        assertEquals(actualResult, new String(streamed.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(result.getFailure().isEmpty(), passed);
+
+        // The boolean fast path must agree with the full comparison
+        CompiledCompareRules compiledRules = JSONCompare.compileRules(rules);
+        assertEquals(result.getFailure().isEmpty(), JSONCompare.equalsUnderRules(expectedJSON, actualJSON, compiledRules));
+        assertEquals(JSONCompare.compareJSON(actualJSON, actualJSON, compiledRules).getFailure().isEmpty(),
+                JSONCompare.equalsUnderRules(actualJSON, actualJSON, compiledRules));
+
         // Write to output file
         writeToFile(outputFilePath, actualResult);
         System.out.println("Comparison result written to: " + outputFilePath);
@@ -238,5 +281,456 @@ public class JSONCompareYamlResultTest {
         JSONCompareResult result = JSONCompare.compareJSON(expectedJSON, actualJSON, rules);
         assertNotNull("Comparison result should not be null", result);
         assertTrue("Identical JSON should compare successfully", result.getFailure().isEmpty());
+        assertTrue(JSONCompare.equalsUnderRules(expectedJSON, actualJSON, JSONCompare.compileRules(rules)));
+        CompiledCompareRules wholeDocument = JSONCompare.compileRules("- subRule:\n    jsonPath: $\n");
+        assertTrue(JSONCompare.equalsUnderRules(expectedJSON, actualJSON, wholeDocument));
+        assertFalse(JSONCompare.equalsUnderRules(expectedJSON, "{\"name\":\"John\",\"age\":31}", wholeDocument));
+
+        // selections are normalized like compareJSON serializes them, a null selection is a difference
+        CompiledCompareRules unordered = JSONCompare.compileRules("- subRule:\n    jsonPath: $.a\n    strictOrder: false\n");
+        assertTrue(JSONCompare.compareJSON("{\"a\":[1.50,2]}", "{\"a\":[1.5,2]}", unordered).getFailure().isEmpty());
+        assertTrue(JSONCompare.equalsUnderRules("{\"a\":[1.50,2]}", "{\"a\":[1.5,2]}", unordered));
+        assertFalse(JSONCompare.equalsUnderRules("{\"a\":[1.50,2]}", "{\"a\":[1.25,2]}", unordered));
+        assertFalse(JSONCompare.compareJSON("{\"a\":null}", "{\"a\":1}", unordered).getFailure().isEmpty());
+        assertFalse(JSONCompare.equalsUnderRules("{\"a\":null}", "{\"a\":1}", unordered));
+
+        // a scalar selection that differs is a failure on the rule's root in both
+        for (String[] scalars : new String[][]{{"{\"name\":\"a\"}", "{\"name\":\"b\"}", "$.name"}, {"{\"n\":1}", "{\"n\":2}", "$.n"}}) {
+            CompiledCompareRules scalarRule = JSONCompare.compileRules("- subRule:\n    jsonPath: " + scalars[2] + "\n");
+            List<FailureField> failures = JSONCompare.compareJSON(scalars[0], scalars[1], scalarRule).getFailure();
+            assertEquals(1, failures.size());
+            assertFalse(JSONCompare.equalsUnderRules(scalars[0], scalars[1], scalarRule));
+            assertTrue(JSONCompare.compareJSON(scalars[0], scalars[0], scalarRule).getFailure().isEmpty());
+            assertTrue(JSONCompare.equalsUnderRules(scalars[0], scalars[0], scalarRule));
+        }
+        assertEquals("[{\"expected\":\"a\",\"actual\":\"b\",\"diffKey\":\"\",\"reason\":\"actual unequals to expected\"}]",
+                objectMapper.writeValueAsString(JSONCompare.compareJSON("{\"name\":\"a\"}", "{\"name\":\"b\"}",
+                        JSONCompare.compileRules("- subRule:\n    jsonPath: $.name\n")).getFailure()));
+    }
+
+    /**
+     * Test that a rule that runs out of time reports the same timed-out failure when its failures are streamed
+     */
+    @Test
+    public void testTimedOutRuleIsStreamed() throws Exception {
+        // every trial match of the recursive strategy fails late, so a full comparison is quadratic
+        StringBuilder expected = new StringBuilder("{\"items\": [3");
+        StringBuilder actual = new StringBuilder("{\"items\": [3");
+        for (int i = 0; i < 3000; i++) {
+            expected.append(", [{\"k\": [0, 1, 2, 3, 4, 5, 6, 7, 8, 9, ").append(i).append("]}]");
+            actual.append(", [{\"k\": [0, 1, 2, 3, 4, 5, 6, 7, 8, 9, ").append(-i - 1).append("]}]");
+        }
+        expected.append("]}");
+        actual.append("]}");
+        String rules = "- subRule:\n    jsonPath: $.items\n    strictOrder: false\n    timeoutMillis: 50\n";
+
+        JSONCompareResult result = JSONCompare.compareJSON(expected.toString(), actual.toString(), rules);
+        assertTrue(result.isTimedOut());
+        String failures = objectMapper.writeValueAsString(result.getFailure());
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        assertFalse(JSONCompare.compareJSON(expected.toString(), actual.toString(), rules, streamed));
+        assertEquals(failures, new String(streamed.toByteArray(), StandardCharsets.UTF_8));
+        assertTrue(failures.endsWith("\"diffKey\":\"$.items\",\"reason\":\"" + JSONCompareResult.TIMED_OUT_REASON + "\"}]"));
+    }
+
+    /**
+     * Test that a batch hands out the same results as single comparisons, in batch order
+     */
+    @Test
+    public void testCompareBatchInOrder() throws Exception {
+        String expectedJSON = readFileContent(TEST_RESOURCES_PATH + "case_01_e.json");
+        String actualJSON = readFileContent(TEST_RESOURCES_PATH + "case_01_a.json");
+        String rules = readFileContent(TEST_RESOURCES_PATH + "rule_case01.yaml");
+        List<ComparePair> pairs = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            pairs.add(ComparePair.of(i % 3 == 0 ? actualJSON : expectedJSON, i == 7 ? "{" : actualJSON));
+        }
+        String failures = objectMapper.writeValueAsString(JSONCompare.compareJSON(expectedJSON, actualJSON, rules).getFailure());
+        String noFailures = objectMapper.writeValueAsString(JSONCompare.compareJSON(actualJSON, actualJSON, rules).getFailure());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<BatchItemResult> results = new ArrayList<>();
+        try {
+            BatchSummary summary = new BatchComparator(JSONCompare.compileRules(rules), executor, 3)
+                    .compare(pairs, results::add);
+            assertEquals(40, summary.getTotal());
+            assertEquals(1, summary.getErrors());
+        } finally {
+            executor.shutdown();
+        }
+        for (int i = 0; i < results.size(); i++) {
+            BatchItemResult item = results.get(i);
+            assertEquals(i, item.getIndex());
+            assertSame(pairs.get(i), item.getPair());
+            if (i == 7) {
+                assertNotNull(item.getError());
+            } else {
+                assertEquals(i % 3 == 0 ? noFailures : failures, objectMapper.writeValueAsString(item.getResult().getFailure()));
+            }
+        }
+    }
+
+    /**
+     * Test that the parallel mode reports the failures of the sequential engine, in the same order
+     */
+    @Test
+    public void testParallelCompareMatchesSequential() throws Exception {
+        StringBuilder expected = new StringBuilder("{\"wide\": {");
+        StringBuilder actual = new StringBuilder("{\"wide\": {");
+        for (int i = 0; i < 3000; i++) {
+            String sep = i == 0 ? "" : ",";
+            expected.append(sep).append("\"k").append(i).append("\": ").append(i);
+            actual.append(sep).append("\"k").append(i % 7 == 0 ? i + 1 : i).append("\": ").append(i % 5 == 0 ? -i : i);
+        }
+        expected.append("}, \"orders\": [");
+        actual.append("}, \"orders\": [");
+        for (int i = 0; i < 2000; i++) {
+            String sep = i == 0 ? "" : ",";
+            expected.append(sep).append("{\"id\": ").append(i).append(", \"price\": ").append(i).append("}");
+            actual.append(sep).append("{\"id\": ").append(1999 - i).append(", \"price\": ").append((1999 - i) % 11 == 0 ? 0 : 1999 - i).append("}");
+        }
+        // one long strict-order array and one unordered array of simple values
+        expected.append("], \"lines\": [");
+        actual.append("], \"lines\": [");
+        for (int i = 0; i < 4000; i++) {
+            String sep = i == 0 ? "" : ",";
+            expected.append(sep).append("{\"line\": ").append(i).append(", \"n\": ").append(i).append("}");
+            actual.append(sep).append("{\"line\": ").append(i).append(", \"n\": ").append(i % 17 == 0 ? -i : i).append("}");
+        }
+        expected.append("], \"ids\": [");
+        actual.append(", {\"line\": -1, \"n\": -1}], \"ids\": [");
+        for (int i = 0; i < 4000; i++) {
+            String sep = i == 0 ? "" : ",";
+            expected.append(sep).append(i % 1000);
+            actual.append(sep).append(i % 23 == 0 ? i : i % 1000);
+        }
+        expected.append("]}");
+        actual.append("]}");
+        String rule = "- subRule:\n    jsonPath: $.wide\n    extensible: false\n%s"
+                + "- subRule:\n    jsonPath: $.orders\n    strictOrder: false\n%s"
+                + "- subRule:\n    jsonPath: $.lines\n%s"
+                + "- subRule:\n    jsonPath: $.ids\n    strictOrder: false\n%s"
+                + "- subRule:\n    jsonPath: $\n    extensible: false\n    strictOrder: false\n%s";
+        String sequentialRules = String.format(rule, "", "", "", "", "");
+        String threshold = "    parallelThreshold: 100\n";
+        String parallelRules = String.format(rule, threshold, threshold, threshold, threshold, threshold);
+
+        String sequential = objectMapper.writeValueAsString(JSONCompare.compareJSON(expected.toString(), actual.toString(),
+                JSONCompare.compileRules(sequentialRules)).getFailure());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (boolean concurrentRules : new boolean[]{false, true}) {
+                JSONCompareResult result = JSONCompare.compareJSON(expected.toString(), actual.toString(),
+                        JSONCompare.compileRules(parallelRules),
+                        new CompareOptions().setPool(pool).setParallelRules(concurrentRules));
+                assertEquals(sequential, objectMapper.writeValueAsString(result.getFailure()));
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertTrue(sequential.length() > 1000);
+    }
+
+    /**
+     * Test that comparisons against a cached baseline report the same failures as uncached ones, and that the
+     * cache evicts the least recently used baseline
+     */
+    @Test
+    public void testBaselineCacheMatchesUncachedCompare() throws Exception {
+        String expected = "{\"orders\": [{\"id\": 1, \"qty\": 2}, {\"id\": 2, \"qty\": 5}, {\"id\": 3, \"qty\": 1}],"
+                + " \"ids\": [3, 1, 2, 2], \"tags\": [{\"t\": \"a\"}, {\"t\": \"b\"}, {\"t\": \"a\"}], \"name\": \"x\"}";
+        String[] actuals = {
+                "{\"orders\": [{\"id\": 3, \"qty\": 1}, {\"id\": 1, \"qty\": 2}, {\"id\": 2, \"qty\": 5}],"
+                        + " \"ids\": [2, 2, 1, 3], \"tags\": [{\"t\": \"b\"}, {\"t\": \"a\"}, {\"t\": \"a\"}], \"name\": \"x\"}",
+                "{\"orders\": [{\"id\": 3, \"qty\": 9}, {\"id\": 2, \"qty\": 5}, {\"id\": 4, \"qty\": 1}],"
+                        + " \"ids\": [2, 1, 3, 3], \"tags\": [{\"t\": \"b\"}, {\"t\": \"c\"}, {\"t\": \"a\"}], \"name\": \"y\"}",
+                "{\"orders\": {}, \"ids\": [1], \"tags\": [], \"name\": null}"
+        };
+        CompiledCompareRules rules = JSONCompare.compileRules("- subRule:\n    jsonPath: $.orders\n    strictOrder: false\n"
+                + "- subRule:\n    jsonPath: $.ids\n    strictOrder: false\n"
+                + "- subRule:\n    jsonPath: $.tags\n    strictOrder: false\n"
+                + "- subRule:\n    jsonPath: $\n    extensible: false\n    strictOrder: false\n");
+        BaselineCache cache = new BaselineCache(2, 0);
+        for (int round = 0; round < 2; round++) {
+            for (String actual : actuals) {
+                String uncached = objectMapper.writeValueAsString(JSONCompare.compareJSON(expected, actual, rules).getFailure());
+                JSONCompareResult cached = JSONCompare.compareJSON(expected, actual, rules, cache);
+                assertEquals(uncached, objectMapper.writeValueAsString(cached.getFailure()));
+            }
+        }
+        assertEquals(1, cache.getMissCount());
+        assertEquals(5, cache.getHitCount());
+        assertTrue(JSONCompare.compareJSON(expected, actuals[0], rules, cache).getFailure().isEmpty());
+
+        String golden = readFileContent(TEST_RESOURCES_PATH + "case_01_e.json");
+        CompiledCompareRules goldenRules = JSONCompare.compileRules(readFileContent(TEST_RESOURCES_PATH + "rule_case01.yaml"));
+        Baseline baseline = cache.get("case_01", goldenRules, () -> golden);
+        assertSame(baseline, cache.get("case_01", goldenRules, () -> golden));
+        String failures = objectMapper.writeValueAsString(JSONCompare.compareJSON(baseline,
+                readFileContent(TEST_RESOURCES_PATH + "case_01_a.json")).getFailure());
+        assertEquals(objectMapper.readTree(readFileContent(TEST_RESOURCES_PATH + "case_01_result.json")).toString(), failures);
+        // the content-keyed baseline was used less recently than case_01 and is evicted by a third one
+        cache.get("other", rules, () -> expected);
+        assertEquals(2, cache.size());
+        assertSame(baseline, cache.get("case_01", goldenRules, () -> golden));
+        long misses = cache.getMissCount();
+        cache.get(expected, rules);
+        assertEquals(misses + 1, cache.getMissCount());
+    }
+
+    /**
+     * Test that comparing parsed documents reports the same failures as comparing their source texts
+     */
+    @Test
+    public void testParsedDocumentsMatchStringCompare() throws Exception {
+        CompiledCompareRules goldenRules = JSONCompare.compileRules(readFileContent(TEST_RESOURCES_PATH + "rule_case01.yaml"));
+        String failures = objectMapper.writeValueAsString(JSONCompare.compareJSON(
+                ParsedDocument.parse(readFileContent(TEST_RESOURCES_PATH + "case_01_e.json")),
+                ParsedDocument.parse(readFileContent(TEST_RESOURCES_PATH + "case_01_a.json")), goldenRules).getFailure());
+        assertEquals(objectMapper.readTree(readFileContent(TEST_RESOURCES_PATH + "case_01_result.json")).toString(), failures);
+
+        String expected = "{\"orders\": [{\"id\": 1, \"qty\": 2.50}, {\"id\": 2, \"qty\": 5}], \"ids\": [3, 1, 2],"
+                + " \"tiny\": 0.000000000000000000001, \"name\": \"x\", \"none\": null}";
+        String[] actuals = {
+                "{\"orders\": [{\"id\": 2, \"qty\": 5}, {\"id\": 1, \"qty\": 2.5}], \"ids\": [2, 1, 3],"
+                        + " \"tiny\": 0.000000000000000000001, \"name\": \"x\", \"none\": null}",
+                "{\"orders\": [{\"id\": 3, \"qty\": 5}], \"ids\": [2, 1],"
+                        + " \"tiny\": 0.00000000000000000001, \"name\": \"y\", \"none\": 1}",
+                "{\"orders\": {}, \"ids\": [1], \"tiny\": \"0\", \"name\": true, \"none\": null}"
+        };
+        CompiledCompareRules rules = JSONCompare.compileRules("- subRule:\n    jsonPath: $\n    extensible: true\n    strictOrder: false\n"
+                + "- subRule:\n    jsonPath: $.orders\n    strictOrder: false\n"
+                + "- subRule:\n    jsonPath: $.ids\n    strictOrder: false\n"
+                + "- subRule:\n    jsonPath: $.tiny\n"
+                + "- subRule:\n    jsonPath: $.name\n"
+                + "- subRule:\n    jsonPath: $.none\n");
+        ParsedDocument parsedExpected = ParsedDocument.parse(expected);
+        for (String actual : actuals) {
+            assertEquals(objectMapper.writeValueAsString(JSONCompare.compareJSON(expected, actual, rules).getFailure()),
+                    objectMapper.writeValueAsString(JSONCompare.compareJSON(parsedExpected, ParsedDocument.parse(actual),
+                            rules).getFailure()));
+        }
+        // the null selection can't be compared, as from the source texts
+        List<FailureField> equalFailures = JSONCompare.compareJSON(parsedExpected, ParsedDocument.parse(actuals[0]), rules).getFailure();
+        assertEquals(1, equalFailures.size());
+        assertEquals("$.none", equalFailures.get(0).getDiffKey());
+    }
+
+    /**
+     * Test that documents parsed with a symbol table share their keys and short values, parse like without a
+     * table, and compare the same against a baseline with a shared table
+     */
+    @Test
+    public void testSymbolTableInternsKeysAndShortValues() throws Exception {
+        String first = "{\"status\": \"OPEN\", \"items\": [{\"status\": \"CLOSED\", \"note\": \"a long free-text note\"}]}";
+        String second = "[{\"status\": \"OPEN\", \"note\": \"a long free-text note\"}]";
+        SymbolTable symbols = new SymbolTable(100, 8);
+        JSONObject a = (JSONObject) JSONParser.parseJSON(first, symbols);
+        JSONArray b = (JSONArray) JSONParser.parseJSON(second, symbols);
+        assertTrue(a.similar(JSONParser.parseJSON(first)));
+        assertTrue(b.similar(JSONParser.parseJSON(second)));
+        JSONObject nested = a.getJSONArray("items").getJSONObject(0);
+        assertSame(symbols.intern("status"), a.keySet().stream().filter("status"::equals).findFirst().get());
+        assertSame(symbols.intern("note"), b.getJSONObject(0).keySet().stream().filter("note"::equals).findFirst().get());
+        assertSame(a.getString("status"), b.getJSONObject(0).getString("status"));
+        // values longer than the limit are kept as parsed
+        assertNotSame(nested.getString("note"), b.getJSONObject(0).getString("note"));
+        assertEquals(5, symbols.size());
+
+        SymbolTable full = new SymbolTable(1, 0);
+        JSONObject bounded = (JSONObject) JSONParser.parseJSON(first, full);
+        assertTrue(bounded.similar(a));
+        assertEquals(1, full.size());
+        try {
+            JSONParser.parseJSON("{\"a\" 1}", symbols);
+            fail();
+        } catch (JSONException e) {
+            try {
+                JSONParser.parseJSON("{\"a\" 1}");
+                fail();
+            } catch (JSONException expected) {
+                assertEquals(expected.getMessage(), e.getMessage());
+            }
+        }
+
+        String golden = readFileContent(TEST_RESOURCES_PATH + "case_01_e.json");
+        CompiledCompareRules goldenRules = JSONCompare.compileRules(readFileContent(TEST_RESOURCES_PATH + "rule_case01.yaml"));
+        BaselineCache cache = new BaselineCache(4, 0, new SymbolTable(SymbolTable.DEFAULT_MAX_SYMBOLS, 16));
+        String failures = objectMapper.writeValueAsString(JSONCompare.compareJSON(golden,
+                readFileContent(TEST_RESOURCES_PATH + "case_01_a.json"), goldenRules, cache).getFailure());
+        assertEquals(objectMapper.readTree(readFileContent(TEST_RESOURCES_PATH + "case_01_result.json")).toString(), failures);
+    }
+
+    /**
+     * Test that dynamic regular expressions are compiled once, when the baseline is prepared
+     */
+    @Test
+    public void testDynamicPatternsAreCompiledOnce() throws Exception {
+        StringBuilder expected = new StringBuilder("{\"items\": [");
+        StringBuilder actual = new StringBuilder("{\"items\": [");
+        for (int i = 0; i < 200; i++) {
+            String sep = i == 0 ? "" : ",";
+            expected.append(sep).append("{\"n\": ").append(i).append(", \"code\": \"[A-Z]{3}-[0-9]+ #cache\"}");
+            actual.append(sep).append("{\"n\": ").append(i).append(", \"code\": \"").append(i == 7 ? "abc-1" : "ABC-" + i).append(" #cache\"}");
+        }
+        expected.append("]}");
+        actual.append("]}");
+        CompiledCompareRules rules = JSONCompare.compileRules("- subRule:\n    jsonPath: $\n    customRules:\n"
+                + "      - name: RegularExpressionValue\n        jsonPath: \"items[*].code\"\n");
+        PatternCache patterns = PatternCache.shared();
+        long misses = patterns.getMissCount();
+        long hits = patterns.getHitCount();
+        Baseline baseline = Baseline.of(expected.toString(), rules);
+        assertEquals(misses + 1, patterns.getMissCount());
+        JSONCompareResult result = JSONCompare.compareJSON(baseline, actual.toString());
+        assertEquals(1, result.getFailure().size());
+        assertEquals("items[7].code", result.getFailure().get(0).getDiffKey());
+        assertEquals(misses + 1, patterns.getMissCount());
+        assertEquals(hits + 399, patterns.getHitCount());
+        assertTrue(patterns.getHitRate() > 0);
+    }
+
+    /**
+     * Test that the directory runner finds the cases of the test resources and of a directory with a shared
+     * rule file, and reports a case without actual file as an error
+     */
+    @Test
+    public void testCaseDirectoryRunner() throws Exception {
+        List<CaseResult> resources = new CaseDirectoryRunner(Paths.get(TEST_RESOURCES_PATH)).run();
+        assertEquals(1, resources.size());
+        assertEquals("01", resources.get(0).getId());
+        String failures = objectMapper.writeValueAsString(resources.get(0).getResult().getFailure());
+        assertEquals(objectMapper.readTree(readFileContent(TEST_RESOURCES_PATH + "case_01_result.json")).toString(), failures);
+
+        Path directory = Files.createTempDirectory("ujd-cases");
+        try {
+            String expectedJSON = readFileContent(TEST_RESOURCES_PATH + "case_01_e.json");
+            String actualJSON = readFileContent(TEST_RESOURCES_PATH + "case_01_a.json");
+            Files.write(directory.resolve("rules.yaml"), readFileContent(TEST_RESOURCES_PATH + "rule_case01.yaml").getBytes(StandardCharsets.UTF_8));
+            for (int i = 1; i <= 12; i++) {
+                Files.write(directory.resolve(i + ".expected.json"), expectedJSON.getBytes(StandardCharsets.UTF_8));
+                if (i != 4) {
+                    Files.write(directory.resolve(i + ".actual.json"), (i % 2 == 0 ? actualJSON : expectedJSON).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(3);
+            try {
+                CaseDirectoryRunner runner = new CaseDirectoryRunner(directory).setExecutor(executor)
+                        .setExpectedPattern("{id}.expected.json").setActualPattern("{id}.actual.json")
+                        .setRulePattern("rules.yaml");
+                BatchSummary summary = runner.run(directory.resolve("summary.json"));
+                assertEquals(12, summary.getTotal());
+                assertEquals(6, summary.getPassed());
+                assertEquals(5, summary.getFailed());
+                assertEquals(1, summary.getErrors());
+            } finally {
+                executor.shutdown();
+            }
+            JsonNode report = objectMapper.readTree(directory.resolve("summary.json").toFile());
+            assertEquals("10", report.get("cases").get(9).get("id").asText());
+            assertEquals("error", report.get("cases").get(3).get("status").asText());
+            assertEquals("passed", report.get("cases").get(0).get("status").asText());
+            assertEquals(failures, report.get("cases").get(1).get("failures").toString());
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Test that a baseline read from a compiled baseline file compares like one parsed from the expected JSON,
+     * and that a corrupt file is rejected
+     */
+    @Test
+    public void testBaselineFileMatchesParsedBaseline() throws Exception {
+        Path directory = Files.createTempDirectory("ujd-baselines");
+        try {
+            Path golden = directory.resolve("case_01_e.json");
+            Files.write(golden, readFileContent(TEST_RESOURCES_PATH + "case_01_e.json").getBytes(StandardCharsets.UTF_8));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(0, BaselineCompiler.run(new String[]{golden.toString()}, new PrintStream(out), System.err));
+            Path compiled = directory.resolve("case_01_e" + BaselineFile.EXTENSION);
+            assertTrue(out.toString().contains(compiled.toString()));
+            assertEquals(1, BaselineCompiler.run(new String[0], new PrintStream(out), new PrintStream(new ByteArrayOutputStream())));
+
+            BaselineFile file = BaselineFile.open(compiled);
+            assertTrue(((JSONObject) file.read(new SymbolTable())).similar(JSONParser.parseJSON(new String(Files.readAllBytes(golden), StandardCharsets.UTF_8))));
+            CompiledCompareRules goldenRules = JSONCompare.compileRules(readFileContent(TEST_RESOURCES_PATH + "rule_case01.yaml"));
+            String failures = objectMapper.writeValueAsString(JSONCompare.compareJSON(Baseline.of(file, goldenRules),
+                    readFileContent(TEST_RESOURCES_PATH + "case_01_a.json")).getFailure());
+            assertEquals(objectMapper.readTree(readFileContent(TEST_RESOURCES_PATH + "case_01_result.json")).toString(), failures);
+
+            String expected = "{\"orders\": [{\"id\": 1, \"qty\": 2.50}, {\"id\": 2, \"qty\": 5}], \"ids\": [3, 1, 2, 2],"
+                    + " \"big\": 12345678901234567890, \"ok\": true, \"none\": null, \"name\": \"\u00e9t\u00e9\"}";
+            String[] actuals = {
+                    "{\"orders\": [{\"id\": 2, \"qty\": 5}, {\"id\": 1, \"qty\": 2.5}], \"ids\": [2, 2, 1, 3],"
+                            + " \"big\": 12345678901234567890, \"ok\": true, \"none\": null, \"name\": \"\u00e9t\u00e9\"}",
+                    "{\"orders\": [{\"id\": 3, \"qty\": 5}, {\"id\": 1, \"qty\": 2}], \"ids\": [2, 1, 3],"
+                            + " \"big\": 1, \"ok\": false, \"none\": 0, \"name\": \"ete\"}"
+            };
+            CompiledCompareRules rules = JSONCompare.compileRules("- subRule:\n    jsonPath: $.orders\n    strictOrder: false\n"
+                    + "- subRule:\n    jsonPath: $.ids\n    strictOrder: false\n"
+                    + "- subRule:\n    jsonPath: $.name\n"
+                    + "- subRule:\n    jsonPath: $\n    extensible: false\n    strictOrder: false\n");
+            Path other = directory.resolve("other" + BaselineFile.EXTENSION);
+            BaselineFile.write(expected, other);
+            Baseline stored = Baseline.of(BaselineFile.open(other), rules);
+            Baseline parsed = Baseline.of(expected, rules);
+            for (String actual : actuals) {
+                assertEquals(objectMapper.writeValueAsString(JSONCompare.compareJSON(parsed, actual).getFailure()),
+                        objectMapper.writeValueAsString(JSONCompare.compareJSON(stored, actual).getFailure()));
+            }
+            assertTrue(JSONCompare.compareJSON(stored, actuals[0]).getFailure().isEmpty());
+
+            // decimals of simple-value arrays are compared on their value, not their scale
+            Path decimals = directory.resolve("decimals" + BaselineFile.EXTENSION);
+            BaselineFile.write("{\"a\":[1.50,2],\"b\":null}", decimals);
+            CompiledCompareRules unordered = JSONCompare.compileRules("- subRule:\n    jsonPath: $.a\n    strictOrder: false\n"
+                    + "- subRule:\n    jsonPath: $.b\n");
+            Baseline storedDecimals = Baseline.of(BaselineFile.open(decimals), unordered);
+            Baseline parsedDecimals = Baseline.of("{\"a\":[1.50,2],\"b\":null}", unordered);
+            assertTrue(JSONCompare.compareJSON(Baseline.of(BaselineFile.open(decimals), JSONCompare.compileRules(
+                    "- subRule:\n    jsonPath: $.a\n    strictOrder: false\n")), "{\"a\":[1.50,2]}").getFailure().isEmpty());
+            for (String actual : new String[]{"{\"a\":[1.50,2],\"b\":null}", "{\"a\":[2,1.5],\"b\":1}", "{\"a\":[1.25,2],\"b\":null}"}) {
+                assertEquals(objectMapper.writeValueAsString(JSONCompare.compareJSON(parsedDecimals, actual).getFailure()),
+                        objectMapper.writeValueAsString(JSONCompare.compareJSON(storedDecimals, actual).getFailure()));
+            }
+
+            // short and long decimals are normalized from their source text, e.g. 0.000000000000000000001 stays 1E-21
+            String decimalsJson = "{\"o\": {\"n\": 0.000000000000000000001, \"s\": 1.50, \"e\": 1e2, \"m\": 1.2345678901234567,"
+                    + " \"l\": 1.23456789012345678, \"x\": 12345678901234567.5, \"z\": -0.0}}";
+            Path sources = directory.resolve("sources" + BaselineFile.EXTENSION);
+            BaselineFile.write(decimalsJson, sources);
+            CompiledCompareRules objectRule = JSONCompare.compileRules("- subRule:\n    jsonPath: $.o\n");
+            Baseline storedSources = Baseline.of(BaselineFile.open(sources), objectRule);
+            Baseline parsedSources = Baseline.of(decimalsJson, objectRule);
+            String differing = "{\"o\": {\"n\": 2, \"s\": 2, \"e\": 2, \"m\": 2, \"l\": 2, \"x\": 2, \"z\": 2}}";
+            String parsedFailures = objectMapper.writeValueAsString(JSONCompare.compareJSON(parsedSources, differing).getFailure());
+            assertEquals(objectMapper.writeValueAsString(JSONCompare.compareJSON(decimalsJson, differing, objectRule).getFailure()),
+                    parsedFailures);
+            assertEquals(parsedFailures, objectMapper.writeValueAsString(JSONCompare.compareJSON(storedSources, differing).getFailure()));
+            assertTrue(parsedFailures.contains("\"expected\":1E-21"));
+            assertTrue(JSONCompare.compareJSON(storedSources, decimalsJson).getFailure().isEmpty());
+
+            byte[] bytes = Files.readAllBytes(other);
+            Files.write(other, Arrays.copyOf(bytes, bytes.length - 3));
+            try {
+                Baseline.of(BaselineFile.open(other), rules);
+                fail();
+            } catch (IOException e) {
+                assertTrue(e.getMessage().startsWith("Corrupt baseline file"));
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
     }
 }